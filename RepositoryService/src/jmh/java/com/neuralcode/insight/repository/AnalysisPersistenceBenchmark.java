@@ -0,0 +1,70 @@
+package com.neuralcode.insight.repository;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.service.InsightApplicationState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips of {@link CodeAnalysis} writes through R2DBC against the in-memory H2
+ * database: inserting a new analysis, saving a changed one, and the conditional status
+ * update used by status transitions.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisPersistenceBenchmark {
+
+    private static final List<String> ANY_STATUS = List.of(AnalysisStatus.STARTED.name(),
+            AnalysisStatus.COMPLETED.name());
+
+    private CodeAnalysisRepository analysisRepository;
+    private CodeAnalysis existing;
+    private boolean completed;
+
+    @Setup
+    public void setUp(InsightApplicationState application) {
+        analysisRepository = application.bean(CodeAnalysisRepository.class);
+        existing = analysisRepository.save(newAnalysis()).block().markNotNew();
+    }
+
+    @Benchmark
+    public CodeAnalysis insert() {
+        return analysisRepository.save(newAnalysis()).block();
+    }
+
+    @Benchmark
+    public CodeAnalysis save() {
+        existing.setErrorMessage(UUID.randomUUID().toString());
+        return analysisRepository.save(existing).block();
+    }
+
+    @Benchmark
+    public Integer updateStatus() {
+        completed = !completed;
+        AnalysisStatus status = completed ? AnalysisStatus.COMPLETED : AnalysisStatus.STARTED;
+        return analysisRepository.updateStatus(existing.getId(), status.name(), ANY_STATUS).block();
+    }
+
+    private static CodeAnalysis newAnalysis() {
+        return new CodeAnalysis(UUID.randomUUID().toString(), "https://github.com/example/benchmark", "main",
+                AnalysisStatus.STARTED.name(), LocalDateTime.now());
+    }
+}
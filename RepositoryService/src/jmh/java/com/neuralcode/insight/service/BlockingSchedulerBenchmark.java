@@ -0,0 +1,73 @@
+package com.neuralcode.insight.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to finish a burst of {@code concurrency} blocking tasks that each wait
+ * {@code waitMillis} on I/O, the way a clone waits on the network or a deletion on the
+ * disk. Bounded elastic caps the burst at ten platform threads per core and queues the
+ * rest; virtual threads run all of it at once, limited only by {@code max-concurrent},
+ * which is set to the burst size. The virtual thread variants need Java 21 and fail in
+ * setup on older runtimes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BlockingSchedulerBenchmark {
+
+    @Param({"BOUNDED_ELASTIC", "VIRTUAL_THREADS"})
+    public BlockingSchedulers.Mode mode;
+
+    @Param({"64", "1024", "4096"})
+    public int concurrency;
+
+    @Param({"20"})
+    public int waitMillis;
+
+    private BlockingSchedulers blockingSchedulers;
+
+    @Setup
+    public void setUp() {
+        blockingSchedulers = new BlockingSchedulers();
+        ReflectionTestUtils.setField(blockingSchedulers, "mode", mode);
+        ReflectionTestUtils.setField(blockingSchedulers, "maxConcurrent", concurrency);
+        blockingSchedulers.initialize();
+        if (mode == BlockingSchedulers.Mode.VIRTUAL_THREADS && !blockingSchedulers.isVirtual()) {
+            throw new IllegalStateException("Virtual threads need Java 21, running on " + Runtime.version());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        blockingSchedulers.shutdown();
+    }
+
+    @Benchmark
+    public Long burst() {
+        return Flux.range(0, concurrency)
+                .flatMap(i -> blockingSchedulers.fromCallable(() -> {
+                    TimeUnit.MILLISECONDS.sleep(waitMillis);
+                    return i;
+                }), concurrency)
+                .count()
+                .block();
+    }
+}
@@ -0,0 +1,76 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.dto.CloneStrategy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to clone a local fixture repository through {@code file://} into a workspace,
+ * including admission through the {@link CloneExecutor} and workspace registration. The
+ * checkout is deleted and released from the workspace after each clone, outside the
+ * measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CloneBenchmark {
+
+    @Param({"100", "2000"})
+    public int files;
+
+    @Param({"1", "20"})
+    public int commits;
+
+    @Param({"FULL", "SHALLOW"})
+    public CloneStrategy strategy;
+
+    private RepositoryService repositoryService;
+    private WorkspaceManager workspaceManager;
+    private String repositoryUrl;
+    private CloneOptions cloneOptions;
+    private String location;
+
+    @Setup
+    public void setUp(InsightApplicationState application) throws Exception {
+        repositoryService = application.bean(RepositoryService.class);
+        workspaceManager = application.bean(WorkspaceManager.class);
+        repositoryUrl = FixtureRepositories.create(
+                application.fixtureDirectory("clone-" + files + "-" + commits), files, commits);
+        cloneOptions = CloneOptions.of(strategy, strategy == CloneStrategy.SHALLOW ? 1 : 0);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteCheckout() {
+        if (location != null) {
+            repositoryService.cleanupLocalDirectory(location).block();
+            workspaceManager.discard(Paths.get(location));
+            location = null;
+        }
+    }
+
+    @Benchmark
+    public String cloneFixture() {
+        location = repositoryService.cloneAndStoreRepository(repositoryUrl, FixtureRepositories.BRANCH,
+                UUID.randomUUID().toString(), cloneOptions).block();
+        return location;
+    }
+}
@@ -0,0 +1,61 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.NeuralCodeInsightApplication;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Boots the application once per benchmark run with the test profile: an in-memory H2
+ * database, no queue worker and no web server. The mirror cache is off so every clone goes
+ * to its fixture repository, logging is quiet, and workspaces live in a temporary directory
+ * that is removed afterwards.
+ */
+@State(Scope.Benchmark)
+public class InsightApplicationState {
+
+    private ConfigurableApplicationContext context;
+    private Path root;
+
+    @Setup
+    public void start() throws Exception {
+        root = Files.createTempDirectory("insight-benchmark");
+        context = new SpringApplicationBuilder(NeuralCodeInsightApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(
+                        "AWS_DEFAULT_REGION=eu-north-1",
+                        "AWS_S3_BUCKET_NAME=benchmark",
+                        "insight.mirror.enabled=false",
+                        "insight.workspace.root=" + root.resolve("workspaces"),
+                        "insight.cache.blob-metrics.path=" + root.resolve("blob-metrics.log"),
+                        "logging.level.com.neuralcode.insight=WARN",
+                        "logging.level.org.springframework.r2dbc=WARN")
+                .run();
+    }
+
+    @TearDown
+    public void stop() throws Exception {
+        context.close();
+        FileUtils.deleteDirectory(root.toFile());
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * A directory for fixture repositories, removed together with the workspaces.
+     */
+    public Path fixtureDirectory(String name) throws Exception {
+        return Files.createDirectories(root.resolve("fixtures").resolve(name));
+    }
+}
@@ -0,0 +1,58 @@
+package com.neuralcode.insight.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of deriving the checkout directory name from a repository URL and branch,
+ * which runs for every clone.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryNamingBenchmark {
+
+    // Naming only needs the canonicalizer
+    private final RepositoryService repositoryService =
+            new RepositoryService(null, null, null, new RepositoryUrlCanonicalizer(), null, null, null, null);
+
+    @State(Scope.Benchmark)
+    public static class Urls {
+
+        @Param({
+                "https://github.com/spring-projects/spring-boot",
+                "git@gitlab.example.com:platform/tools/build-scripts.git"
+        })
+        public String repositoryUrl;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Branches {
+
+        @Param({"main", "feature/user-auth#42"})
+        public String branchName;
+    }
+
+    @Benchmark
+    public String extractProjectNameFromUrl(Urls urls) {
+        return repositoryService.extractProjectNameFromUrl(urls.repositoryUrl);
+    }
+
+    @Benchmark
+    public String cleanBranchName(Branches branches) {
+        return repositoryService.cleanBranchName(branches.branchName);
+    }
+}
@@ -0,0 +1,69 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time of a synchronous analysis from submission to completion: insert, clone of a local
+ * fixture repository, metrics scan, manifest and final status update. Every invocation
+ * clones afresh since clones are only shared while in flight; the checkout is removed
+ * afterwards, outside the measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StartAnalysisBenchmark {
+
+    @Param({"100", "1000"})
+    public int files;
+
+    private AnalysisService analysisService;
+    private RepositoryService repositoryService;
+    private WorkspaceManager workspaceManager;
+    private String repositoryUrl;
+    private String location;
+
+    @Setup
+    public void setUp(InsightApplicationState application) throws Exception {
+        analysisService = application.bean(AnalysisService.class);
+        repositoryService = application.bean(RepositoryService.class);
+        workspaceManager = application.bean(WorkspaceManager.class);
+        repositoryUrl = FixtureRepositories.create(application.fixtureDirectory("analysis-" + files), files, 1);
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteCheckout() {
+        if (location != null) {
+            repositoryService.cleanupLocalDirectory(location).block();
+            workspaceManager.discard(Paths.get(location));
+            location = null;
+        }
+    }
+
+    @Benchmark
+    public CodeAnalysis startAnalysis() {
+        CodeAnalysis analysis = analysisService.startAnalysis(repositoryUrl, FixtureRepositories.BRANCH,
+                CloneOptions.defaults()).block();
+        location = analysis.getStorageLocation();
+        return analysis;
+    }
+}
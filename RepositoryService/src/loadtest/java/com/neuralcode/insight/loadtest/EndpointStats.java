@@ -0,0 +1,55 @@
+package com.neuralcode.insight.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and outcomes of the requests to one endpoint. Latency runs from the moment a
+ * request was due, not from when it was sent, so a lagging generator cannot hide queueing.
+ */
+final class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder errors = new LongAdder();
+
+    void record(long dueNanos, String outcome, boolean error) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - dueNanos);
+        latencies.recordValue(Math.min(Math.max(micros, 0), MAX_LATENCY_MICROS));
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        if (error) {
+            errors.increment();
+        }
+    }
+
+    Map<String, Object> summary(double seconds) {
+        long requests = latencies.getTotalCount();
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("mean", latencies.getMean() / 1000);
+        for (String percentile : new String[]{"50", "90", "99", "99.9"}) {
+            latency.put("p" + percentile, latencies.getValueAtPercentile(Double.parseDouble(percentile)) / 1000.0);
+        }
+        latency.put("max", latencies.getMaxValue() / 1000.0);
+
+        Map<String, Long> byOutcome = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> byOutcome.put(outcome, count.sum()));
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", requests);
+        summary.put("throughputPerSecond", requests / seconds);
+        summary.put("errors", errors.sum());
+        summary.put("errorRate", requests == 0 ? 0.0 : (double) errors.sum() / requests);
+        summary.put("latencyMillis", latency);
+        summary.put("outcomes", byOutcome);
+        return summary;
+    }
+}
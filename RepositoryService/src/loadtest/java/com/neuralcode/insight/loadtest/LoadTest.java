@@ -0,0 +1,250 @@
+package com.neuralcode.insight.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.neuralcode.insight.NeuralCodeInsightApplication;
+import com.neuralcode.insight.dto.AnalysisRequest;
+import com.neuralcode.insight.service.FixtureRepositories;
+import com.neuralcode.insight.service.InsightMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.apache.commons.io.FileUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Drives the service at fixed arrival rates and reports what it sustained.
+ * <p>
+ * The service is booted in this process with the test profile and an in-memory H2
+ * database, and analyses local fixture repositories through {@code file://} URLs, so a run
+ * needs no network. Submissions are synchronous by default since the job queue needs
+ * PostgreSQL; to load the queue instead, point {@code spring.r2dbc.url} at a PostgreSQL
+ * database and pass {@code --loadtest.synchronous=false --insight.queue.worker.enabled=true}. Arrivals follow an open model: requests are sent when
+ * they are due whether or not earlier ones have been answered, which is what exposes the
+ * point where the service falls behind. Submissions and reads share one arrival process
+ * and are told apart at random in proportion to their rates.
+ * <p>
+ * Every argument is passed on to the application, so configurations can be compared by
+ * running with different properties, for example:
+ * <pre>
+ * mvn -Pload-test verify -DskipTests \
+ *     -Dloadtest.args="--loadtest.post-rate=10 --insight.clone.max-concurrent=16"
+ * </pre>
+ * The report is printed and written as JSON to {@code loadtest.report}.
+ */
+public final class LoadTest {
+
+    private static final String SUBMIT = "POST /v1/repository";
+    private static final String GET_ANALYSIS = "GET /v1/id/{id}";
+    private static final String GET_METRICS = "GET /v1/id/{id}/metrics";
+    private static final String LIST_ANALYSES = "GET /v1/analyses";
+
+    private final LoadTestOptions options;
+    private final WebClient webClient;
+    private final List<String> repositoryUrls;
+
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final List<String> submitted = new CopyOnWriteArrayList<>();
+    private final List<String> completed = new CopyOnWriteArrayList<>();
+    private final Set<String> completedIds = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile long measureFromNanos;
+
+    private LoadTest(LoadTestOptions options, WebClient webClient, List<String> repositoryUrls) {
+        this.options = options;
+        this.webClient = webClient;
+        this.repositoryUrls = repositoryUrls;
+        for (String endpoint : List.of(SUBMIT, GET_ANALYSIS, GET_METRICS, LIST_ANALYSES)) {
+            stats.put(endpoint, new EndpointStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        InsightMetrics.monitorSchedulers(Metrics.globalRegistry);
+        Path root = Files.createTempDirectory("insight-loadtest");
+        List<String> arguments = new ArrayList<>(List.of(
+                "--AWS_DEFAULT_REGION=eu-north-1",
+                "--AWS_S3_BUCKET_NAME=loadtest",
+                "--server.port=0",
+                "--insight.mirror.enabled=false",
+                "--insight.workspace.root=" + root.resolve("workspaces"),
+                "--insight.cache.blob-metrics.path=" + root.resolve("blob-metrics.log"),
+                "--logging.level.com.neuralcode.insight=WARN",
+                "--logging.level.org.springframework.r2dbc=WARN"));
+        // Later arguments win, so the caller can override any of the defaults above
+        arguments.addAll(List.of(args));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(NeuralCodeInsightApplication.class)
+                .profiles("test")
+                .run(arguments.toArray(String[]::new))) {
+            LoadTestOptions options = LoadTestOptions.from(context.getEnvironment());
+
+            List<String> repositoryUrls = new ArrayList<>();
+            for (int i = 0; i < options.fixtures(); i++) {
+                repositoryUrls.add(FixtureRepositories.create(root.resolve("fixtures/repository-" + i),
+                        options.fixtureFiles(), options.fixtureCommits()));
+            }
+
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            LoadTest loadTest = new LoadTest(options, webClient(port, options), repositoryUrls);
+
+            try (ResourceSampler sampler = new ResourceSampler(context.getBean(MeterRegistry.class))) {
+                Map<String, Object> report = loadTest.run(sampler);
+                ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+                String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+                Files.createDirectories(options.report().toAbsolutePath().getParent());
+                Files.writeString(options.report(), json);
+                System.out.println(json);
+            }
+        } finally {
+            FileUtils.deleteQuietly(root.toFile());
+        }
+    }
+
+    private Map<String, Object> run(ResourceSampler sampler) throws InterruptedException {
+        double totalRate = options.postRate() + options.getRate();
+        long startNanos = System.nanoTime();
+        measureFromNanos = startNanos + options.warmup().toNanos();
+        long endNanos = measureFromNanos + options.duration().toNanos();
+
+        long dueNanos = startNanos;
+        boolean sampling = false;
+        while (true) {
+            dueNanos += interarrivalNanos(totalRate);
+            if (dueNanos >= endNanos) {
+                break;
+            }
+            LockSupport.parkNanos(dueNanos - System.nanoTime());
+            if (!sampling && dueNanos >= measureFromNanos) {
+                sampler.start();
+                sampling = true;
+            }
+            if (ThreadLocalRandom.current().nextDouble(totalRate) < options.postRate()) {
+                submit(dueNanos);
+            } else {
+                read(dueNanos);
+            }
+        }
+
+        // Let requests already sent finish, up to the request timeout
+        long drainUntil = System.nanoTime() + options.requestTimeout().toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        double seconds = options.duration().toMillis() / 1000.0;
+        stats.forEach((endpoint, endpointStats) -> endpoints.put(endpoint, endpointStats.summary(seconds)));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", options);
+        report.put("endpoints", endpoints);
+        report.put("analysesSubmitted", submitted.size());
+        report.put("analysesSeenCompleted", completed.size());
+        report.put("unfinishedRequests", inFlight.get());
+        report.put("resources", sampler.summary());
+        return report;
+    }
+
+    private long interarrivalNanos(double rate) {
+        double seconds = options.poisson()
+                ? -Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate
+                : 1 / rate;
+        return (long) (seconds * 1_000_000_000L);
+    }
+
+    private void submit(long dueNanos) {
+        String repositoryUrl = repositoryUrls.get(ThreadLocalRandom.current().nextInt(repositoryUrls.size()));
+        send(SUBMIT, dueNanos, webClient.post()
+                .uri(uri -> uri.path("/api/analysis/v1/repository").queryParam("wait", options.synchronous()).build())
+                .bodyValue(new AnalysisRequest(repositoryUrl, FixtureRepositories.BRANCH)), analysis -> {
+            submitted.add(analysis.path("analysisId").asText());
+            trackCompletion(analysis);
+        });
+    }
+
+    private void read(long dueNanos) {
+        int choice = ThreadLocalRandom.current().nextInt(10);
+        if (!completed.isEmpty() && choice < 3) {
+            String id = completed.get(ThreadLocalRandom.current().nextInt(completed.size()));
+            send(GET_METRICS, dueNanos, webClient.get().uri("/api/analysis/v1/id/{id}/metrics", id), body -> {
+            });
+        } else if (!submitted.isEmpty() && choice < 8) {
+            String id = submitted.get(ThreadLocalRandom.current().nextInt(submitted.size()));
+            send(GET_ANALYSIS, dueNanos, webClient.get().uri("/api/analysis/v1/id/{id}", id), this::trackCompletion);
+        } else {
+            send(LIST_ANALYSES, dueNanos, webClient.get().uri("/api/analysis/v1/analyses?limit=20"), body -> {
+            });
+        }
+    }
+
+    /**
+     * Sends the request without waiting for it, recording its outcome if it was due after
+     * the warmup, and hands successful response bodies to {@code onSuccess}.
+     */
+    private void send(String endpoint, long dueNanos, WebClient.RequestHeadersSpec<?> request,
+                      Consumer<JsonNode> onSuccess) {
+        EndpointStats endpointStats = stats.get(endpoint);
+        boolean measured = dueNanos >= measureFromNanos;
+        inFlight.incrementAndGet();
+        request.exchangeToMono(response -> response.bodyToMono(JsonNode.class)
+                        .defaultIfEmpty(MissingNode.getInstance())
+                        .doOnNext(body -> {
+                            if (measured) {
+                                int status = response.statusCode().value();
+                                endpointStats.record(dueNanos, Integer.toString(status), status >= 400);
+                            }
+                        })
+                        .filter(body -> response.statusCode().is2xxSuccessful()))
+                .timeout(options.requestTimeout())
+                .doOnError(error -> {
+                    if (measured) {
+                        endpointStats.record(dueNanos, error.getClass().getSimpleName(), true);
+                    }
+                })
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe(onSuccess, error -> {
+                    // Already recorded
+                });
+    }
+
+    private void trackCompletion(JsonNode analysis) {
+        String analysisId = analysis.path("analysisId").asText();
+        if ("COMPLETED".equals(analysis.path("status").asText()) && completedIds.add(analysisId)) {
+            completed.add(analysisId);
+        }
+    }
+
+    private static WebClient webClient(int port, LoadTestOptions options) {
+        ConnectionProvider connections = ConnectionProvider.builder("loadtest")
+                .maxConnections(10_000)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+                        .responseTimeout(options.requestTimeout())))
+                .build();
+    }
+}
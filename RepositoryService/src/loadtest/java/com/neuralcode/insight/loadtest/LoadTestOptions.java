@@ -0,0 +1,45 @@
+package com.neuralcode.insight.loadtest;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings of one load test run, read from {@code loadtest.*} properties so they can be
+ * passed as {@code --loadtest.post-rate=5} next to the application properties under test.
+ *
+ * @param postRate       analyses submitted per second
+ * @param getRate        reads per second, spread over the GET endpoints
+ * @param poisson        exponential inter-arrival times rather than a fixed interval
+ * @param synchronous    submit with {@code ?wait=true}, holding the request until the
+ *                       analysis completes; queued submissions need the job queue, whose
+ *                       SQL only runs on PostgreSQL
+ * @param warmup         time at the start whose requests are not reported
+ * @param duration       measured time after the warmup
+ * @param requestTimeout time after which a request counts as failed
+ * @param fixtures       number of distinct fixture repositories to submit
+ * @param fixtureFiles   source files per fixture repository
+ * @param fixtureCommits commits per fixture repository
+ * @param report         where the JSON report is written
+ */
+record LoadTestOptions(double postRate, double getRate, boolean poisson, boolean synchronous, Duration warmup,
+                       Duration duration, Duration requestTimeout, int fixtures, int fixtureFiles,
+                       int fixtureCommits, Path report) {
+
+    static LoadTestOptions from(Environment environment) {
+        return new LoadTestOptions(
+                environment.getProperty("loadtest.post-rate", Double.class, 2.0),
+                environment.getProperty("loadtest.get-rate", Double.class, 20.0),
+                !"constant".equals(environment.getProperty("loadtest.arrivals", "poisson")),
+                environment.getProperty("loadtest.synchronous", Boolean.class, true),
+                environment.getProperty("loadtest.warmup", Duration.class, Duration.ofSeconds(10)),
+                environment.getProperty("loadtest.duration", Duration.class, Duration.ofSeconds(60)),
+                environment.getProperty("loadtest.request-timeout", Duration.class, Duration.ofSeconds(60)),
+                environment.getProperty("loadtest.fixtures", Integer.class, 8),
+                environment.getProperty("loadtest.fixture-files", Integer.class, 200),
+                environment.getProperty("loadtest.fixture-commits", Integer.class, 5),
+                Paths.get(environment.getProperty("loadtest.report", "target/loadtest-report.json")));
+    }
+}
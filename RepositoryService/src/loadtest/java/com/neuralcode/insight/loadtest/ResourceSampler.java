@@ -0,0 +1,115 @@
+package com.neuralcode.insight.loadtest;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.UnixOperatingSystemMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Samples process resources and the service's own gauges once a second and keeps their
+ * mean and maximum. The load generator shares the process with the service, so the CPU,
+ * heap and thread figures include it.
+ */
+final class ResourceSampler implements AutoCloseable {
+
+    /**
+     * Gauges of the service that show where work piles up.
+     */
+    private static final List<String> SERVICE_GAUGES = List.of(
+            "insight.clone.active", "insight.clone.queued", "insight.queue.depth", "insight.queue.active",
+            "r2dbc.pool.acquired", "r2dbc.pool.pending");
+
+    private final Map<String, Series> series = new LinkedHashMap<>();
+    private final Map<String, DoubleSupplier> probes = new LinkedHashMap<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "loadtest-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+    private long gcMillisAtStart;
+
+    ResourceSampler(MeterRegistry meterRegistry) {
+        OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        probes.put("processCpu", os::getProcessCpuLoad);
+        probes.put("systemCpu", os::getCpuLoad);
+        probes.put("heapUsedBytes", () -> memory.getHeapMemoryUsage().getUsed());
+        probes.put("threads", threads::getThreadCount);
+        if (os instanceof UnixOperatingSystemMXBean unix) {
+            probes.put("openFileDescriptors", unix::getOpenFileDescriptorCount);
+        }
+        for (String name : SERVICE_GAUGES) {
+            Gauge gauge = meterRegistry.find(name).gauge();
+            if (gauge != null) {
+                probes.put(name, gauge::value);
+            }
+        }
+    }
+
+    void start() {
+        gcMillisAtStart = gcMillis();
+        sampler.scheduleAtFixedRate(this::sample, 0, 1, TimeUnit.SECONDS);
+    }
+
+    Map<String, Object> summary() {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        synchronized (series) {
+            series.forEach((name, values) -> summary.put(name, Map.of("mean", values.mean(), "max", values.max)));
+        }
+        summary.put("gcMillis", gcMillis() - gcMillisAtStart);
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void sample() {
+        synchronized (series) {
+            probes.forEach((name, probe) -> {
+                double value = probe.getAsDouble();
+                if (!Double.isNaN(value) && value >= 0) {
+                    series.computeIfAbsent(name, key -> new Series()).add(value);
+                }
+            });
+        }
+    }
+
+    private long gcMillis() {
+        return collectors.stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static final class Series {
+
+        private double sum;
+        private long count;
+        private double max;
+
+        void add(double value) {
+            sum += value;
+            count++;
+            max = Math.max(max, value);
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+}
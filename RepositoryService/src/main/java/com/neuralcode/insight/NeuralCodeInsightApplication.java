@@ -1,5 +1,7 @@
 package com.neuralcode.insight;
 
+import com.neuralcode.insight.service.InsightMetrics;
+import io.micrometer.core.instrument.Metrics;
 import io.r2dbc.spi.ConnectionFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.SpringApplication;
@@ -15,6 +17,8 @@ import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
 public class NeuralCodeInsightApplication {
 
     public static void main(String[] args) {
+        // Boot adds its registries to the global one, including those created after this
+        InsightMetrics.monitorSchedulers(Metrics.globalRegistry);
         SpringApplication.run(NeuralCodeInsightApplication.class, args);
     }
 
@@ -1,27 +1,64 @@
 package com.neuralcode.insight.controller;
 
+import com.neuralcode.insight.dto.AnalysisEvent;
+import com.neuralcode.insight.dto.AnalysisFilter;
+import com.neuralcode.insight.dto.AnalysisPage;
 import com.neuralcode.insight.dto.AnalysisRequest;
 import com.neuralcode.insight.dto.AnalysisResponse;
+import com.neuralcode.insight.dto.BatchSubmissionResult;
+import com.neuralcode.insight.dto.ManifestEntry;
+import com.neuralcode.insight.dto.RepositoryMetrics;
 import com.neuralcode.insight.exception.InvalidAnalysisException;
+import com.neuralcode.insight.service.AnalysisBatchService;
+import com.neuralcode.insight.service.AnalysisEventPublisher;
 import com.neuralcode.insight.service.AnalysisService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import com.neuralcode.insight.entity.CodeAnalysis;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/analysis")
 @RequiredArgsConstructor
 public class AnalysisController {
 
     private final AnalysisService analysisService;
+    private final AnalysisEventPublisher eventPublisher;
+    private final AnalysisBatchService analysisBatchService;
 
     @PostMapping("/v1/repository")
-    public Mono<AnalysisResponse> startAnalysis(@Valid @RequestBody AnalysisRequest request) {
-        return analysisService.startAnalysis(request.repositoryUrl(), request.branchName())
-                .map(this::toResponse);
+    public Mono<ResponseEntity<AnalysisResponse>> startAnalysis(@Valid @RequestBody AnalysisRequest request,
+                                                                @RequestParam(defaultValue = "false") boolean wait) {
+        if (wait) {
+            return analysisService.startAnalysis(request.repositoryUrl(), request.branchName(), request.cloneOptions())
+                    .map(analysis -> ResponseEntity.ok(toResponse(analysis)));
+        }
+        return analysisService.submitAnalysis(request.repositoryUrl(), request.branchName(), request.cloneOptions())
+                .map(analysis -> ResponseEntity.accepted().body(toResponse(analysis)));
+    }
+
+    /**
+     * Accepts many analyses at once, as a JSON array or an NDJSON stream. Each item is
+     * answered with its own result, streamed back as soon as its chunk is committed.
+     */
+    @PostMapping(value = "/v1/repositories",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Flux<BatchSubmissionResult> submitBatch(@RequestBody Flux<AnalysisRequest> requests) {
+        return analysisBatchService.submitBatch(requests);
     }
 
     @GetMapping("/v1/id/{id}")
@@ -33,8 +70,68 @@ public class AnalysisController {
                 .map(this::toResponse);
     }
 
-    @GetMapping("/v1/url/{url}")
-    public Flux<AnalysisResponse> getAnalysisForRepositoryURL(@PathVariable("url") String url){
+    /**
+     * Cancels the analysis, stopping its clone if one is running. Answers 409 once the
+     * analysis has already finished.
+     */
+    @DeleteMapping("/v1/id/{id}")
+    public Mono<AnalysisResponse> cancelAnalysis(@PathVariable String id) {
+        return analysisService.cancelAnalysis(id)
+                .map(this::toResponse);
+    }
+
+    @GetMapping("/v1/id/{id}/metrics")
+    public Mono<RepositoryMetrics> getAnalysisMetrics(@PathVariable String id) {
+        return analysisService.getMetrics(id);
+    }
+
+    /**
+     * Serves the checkout's content manifest, either as the raw binary file or decoded
+     * into one JSON entry per line.
+     */
+    @GetMapping(value = "/v1/id/{id}/manifest", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<ResponseEntity<Resource>> getManifestFile(@PathVariable String id) {
+        return analysisService.getManifest(id)
+                .map(manifest -> ResponseEntity.ok()
+                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + id + ".manifest\"")
+                        .body(new FileSystemResource(manifest)));
+    }
+
+    @GetMapping(value = "/v1/id/{id}/manifest", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ManifestEntry> getManifestEntries(@PathVariable String id) {
+        return analysisService.getManifestEntries(id);
+    }
+
+    @GetMapping(value = "/v1/id/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AnalysisEvent>> streamAnalysisEvents(@PathVariable String id) {
+        return analysisService.streamEvents(id)
+                .map(event -> ServerSentEvent.builder(event).event(event.type()).build());
+    }
+
+    @GetMapping(value = "/v1/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<AnalysisEvent>> streamAllEvents() {
+        return eventPublisher.events()
+                .map(event -> ServerSentEvent.builder(event).event(event.type()).build());
+    }
+
+    @GetMapping("/v1/analyses")
+    public Mono<AnalysisPage<AnalysisResponse>> listAnalyses(
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String repositoryUrl,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        AnalysisFilter filter = new AnalysisFilter(status, repositoryUrl, from, to);
+        return analysisService.listAnalyses(filter, cursor, limit)
+                .map(page -> page.map(this::toResponse));
+    }
+
+    @GetMapping({"/v1/url/{url}", "/v1/url"})
+    public Flux<AnalysisResponse> getAnalysisForRepositoryURL(@PathVariable(value = "url", required = false) String pathUrl,
+                                                              @RequestParam(value = "url", required = false) String queryUrl){
+        // URLs containing slashes can only be passed as a query parameter
+        String url = queryUrl != null ? queryUrl : pathUrl;
         if(url == null || url.trim().isEmpty()){
             throw new InvalidAnalysisException("Please provide valid Repository Url.");
         }
@@ -1,13 +1,20 @@
 package com.neuralcode.insight.controller;
 
+import com.neuralcode.insight.dto.AnalysisFilter;
+import com.neuralcode.insight.dto.AnalysisPage;
+import com.neuralcode.insight.dto.CacheStatistics;
+import com.neuralcode.insight.dto.UploadStatistics;
 import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.service.AnalysisCache;
 import com.neuralcode.insight.service.AnalysisService;
+import com.neuralcode.insight.service.BlobMetricsCache;
+import com.neuralcode.insight.service.S3StorageService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -16,10 +23,14 @@ import reactor.core.publisher.Mono;
 public class DataViewerController {
 
     private final AnalysisService analysisService;
+    private final AnalysisCache analysisCache;
+    private final BlobMetricsCache blobMetricsCache;
+    private final S3StorageService s3StorageService;
 
     @GetMapping("/analyses")
-    public Flux<CodeAnalysis> viewAllAnalyses() {
-        return analysisService.getAllAnalyses();
+    public Mono<AnalysisPage<CodeAnalysis>> viewAllAnalyses(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(required = false) Integer limit) {
+        return analysisService.listAnalyses(AnalysisFilter.none(), cursor, limit);
     }
 
     @GetMapping("/analyses/count")
@@ -31,4 +42,19 @@ public class DataViewerController {
     public Mono<CodeAnalysis> viewSpecificAnalysis(@PathVariable String id) {
         return analysisService.getAnalysis(id);
     }
+
+    @GetMapping("/cache/analyses")
+    public Mono<CacheStatistics> analysisCacheStatistics() {
+        return Mono.fromSupplier(analysisCache::statistics);
+    }
+
+    @GetMapping("/cache/blobs")
+    public Mono<CacheStatistics> blobCacheStatistics() {
+        return Mono.fromSupplier(blobMetricsCache::statistics);
+    }
+
+    @GetMapping("/storage/uploads")
+    public Mono<UploadStatistics> uploadStatistics() {
+        return Mono.fromSupplier(s3StorageService::statistics);
+    }
 }
@@ -0,0 +1,24 @@
+package com.neuralcode.insight.dto;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+
+import java.time.LocalDateTime;
+
+public record AnalysisEvent(String analysisId, String type, String status, String task,
+                            Integer completed, Integer total, LocalDateTime timestamp) {
+
+    public static final String STATUS = "status";
+    public static final String PROGRESS = "progress";
+
+    public static AnalysisEvent status(String analysisId, String status) {
+        return new AnalysisEvent(analysisId, STATUS, status, null, null, null, LocalDateTime.now());
+    }
+
+    public static AnalysisEvent progress(String analysisId, String task, int completed, int total) {
+        return new AnalysisEvent(analysisId, PROGRESS, null, task, completed, total, LocalDateTime.now());
+    }
+
+    public boolean isTerminal() {
+        return STATUS.equals(type) && AnalysisStatus.isTerminal(status);
+    }
+}
@@ -0,0 +1,10 @@
+package com.neuralcode.insight.dto;
+
+import java.time.LocalDateTime;
+
+public record AnalysisFilter(String status, String repositoryUrl, LocalDateTime from, LocalDateTime to) {
+
+    public static AnalysisFilter none() {
+        return new AnalysisFilter(null, null, null, null);
+    }
+}
@@ -0,0 +1,14 @@
+package com.neuralcode.insight.dto;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. {@code nextCursor} is null on the last page.
+ */
+public record AnalysisPage<T>(List<T> items, String nextCursor) {
+
+    public <R> AnalysisPage<R> map(Function<T, R> mapper) {
+        return new AnalysisPage<>(items.stream().map(mapper).toList(), nextCursor);
+    }
+}
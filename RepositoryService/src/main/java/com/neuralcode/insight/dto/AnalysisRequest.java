@@ -2,6 +2,7 @@ package com.neuralcode.insight.dto;
 
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
 
 public record AnalysisRequest(
 
@@ -10,5 +11,19 @@ public record AnalysisRequest(
 
         @NotBlank(message = "Branch name is required")
         @Pattern(regexp = "^[\\w\\-\\./_]+$", message = "Invalid branch name format")
-        String branchName
-) {}
+        String branchName,
+
+        CloneStrategy cloneStrategy,
+
+        @Positive(message = "Depth must be a positive number")
+        Integer depth
+) {
+
+    public AnalysisRequest(String repositoryUrl, String branchName) {
+        this(repositoryUrl, branchName, null, null);
+    }
+
+    public CloneOptions cloneOptions() {
+        return CloneOptions.of(cloneStrategy, depth);
+    }
+}
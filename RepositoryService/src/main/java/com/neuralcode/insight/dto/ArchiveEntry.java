@@ -0,0 +1,10 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * Location of one file inside a checkout archive. {@code offset} and
+ * {@code compressedLength} delimit the file's gzip member within the archive object, so
+ * the file can be fetched with a single ranged read; {@code sizeBytes} is its
+ * uncompressed size.
+ */
+public record ArchiveEntry(String path, long offset, long compressedLength, long sizeBytes) {
+}
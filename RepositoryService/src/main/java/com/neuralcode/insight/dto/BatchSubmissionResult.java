@@ -0,0 +1,17 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * Outcome of one item of a batch submission. {@code index} is the item's position in the
+ * request body; rejected items carry an error instead of an analysis id.
+ */
+public record BatchSubmissionResult(long index, String analysisId, String status, String repositoryUrl,
+                                    String error) {
+
+    public static BatchSubmissionResult accepted(long index, String analysisId, String status, String repositoryUrl) {
+        return new BatchSubmissionResult(index, analysisId, status, repositoryUrl, null);
+    }
+
+    public static BatchSubmissionResult rejected(long index, String repositoryUrl, String error) {
+        return new BatchSubmissionResult(index, null, null, repositoryUrl, error);
+    }
+}
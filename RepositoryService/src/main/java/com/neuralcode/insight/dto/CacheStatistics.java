@@ -0,0 +1,8 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * Point-in-time counters of an in-memory cache, cumulative since startup.
+ */
+public record CacheStatistics(long size, long hitCount, long missCount, double hitRate,
+                              long evictionCount, long loadFailureCount) {
+}
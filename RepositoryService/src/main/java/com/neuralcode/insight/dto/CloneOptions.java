@@ -0,0 +1,20 @@
+package com.neuralcode.insight.dto;
+
+public record CloneOptions(CloneStrategy strategy, int depth) {
+
+    public static final int DEFAULT_SHALLOW_DEPTH = 1;
+
+    public static CloneOptions defaults() {
+        return new CloneOptions(CloneStrategy.FULL, 0);
+    }
+
+    public static CloneOptions of(CloneStrategy strategy, Integer depth) {
+        if (strategy == null) {
+            return defaults();
+        }
+        if (strategy == CloneStrategy.SHALLOW) {
+            return new CloneOptions(strategy, depth != null ? depth : DEFAULT_SHALLOW_DEPTH);
+        }
+        return new CloneOptions(strategy, 0);
+    }
+}
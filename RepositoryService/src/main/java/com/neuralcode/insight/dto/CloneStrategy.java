@@ -0,0 +1,10 @@
+package com.neuralcode.insight.dto;
+
+public enum CloneStrategy {
+    // All branches and full history; served from the mirror cache when enabled
+    FULL,
+    // Only the tip of the requested branch, truncated to the requested depth
+    SHALLOW,
+    // Full history of the requested branch only
+    SINGLE_BRANCH
+}
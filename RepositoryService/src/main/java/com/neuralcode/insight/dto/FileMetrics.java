@@ -0,0 +1,8 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * Metrics of one source file. {@code path} is relative to the root of the checkout.
+ */
+public record FileMetrics(String path, long sizeBytes, int totalLines, int codeLines, int commentLines,
+                          int blankLines, int classCount, int methodCount) {
+}
@@ -0,0 +1,8 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * One file of a checkout's content manifest. {@code path} is relative to the root of the
+ * checkout and {@code sha256} is the lower-case hex digest of the file's content.
+ */
+public record ManifestEntry(String path, long sizeBytes, String sha256) {
+}
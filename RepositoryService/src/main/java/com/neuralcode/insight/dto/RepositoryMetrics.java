@@ -0,0 +1,11 @@
+package com.neuralcode.insight.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Totals over all scanned source files of one analysis.
+ */
+public record RepositoryMetrics(String analysisId, long fileCount, long totalBytes, long totalLines, long codeLines,
+                                long commentLines, long blankLines, long classCount, long methodCount,
+                                LocalDateTime computedAt) {
+}
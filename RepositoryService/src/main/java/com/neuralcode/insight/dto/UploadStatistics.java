@@ -0,0 +1,9 @@
+package com.neuralcode.insight.dto;
+
+/**
+ * Configuration and running totals of the S3 directory uploads since startup.
+ * {@code activeUploads} counts file transfers currently in flight.
+ */
+public record UploadStatistics(int maxConcurrency, long partSizeBytes, int activeUploads, long filesUploaded,
+                               long filesRetried, long filesFailed, long bytesUploaded) {
+}
@@ -0,0 +1,42 @@
+package com.neuralcode.insight.entity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lifecycle of a {@link CodeAnalysis}. Each status lists the statuses it may be entered
+ * from; status writes are conditional on the stored status being one of them, so two
+ * writers racing on the same analysis cannot overwrite each other's transition.
+ */
+public enum AnalysisStatus {
+    // Entered again from STORED_IN_LOCAL when the scan of a stored checkout is retried
+    QUEUED("STARTED", "STORED_IN_LOCAL"),
+    STARTED("QUEUED", "STARTED"),
+    STORED_IN_LOCAL("STARTED"),
+    COMPLETED("STORED_IN_LOCAL"),
+    ERROR("QUEUED", "STARTED", "STORED_IN_LOCAL"),
+    // The local checkout was removed to free disk space. An analysis still waiting for its
+    // scan keeps its status and is cloned again if its checkout is gone
+    EVICTED("COMPLETED"),
+    // Stopped on request or because the client waiting for it went away
+    CANCELLED("QUEUED", "STARTED", "STORED_IN_LOCAL");
+
+    private final Set<String> predecessors;
+
+    AnalysisStatus(String... predecessors) {
+        this.predecessors = Set.of(predecessors);
+    }
+
+    public List<String> predecessors() {
+        return List.copyOf(predecessors);
+    }
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == ERROR || this == EVICTED || this == CANCELLED;
+    }
+
+    public static boolean isTerminal(String status) {
+        return Arrays.stream(values()).anyMatch(value -> value.name().equals(status) && value.isTerminal());
+    }
+}
@@ -21,6 +21,13 @@ public class CodeAnalysis implements Persistable<String> {
     @Column("repository_url")
     private String repositoryUrl;
 
+    @Column("canonical_url")
+    private String canonicalUrl;
+
+    // SHA-256 of canonical_url, the indexed key for repository lookups
+    @Column("repository_url_hash")
+    private String repositoryUrlHash;
+
     @Column("branch_name ")
     private String branchName;
     private String status;
@@ -37,6 +44,37 @@ public class CodeAnalysis implements Persistable<String> {
     @Column("storage_location")
     private String storageLocation;
 
+    @Column("clone_strategy")
+    private String cloneStrategy;
+
+    @Column("clone_depth")
+    private Integer cloneDepth;
+
+    @Column("commit_sha")
+    private String commitSha;
+
+    // Set when the checkout was produced by a concurrent identical analysis
+    @Column("source_analysis_id")
+    private String sourceAnalysisId;
+
+    // Earlier analysis whose metrics were carried forward for unchanged files
+    @Column("baseline_analysis_id")
+    private String baselineAnalysisId;
+
+    // Object store key of the checkout archive, when one has been uploaded
+    @Column("archive_key")
+    private String archiveKey;
+
+    // Transfer figures of the clone, only set on the analysis that performed it
+    @Column("clone_objects")
+    private Long cloneObjects;
+
+    @Column("clone_bytes")
+    private Long cloneBytes;
+
+    @Column("clone_duration_ms")
+    private Long cloneDurationMs;
+
     @Transient
     @Setter(AccessLevel.NONE)
     private boolean isNew = true;
@@ -53,6 +91,29 @@ public class CodeAnalysis implements Persistable<String> {
         return this;
     }
 
+    /**
+     * Returns a field-by-field copy, so cached snapshots are never changed by callers.
+     */
+    public CodeAnalysis copy() {
+        CodeAnalysis copy = new CodeAnalysis(id, repositoryUrl, branchName, status, startTime);
+        copy.canonicalUrl = canonicalUrl;
+        copy.repositoryUrlHash = repositoryUrlHash;
+        copy.endTime = endTime;
+        copy.errorMessage = errorMessage;
+        copy.storageLocation = storageLocation;
+        copy.cloneStrategy = cloneStrategy;
+        copy.cloneDepth = cloneDepth;
+        copy.commitSha = commitSha;
+        copy.sourceAnalysisId = sourceAnalysisId;
+        copy.baselineAnalysisId = baselineAnalysisId;
+        copy.archiveKey = archiveKey;
+        copy.cloneObjects = cloneObjects;
+        copy.cloneBytes = cloneBytes;
+        copy.cloneDurationMs = cloneDurationMs;
+        copy.isNew = isNew;
+        return copy;
+    }
+
     public CodeAnalysis(String id, String repositoryUrl, String branchName, String status, LocalDateTime startTime) {
         this.id = id;
         this.repositoryUrl = repositoryUrl;
@@ -0,0 +1,13 @@
+package com.neuralcode.insight.exception;
+import lombok.Getter;
+
+@Getter
+public class AnalysisCancelledException extends RuntimeException {
+    private final String analysisId;
+
+    public AnalysisCancelledException(String analysisId) {
+        super("Analysis " + analysisId + " was cancelled");
+        this.analysisId = analysisId;
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.neuralcode.insight.exception;
+import lombok.Getter;
+
+@Getter
+public class AnalysisStateConflictException extends RuntimeException {
+    private final String analysisId;
+
+    public AnalysisStateConflictException(String analysisId, String targetStatus) {
+        super("Analysis " + analysisId + " cannot move to " + targetStatus + " from its current status");
+        this.analysisId = analysisId;
+    }
+
+}
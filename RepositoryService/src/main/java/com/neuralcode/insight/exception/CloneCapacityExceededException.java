@@ -0,0 +1,13 @@
+package com.neuralcode.insight.exception;
+import lombok.Getter;
+
+@Getter
+public class CloneCapacityExceededException extends RuntimeException {
+    private final String host;
+
+    public CloneCapacityExceededException(String host, String message) {
+        super(message);
+        this.host = host;
+    }
+
+}
@@ -3,6 +3,7 @@ package com.neuralcode.insight.exception;
 import com.neuralcode.insight.dto.ErrorResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -42,6 +43,39 @@ public class GlobalExceptionHandler {
         return Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error));
     }
 
+    @ExceptionHandler(WorkspaceCapacityExceededException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleWorkspaceCapacityExceededException(
+            WorkspaceCapacityExceededException ex) {
+        log.warn("Rejected clone with {} usable workspace bytes: {}", ex.getUsableBytes(), ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .errorCode("WORKSPACE_CAPACITY_EXCEEDED")
+                .message("Not enough free disk space for a new checkout")
+                .details(ex.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "60")
+                .body(error));
+    }
+
+    @ExceptionHandler(CloneCapacityExceededException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleCloneCapacityExceededException(CloneCapacityExceededException ex) {
+        log.warn("Rejected clone for host {}: {}", ex.getHost(), ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .errorCode("CLONE_CAPACITY_EXCEEDED")
+                .message("Too many clones are in progress")
+                .details(ex.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return Mono.just(ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "30")
+                .body(error));
+    }
+
     @ExceptionHandler(S3UploadException.class)
     public Mono<ResponseEntity<ErrorResponse>> handleS3UploadException(S3UploadException ex) {
         log.error("S3 upload failed for path: {}", ex.getLocalPath(), ex);
@@ -69,6 +103,48 @@ public class GlobalExceptionHandler {
         return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(error));
     }
 
+    @ExceptionHandler(ManifestNotAvailableException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleManifestNotAvailableException(ManifestNotAvailableException ex) {
+        log.warn("Manifest of analysis {} not available: {}", ex.getAnalysisId(), ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .errorCode("MANIFEST_NOT_AVAILABLE")
+                .message("No content manifest is available for this analysis")
+                .details(ex.getMessage())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND).body(error));
+    }
+
+    @ExceptionHandler(AnalysisStateConflictException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleAnalysisStateConflictException(AnalysisStateConflictException ex) {
+        log.warn("Analysis state conflict: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .errorCode("ANALYSIS_STATE_CONFLICT")
+                .message("The analysis is not in a state that allows this change.")
+                .details("Analysis Id: " + ex.getAnalysisId())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(error));
+    }
+
+    @ExceptionHandler(AnalysisCancelledException.class)
+    public Mono<ResponseEntity<ErrorResponse>> handleAnalysisCancelledException(AnalysisCancelledException ex) {
+        log.info("Analysis cancelled: {}", ex.getMessage());
+
+        ErrorResponse error = ErrorResponse.builder()
+                .errorCode("ANALYSIS_CANCELLED")
+                .message("The analysis was cancelled before it completed.")
+                .details("Analysis Id: " + ex.getAnalysisId())
+                .timestamp(LocalDateTime.now())
+                .build();
+
+        return Mono.just(ResponseEntity.status(HttpStatus.CONFLICT).body(error));
+    }
+
     @ExceptionHandler(InvalidAnalysisException.class)
     public Mono<ResponseEntity<ErrorResponse>> handleInvalidAnalysisException(InvalidAnalysisException ex) {
         log.warn("Invalid analysis request: {}", ex.getMessage());
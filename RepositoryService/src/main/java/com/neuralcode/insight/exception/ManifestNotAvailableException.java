@@ -0,0 +1,13 @@
+package com.neuralcode.insight.exception;
+import lombok.Getter;
+
+@Getter
+public class ManifestNotAvailableException extends RuntimeException {
+    private final String analysisId;
+
+    public ManifestNotAvailableException(String analysisId, String message) {
+        super(message);
+        this.analysisId = analysisId;
+    }
+
+}
@@ -0,0 +1,13 @@
+package com.neuralcode.insight.exception;
+import lombok.Getter;
+
+@Getter
+public class WorkspaceCapacityExceededException extends RuntimeException {
+    private final long usableBytes;
+
+    public WorkspaceCapacityExceededException(long usableBytes, String message) {
+        super(message);
+        this.usableBytes = usableBytes;
+    }
+
+}
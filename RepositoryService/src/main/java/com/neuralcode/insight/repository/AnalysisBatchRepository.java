@@ -0,0 +1,52 @@
+package com.neuralcode.insight.repository;
+
+import com.neuralcode.insight.entity.CodeAnalysis;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Bulk writes for batch submissions. Each call issues one multi-row INSERT for the whole
+ * list instead of one statement per analysis.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AnalysisBatchRepository {
+
+    private static final String ROW = "(:id%1$d, :repositoryUrl%1$d, :canonicalUrl%1$d, :repositoryUrlHash%1$d, "
+            + ":branchName%1$d, :status%1$d, :startTime%1$d, :cloneStrategy%1$d, :cloneDepth%1$d)";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Long> insertAll(List<CodeAnalysis> analyses) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < analyses.size(); i++) {
+            values.add(ROW.formatted(i));
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("""
+                INSERT INTO code_analysis (id, repository_url, canonical_url, repository_url_hash, branch_name,
+                                           status, start_time, clone_strategy, clone_depth)
+                VALUES\s""" + values);
+
+        for (int i = 0; i < analyses.size(); i++) {
+            CodeAnalysis analysis = analyses.get(i);
+            spec = spec.bind("id" + i, analysis.getId())
+                    .bind("repositoryUrl" + i, analysis.getRepositoryUrl())
+                    .bind("canonicalUrl" + i, analysis.getCanonicalUrl())
+                    .bind("repositoryUrlHash" + i, analysis.getRepositoryUrlHash())
+                    .bind("branchName" + i, analysis.getBranchName())
+                    .bind("status" + i, analysis.getStatus())
+                    .bind("startTime" + i, analysis.getStartTime())
+                    .bind("cloneStrategy" + i, analysis.getCloneStrategy());
+            spec = analysis.getCloneDepth() != null
+                    ? spec.bind("cloneDepth" + i, analysis.getCloneDepth())
+                    : spec.bindNull("cloneDepth" + i, Integer.class);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+}
@@ -0,0 +1,156 @@
+package com.neuralcode.insight.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Durable work queue backed by the {@code analysis_job} table. Jobs are claimed with
+ * {@code FOR UPDATE SKIP LOCKED} so any number of service instances can poll the same
+ * table without handing a job to two workers. All timestamps come from the database
+ * clock so leases are comparable across instances. Leases and delays are bound in
+ * milliseconds, rounded up, so a sub-second backoff never makes a job due at once.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AnalysisJobRepository {
+
+    private final DatabaseClient databaseClient;
+
+    public record ClaimedJob(String analysisId, int attempts) {
+    }
+
+    public Mono<Void> enqueue(String analysisId) {
+        return databaseClient.sql("""
+                        INSERT INTO analysis_job (analysis_id, state, attempts, available_at)
+                        VALUES (:analysisId, 'QUEUED', 0, LOCALTIMESTAMP)
+                        """)
+                .bind("analysisId", analysisId)
+                .then();
+    }
+
+    /**
+     * Enqueues several analyses with a single multi-row INSERT.
+     */
+    public Mono<Long> enqueueAll(List<String> analysisIds) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < analysisIds.size(); i++) {
+            values.add("(:analysisId" + i + ", 'QUEUED', 0, LOCALTIMESTAMP)");
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                "INSERT INTO analysis_job (analysis_id, state, attempts, available_at) VALUES " + values);
+        for (int i = 0; i < analysisIds.size(); i++) {
+            spec = spec.bind("analysisId" + i, analysisIds.get(i));
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Claims up to {@code limit} jobs that are either queued and due, or whose lease has
+     * expired because the worker holding them died.
+     */
+    public Flux<ClaimedJob> claim(String workerId, int limit, Duration leaseDuration) {
+        return databaseClient.sql("""
+                        UPDATE analysis_job
+                        SET state = 'RUNNING',
+                            lease_owner = :workerId,
+                            lease_expires_at = LOCALTIMESTAMP + :leaseMillis * INTERVAL '1 millisecond',
+                            attempts = attempts + 1
+                        WHERE analysis_id IN (
+                            SELECT analysis_id FROM analysis_job
+                            WHERE (state = 'QUEUED' AND available_at <= LOCALTIMESTAMP)
+                               OR (state = 'RUNNING' AND lease_expires_at < LOCALTIMESTAMP)
+                            ORDER BY available_at
+                            LIMIT :limit
+                            FOR UPDATE SKIP LOCKED)
+                        RETURNING analysis_id, attempts
+                        """)
+                .bind("workerId", workerId)
+                .bind("leaseMillis", toMillis(leaseDuration))
+                .bind("limit", limit)
+                .map(row -> new ClaimedJob(row.get("analysis_id", String.class), row.get("attempts", Integer.class)))
+                .all();
+    }
+
+    /**
+     * Extends the lease of a running job. Emits {@code false} when the lease has been lost
+     * to another worker.
+     */
+    public Mono<Boolean> heartbeat(String analysisId, String workerId, Duration leaseDuration) {
+        return databaseClient.sql("""
+                        UPDATE analysis_job
+                        SET lease_expires_at = LOCALTIMESTAMP + :leaseMillis * INTERVAL '1 millisecond'
+                        WHERE analysis_id = :analysisId AND lease_owner = :workerId
+                        """)
+                .bind("analysisId", analysisId)
+                .bind("workerId", workerId)
+                .bind("leaseMillis", toMillis(leaseDuration))
+                .fetch()
+                .rowsUpdated()
+                .map(rows -> rows > 0);
+    }
+
+    public Mono<Void> complete(String analysisId, String workerId) {
+        return databaseClient.sql("DELETE FROM analysis_job WHERE analysis_id = :analysisId AND lease_owner = :workerId")
+                .bind("analysisId", analysisId)
+                .bind("workerId", workerId)
+                .then();
+    }
+
+    public Mono<Void> retryLater(String analysisId, String workerId, Duration delay, String error) {
+        return databaseClient.sql("""
+                        UPDATE analysis_job
+                        SET state = 'QUEUED',
+                            lease_owner = NULL,
+                            lease_expires_at = NULL,
+                            available_at = LOCALTIMESTAMP + :delayMillis * INTERVAL '1 millisecond',
+                            last_error = :error
+                        WHERE analysis_id = :analysisId AND lease_owner = :workerId
+                        """)
+                .bind("analysisId", analysisId)
+                .bind("workerId", workerId)
+                .bind("delayMillis", toMillis(delay))
+                .bind("error", error != null ? error : "")
+                .then();
+    }
+
+    /**
+     * Puts a claimed job back without counting the attempt, used when the job could not
+     * start because the node was out of capacity.
+     */
+    public Mono<Void> requeue(String analysisId, String workerId, Duration delay) {
+        return databaseClient.sql("""
+                        UPDATE analysis_job
+                        SET state = 'QUEUED',
+                            lease_owner = NULL,
+                            lease_expires_at = NULL,
+                            available_at = LOCALTIMESTAMP + :delayMillis * INTERVAL '1 millisecond',
+                            attempts = attempts - 1
+                        WHERE analysis_id = :analysisId AND lease_owner = :workerId
+                        """)
+                .bind("analysisId", analysisId)
+                .bind("workerId", workerId)
+                .bind("delayMillis", toMillis(delay))
+                .then();
+    }
+
+    public Mono<Long> countQueued() {
+        return databaseClient.sql("SELECT COUNT(*) AS queued FROM analysis_job WHERE state = 'QUEUED'")
+                .map(row -> row.get("queued", Long.class))
+                .one();
+    }
+
+    private static long toMillis(Duration duration) {
+        if (duration.isNegative()) {
+            throw new IllegalArgumentException("Job delays and leases cannot be negative: " + duration);
+        }
+        return duration.plusNanos(999_999).toMillis();
+    }
+}
@@ -1,9 +1,15 @@
 package com.neuralcode.insight.repository;
 
 import com.neuralcode.insight.entity.CodeAnalysis;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Repository
 public interface CodeAnalysisRepository extends ReactiveCrudRepository<CodeAnalysis, String> {
@@ -11,4 +17,49 @@ public interface CodeAnalysisRepository extends ReactiveCrudRepository<CodeAnaly
     Flux<CodeAnalysis> findByRepositoryUrl(String repositoryUrl);
 
     Flux<CodeAnalysis> findByStatus(String status);
+
+    Flux<CodeAnalysis> findByStorageLocation(String storageLocation);
+
+    // Metrics rows outlive the checkout, so evicted analyses can still serve as a baseline
+    @Query("SELECT * FROM code_analysis WHERE repository_url_hash = :repositoryUrlHash "
+            + "AND branch_name = :branchName AND status IN ('COMPLETED', 'EVICTED') AND commit_sha IS NOT NULL "
+            + "AND id <> :excludedId ORDER BY end_time DESC LIMIT 1")
+    Mono<CodeAnalysis> findLatestCompleted(String repositoryUrlHash, String branchName, String excludedId);
+
+    @Modifying
+    @Query("UPDATE code_analysis SET commit_sha = :commitSha, baseline_analysis_id = :baselineAnalysisId "
+            + "WHERE id = :id")
+    Mono<Integer> updateScanBaseline(String id, String commitSha, String baselineAnalysisId);
+
+    @Modifying
+    @Query("UPDATE code_analysis SET archive_key = :archiveKey WHERE storage_location = :storageLocation")
+    Mono<Integer> updateArchiveKey(String storageLocation, String archiveKey);
+
+    // Status writes only touch the columns they change and only apply while the stored
+    // status is one of the expected ones; they return the number of rows updated.
+
+    @Modifying
+    @Query("UPDATE code_analysis SET status = :status WHERE id = :id AND status IN (:expectedStatuses)")
+    Mono<Integer> updateStatus(String id, String status, Collection<String> expectedStatuses);
+
+    @Modifying
+    @Query("UPDATE code_analysis SET status = :status, error_message = :errorMessage, end_time = :endTime "
+            + "WHERE id = :id AND status IN (:expectedStatuses)")
+    Mono<Integer> updateStatusWithOutcome(String id, String status, String errorMessage, LocalDateTime endTime,
+                                          Collection<String> expectedStatuses);
+
+    @Modifying
+    @Query("UPDATE code_analysis SET status = :status, storage_location = :storageLocation, "
+            + "commit_sha = :commitSha, source_analysis_id = :sourceAnalysisId, "
+            + "clone_objects = :cloneObjects, clone_bytes = :cloneBytes, clone_duration_ms = :cloneDurationMs "
+            + "WHERE id = :id AND status IN (:expectedStatuses)")
+    Mono<Integer> updateStoredCheckout(String id, String status, String storageLocation, String commitSha,
+                                       String sourceAnalysisId, Long cloneObjects, Long cloneBytes,
+                                       Long cloneDurationMs, Collection<String> expectedStatuses);
+
+    // Applies to every analysis sharing the checkout, since identical clones are coalesced
+    @Modifying
+    @Query("UPDATE code_analysis SET status = :status, storage_location = NULL "
+            + "WHERE storage_location = :storageLocation AND status IN (:expectedStatuses)")
+    Mono<Integer> evictCheckout(String storageLocation, String status, Collection<String> expectedStatuses);
 }
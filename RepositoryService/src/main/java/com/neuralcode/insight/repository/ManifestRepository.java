@@ -0,0 +1,46 @@
+package com.neuralcode.insight.repository;
+
+import com.neuralcode.insight.dto.ManifestEntry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Optional database copy of checkout content manifests, written in multi-row batches.
+ */
+@Repository
+@RequiredArgsConstructor
+public class ManifestRepository {
+
+    private static final String ROW = "(:analysisId, :path%1$d, :sizeBytes%1$d, :sha256%1$d)";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Long> insertEntries(String analysisId, List<ManifestEntry> entries) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < entries.size(); i++) {
+            values.add(ROW.formatted(i));
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                        "INSERT INTO file_manifest (analysis_id, path, size_bytes, sha256) VALUES " + values)
+                .bind("analysisId", analysisId);
+        for (int i = 0; i < entries.size(); i++) {
+            ManifestEntry entry = entries.get(i);
+            spec = spec.bind("path" + i, entry.path())
+                    .bind("sizeBytes" + i, entry.sizeBytes())
+                    .bind("sha256" + i, entry.sha256());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    public Mono<Void> deleteForAnalysis(String analysisId) {
+        return databaseClient.sql("DELETE FROM file_manifest WHERE analysis_id = :analysisId")
+                .bind("analysisId", analysisId)
+                .then();
+    }
+}
@@ -0,0 +1,130 @@
+package com.neuralcode.insight.repository;
+
+import com.neuralcode.insight.dto.FileMetrics;
+import com.neuralcode.insight.dto.RepositoryMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Stores per-file metrics and derives the per-repository totals from them in SQL, so the
+ * scan never has to hold more than one batch of file rows in memory.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MetricsRepository {
+
+    private static final String ROW = "(:analysisId, :path%1$d, :sizeBytes%1$d, :totalLines%1$d, :codeLines%1$d, "
+            + ":commentLines%1$d, :blankLines%1$d, :classCount%1$d, :methodCount%1$d)";
+
+    private final DatabaseClient databaseClient;
+
+    public Mono<Long> insertFileMetrics(String analysisId, List<FileMetrics> files) {
+        StringJoiner values = new StringJoiner(", ");
+        for (int i = 0; i < files.size(); i++) {
+            values.add(ROW.formatted(i));
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql("""
+                        INSERT INTO file_metrics (analysis_id, path, size_bytes, total_lines, code_lines,
+                                                  comment_lines, blank_lines, class_count, method_count)
+                        VALUES\s""" + values)
+                .bind("analysisId", analysisId);
+
+        for (int i = 0; i < files.size(); i++) {
+            FileMetrics file = files.get(i);
+            spec = spec.bind("path" + i, file.path())
+                    .bind("sizeBytes" + i, file.sizeBytes())
+                    .bind("totalLines" + i, file.totalLines())
+                    .bind("codeLines" + i, file.codeLines())
+                    .bind("commentLines" + i, file.commentLines())
+                    .bind("blankLines" + i, file.blankLines())
+                    .bind("classCount" + i, file.classCount())
+                    .bind("methodCount" + i, file.methodCount());
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Carries the file metrics of an earlier analysis over to a new one.
+     */
+    public Mono<Long> copyFileMetrics(String fromAnalysisId, String toAnalysisId) {
+        return databaseClient.sql("""
+                        INSERT INTO file_metrics (analysis_id, path, size_bytes, total_lines, code_lines,
+                                                  comment_lines, blank_lines, class_count, method_count)
+                        SELECT :toAnalysisId, path, size_bytes, total_lines, code_lines,
+                               comment_lines, blank_lines, class_count, method_count
+                        FROM file_metrics
+                        WHERE analysis_id = :fromAnalysisId
+                        """)
+                .bind("fromAnalysisId", fromAnalysisId)
+                .bind("toAnalysisId", toAnalysisId)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Long> deleteFileMetrics(String analysisId, List<String> paths) {
+        StringJoiner placeholders = new StringJoiner(", ");
+        for (int i = 0; i < paths.size(); i++) {
+            placeholders.add(":path" + i);
+        }
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(
+                        "DELETE FROM file_metrics WHERE analysis_id = :analysisId AND path IN (" + placeholders + ")")
+                .bind("analysisId", analysisId);
+        for (int i = 0; i < paths.size(); i++) {
+            spec = spec.bind("path" + i, paths.get(i));
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Removes the results of an earlier, interrupted scan of the same analysis.
+     */
+    public Mono<Void> deleteForAnalysis(String analysisId) {
+        return databaseClient.sql("DELETE FROM repository_metrics WHERE analysis_id = :analysisId")
+                .bind("analysisId", analysisId)
+                .then()
+                .then(databaseClient.sql("DELETE FROM file_metrics WHERE analysis_id = :analysisId")
+                        .bind("analysisId", analysisId)
+                        .then());
+    }
+
+    public Mono<Void> aggregate(String analysisId) {
+        return databaseClient.sql("""
+                        INSERT INTO repository_metrics (analysis_id, file_count, total_bytes, total_lines, code_lines,
+                                                        comment_lines, blank_lines, class_count, method_count,
+                                                        computed_at)
+                        SELECT :analysisId, COUNT(*), COALESCE(SUM(size_bytes), 0), COALESCE(SUM(total_lines), 0),
+                               COALESCE(SUM(code_lines), 0), COALESCE(SUM(comment_lines), 0),
+                               COALESCE(SUM(blank_lines), 0), COALESCE(SUM(class_count), 0),
+                               COALESCE(SUM(method_count), 0), LOCALTIMESTAMP
+                        FROM file_metrics
+                        WHERE analysis_id = :analysisId
+                        """)
+                .bind("analysisId", analysisId)
+                .then();
+    }
+
+    public Mono<RepositoryMetrics> findRepositoryMetrics(String analysisId) {
+        return databaseClient.sql("SELECT * FROM repository_metrics WHERE analysis_id = :analysisId")
+                .bind("analysisId", analysisId)
+                .map(row -> new RepositoryMetrics(
+                        row.get("analysis_id", String.class),
+                        row.get("file_count", Long.class),
+                        row.get("total_bytes", Long.class),
+                        row.get("total_lines", Long.class),
+                        row.get("code_lines", Long.class),
+                        row.get("comment_lines", Long.class),
+                        row.get("blank_lines", Long.class),
+                        row.get("class_count", Long.class),
+                        row.get("method_count", Long.class),
+                        row.get("computed_at", LocalDateTime.class)))
+                .one();
+    }
+}
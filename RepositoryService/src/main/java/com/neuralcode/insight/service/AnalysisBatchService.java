@@ -0,0 +1,103 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.AnalysisRequest;
+import com.neuralcode.insight.dto.BatchSubmissionResult;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Accepts a stream of analysis requests and submits them in chunks, so a batch of
+ * thousands of repositories costs a few multi-row statements rather than one round trip
+ * per repository. Results are emitted in request order as each chunk is committed; the
+ * clones themselves are picked up from the job queue by the workers.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalysisBatchService {
+
+    @Value("${insight.batch.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${insight.batch.concurrency:4}")
+    private int concurrency;
+
+    @Value("${insight.batch.flush-interval:200ms}")
+    private Duration flushInterval;
+
+    private final AnalysisService analysisService;
+    private final Validator validator;
+
+    public Flux<BatchSubmissionResult> submitBatch(Flux<AnalysisRequest> requests) {
+        return requests.index()
+                // Flush partial chunks after a short wait so slow NDJSON producers still see progress.
+                // The fair variant holds a timed-out chunk until a slot frees up instead of
+                // failing the batch when every insert slot is busy
+                .bufferTimeout(chunkSize, flushInterval, true)
+                .flatMapSequential(this::submitChunk, concurrency)
+                .flatMapIterable(results -> results);
+    }
+
+    private Mono<List<BatchSubmissionResult>> submitChunk(List<Tuple2<Long, AnalysisRequest>> chunk) {
+        List<Tuple2<Long, AnalysisRequest>> valid = new ArrayList<>();
+        List<BatchSubmissionResult> results = new ArrayList<>(chunk.size());
+        for (Tuple2<Long, AnalysisRequest> item : chunk) {
+            String error = validate(item.getT2());
+            if (error != null) {
+                results.add(BatchSubmissionResult.rejected(item.getT1(), item.getT2().repositoryUrl(), error));
+            } else {
+                valid.add(item);
+            }
+        }
+        if (valid.isEmpty()) {
+            return Mono.just(results);
+        }
+
+        return analysisService.submitAnalyses(valid.stream().map(Tuple2::getT2).toList())
+                .map(saved -> {
+                    Iterator<CodeAnalysis> analyses = saved.iterator();
+                    for (Tuple2<Long, AnalysisRequest> item : valid) {
+                        CodeAnalysis analysis = analyses.next();
+                        results.add(BatchSubmissionResult.accepted(item.getT1(), analysis.getId(),
+                                analysis.getStatus(), analysis.getRepositoryUrl()));
+                    }
+                    results.sort((a, b) -> Long.compare(a.index(), b.index()));
+                    return results;
+                })
+                .onErrorResume(error -> {
+                    log.error("Failed to submit batch chunk of {} analyses", valid.size(), error);
+                    for (Tuple2<Long, AnalysisRequest> item : valid) {
+                        results.add(BatchSubmissionResult.rejected(item.getT1(), item.getT2().repositoryUrl(),
+                                "Could not be submitted: " + error.getMessage()));
+                    }
+                    results.sort((a, b) -> Long.compare(a.index(), b.index()));
+                    return Mono.just(results);
+                });
+    }
+
+    private String validate(AnalysisRequest request) {
+        Set<ConstraintViolation<AnalysisRequest>> violations = validator.validate(request);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,98 @@
+package com.neuralcode.insight.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.neuralcode.insight.dto.CacheStatistics;
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Read-through cache of {@link CodeAnalysis} snapshots keyed by id.
+ * <p>
+ * Analyses in a terminal status are kept much longer than running ones, whose status
+ * may still be changed by another instance. Concurrent misses for the same id share one
+ * database read, and invalidating an id while that read is in flight discards its result,
+ * so a write is never hidden by an older read landing after it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalysisCache {
+
+    @Value("${insight.cache.analysis.max-size:10000}")
+    private long maxSize;
+
+    @Value("${insight.cache.analysis.active-ttl:5s}")
+    private Duration activeTtl;
+
+    @Value("${insight.cache.analysis.terminal-ttl:10m}")
+    private Duration terminalTtl;
+
+    private final CodeAnalysisRepository analysisRepository;
+
+    private AsyncCache<String, CodeAnalysis> cache;
+
+    @PostConstruct
+    public void initialize() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new StatusAwareExpiry())
+                .recordStats()
+                .buildAsync();
+        log.info("Analysis cache initialized (max {} entries, active TTL {}, terminal TTL {})",
+                maxSize, activeTtl, terminalTtl);
+    }
+
+    /**
+     * Returns a copy of the analysis, reading it from the database on a miss. Completes
+     * empty if no analysis with this id exists; absent ids are not cached.
+     */
+    public Mono<CodeAnalysis> get(String analysisId) {
+        return Mono.fromFuture(cache.get(analysisId, (id, executor) -> analysisRepository.findById(id).toFuture()),
+                        true)
+                .map(CodeAnalysis::copy);
+    }
+
+    public void invalidate(String analysisId) {
+        cache.synchronous().invalidate(analysisId);
+    }
+
+    public CacheStatistics statistics() {
+        CacheStats stats = cache.synchronous().stats();
+        return new CacheStatistics(cache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(),
+                stats.hitRate(), stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    private final class StatusAwareExpiry implements Expiry<String, CodeAnalysis> {
+
+        @Override
+        public long expireAfterCreate(String id, CodeAnalysis analysis, long currentTime) {
+            return ttlOf(analysis);
+        }
+
+        @Override
+        public long expireAfterUpdate(String id, CodeAnalysis analysis, long currentTime, long currentDuration) {
+            return ttlOf(analysis);
+        }
+
+        @Override
+        public long expireAfterRead(String id, CodeAnalysis analysis, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+
+        private long ttlOf(CodeAnalysis analysis) {
+            return AnalysisStatus.isTerminal(analysis.getStatus()) ? terminalTtl.toNanos() : activeTtl.toNanos();
+        }
+    }
+}
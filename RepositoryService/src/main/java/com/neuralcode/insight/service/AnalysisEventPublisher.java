@@ -0,0 +1,50 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.AnalysisEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+/**
+ * In-process fan-out of analysis status transitions and clone progress. Publishing never
+ * blocks: each subscriber gets a small buffer and, if it cannot keep up, loses its oldest
+ * pending events rather than slowing down the pipeline or other subscribers.
+ */
+@Slf4j
+@Service
+public class AnalysisEventPublisher {
+
+    private static final int SUBSCRIBER_BUFFER_SIZE = 64;
+
+    private final Sinks.Many<AnalysisEvent> sink = Sinks.many().multicast().directBestEffort();
+
+    public void publishStatus(String analysisId, String status) {
+        publish(AnalysisEvent.status(analysisId, status));
+    }
+
+    public void publishProgress(String analysisId, String task, int completed, int total) {
+        publish(AnalysisEvent.progress(analysisId, task, completed, total));
+    }
+
+    public Flux<AnalysisEvent> events() {
+        return sink.asFlux()
+                .onBackpressureBuffer(SUBSCRIBER_BUFFER_SIZE, dropped -> { }, BufferOverflowStrategy.DROP_OLDEST);
+    }
+
+    public Flux<AnalysisEvent> events(String analysisId) {
+        return events().filter(event -> analysisId.equals(event.analysisId()));
+    }
+
+    public int subscriberCount() {
+        return sink.currentSubscriberCount();
+    }
+
+    private synchronized void publish(AnalysisEvent event) {
+        Sinks.EmitResult result = sink.tryEmitNext(event);
+        if (result.isFailure() && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            log.debug("Dropped {} event for analysis {}: {}", event.type(), event.analysisId(), result);
+        }
+    }
+}
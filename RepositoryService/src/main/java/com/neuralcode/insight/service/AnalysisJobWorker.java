@@ -0,0 +1,212 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.AnalysisCancelledException;
+import com.neuralcode.insight.exception.AnalysisStateConflictException;
+import com.neuralcode.insight.exception.CloneCapacityExceededException;
+import com.neuralcode.insight.exception.WorkspaceCapacityExceededException;
+import com.neuralcode.insight.repository.AnalysisJobRepository;
+import com.neuralcode.insight.repository.AnalysisJobRepository.ClaimedJob;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls the analysis job queue and runs claimed jobs. Each claimed job holds a lease that
+ * is renewed by a heartbeat while the clone runs; if this instance dies the lease expires
+ * and another instance picks the job up again, resuming from the stored checkout if the
+ * clone had already finished. A worker that finds its lease taken over stops the job.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnalysisJobWorker {
+
+    private final AnalysisJobRepository analysisJobRepository;
+    private final CodeAnalysisRepository analysisRepository;
+    private final AnalysisService analysisService;
+
+    @Value("${insight.queue.worker.enabled:true}")
+    private boolean enabled;
+
+    @Value("${insight.queue.worker.concurrency:4}")
+    private int concurrency;
+
+    @Value("${insight.queue.worker.poll-interval:1s}")
+    private Duration pollInterval;
+
+    @Value("${insight.queue.worker.lease-duration:60s}")
+    private Duration leaseDuration;
+
+    @Value("${insight.queue.worker.heartbeat-interval:20s}")
+    private Duration heartbeatInterval;
+
+    @Value("${insight.queue.worker.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${insight.queue.worker.retry-backoff:30s}")
+    private Duration retryBackoff;
+
+    private final String workerId = "worker-" + UUID.randomUUID();
+
+    private final AtomicInteger activeJobs = new AtomicInteger();
+
+    private Disposable poller;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Analysis job worker disabled");
+            return;
+        }
+
+        poller = Flux.interval(pollInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> claimJobs())
+                .flatMap(this::processJob)
+                .subscribe();
+
+        log.info("Analysis job worker {} started with concurrency {}", workerId, concurrency);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (poller != null) {
+            poller.dispose();
+        }
+    }
+
+    public int getActiveJobs() {
+        return activeJobs.get();
+    }
+
+    private Flux<ClaimedJob> claimJobs() {
+        int freeSlots = concurrency - activeJobs.get();
+        if (freeSlots <= 0) {
+            return Flux.empty();
+        }
+
+        return analysisJobRepository.claim(workerId, freeSlots, leaseDuration)
+                .doOnNext(job -> activeJobs.incrementAndGet())
+                .onErrorResume(error -> {
+                    log.warn("Failed to claim analysis jobs: {}", error.getMessage());
+                    return Flux.empty();
+                });
+    }
+
+    private Mono<Void> processJob(ClaimedJob job) {
+        String analysisId = job.analysisId();
+        log.info("Worker {} claimed analysis {} (attempt {})", workerId, analysisId, job.attempts());
+
+        // Emits once another worker has taken the job over; the pipeline is then disposed
+        Mono<Boolean> leaseLost = Flux.interval(heartbeatInterval)
+                .concatMap(tick -> analysisJobRepository.heartbeat(analysisId, workerId, leaseDuration)
+                        .onErrorResume(error -> {
+                            log.warn("Heartbeat failed for analysis {}: {}", analysisId, error.getMessage());
+                            return Mono.just(true);
+                        }))
+                .filter(held -> !held)
+                .next()
+                .doOnNext(lost -> log.warn("Worker {} lost lease on analysis {}, stopping it", workerId, analysisId));
+
+        return analysisRepository.findById(analysisId)
+                .switchIfEmpty(Mono.defer(() -> {
+                    log.warn("Dropping job for unknown analysis {}", analysisId);
+                    return analysisJobRepository.complete(analysisId, workerId).then(Mono.empty());
+                }))
+                .flatMap(analysis -> {
+                    analysis.markNotNew();
+
+                    if (AnalysisStatus.isTerminal(analysis.getStatus())) {
+                        log.info("Analysis {} is already {}, dropping job", analysisId, analysis.getStatus());
+                        return analysisJobRepository.complete(analysisId, workerId);
+                    }
+
+                    if (job.attempts() > maxAttempts) {
+                        return analysisService.markFailed(analysis,
+                                        new IllegalStateException("Gave up after " + maxAttempts + " attempts"))
+                                .then(analysisJobRepository.complete(analysisId, workerId));
+                    }
+
+                    return run(analysis)
+                            .then(Mono.defer(() -> analysisJobRepository.complete(analysisId, workerId)))
+                            .onErrorResume(error -> handleFailure(job, analysis, error));
+                })
+                .takeUntilOther(leaseLost)
+                .onErrorResume(error -> {
+                    log.error("Unexpected failure processing analysis {}", analysisId, error);
+                    return Mono.empty();
+                })
+                .doFinally(signal -> activeJobs.decrementAndGet());
+    }
+
+    /**
+     * Runs the analysis from where it stopped. A checkout stored by a worker that died
+     * before scanning it is scanned straight away instead of being cloned again.
+     */
+    private Mono<CodeAnalysis> run(CodeAnalysis analysis) {
+        if (AnalysisStatus.STORED_IN_LOCAL.name().equals(analysis.getStatus())) {
+            log.info("Resuming scan of stored checkout of analysis {}", analysis.getId());
+            return analysisService.resumeAnalysis(analysis);
+        }
+        return analysisService.transition(analysis, AnalysisStatus.STARTED)
+                .flatMap(analysisService::executeAnalysis);
+    }
+
+    private Mono<Void> handleFailure(ClaimedJob job, CodeAnalysis analysis, Throwable error) {
+        if (error instanceof AnalysisStateConflictException) {
+            // Only a finished analysis makes the job obsolete; anything else is retried
+            return analysisRepository.findById(job.analysisId())
+                    .flatMap(current -> {
+                        if (AnalysisStatus.isTerminal(current.getStatus())) {
+                            log.info("Analysis {} was moved on to {} by someone else, dropping job",
+                                    job.analysisId(), current.getStatus());
+                            return analysisJobRepository.complete(job.analysisId(), workerId);
+                        }
+                        analysis.setStatus(current.getStatus());
+                        return retryOrFail(job, analysis, error);
+                    });
+        }
+
+        if (error instanceof AnalysisCancelledException) {
+            log.info("Analysis {} was cancelled, dropping job", job.analysisId());
+            return analysisJobRepository.complete(job.analysisId(), workerId);
+        }
+
+        if (error instanceof CloneCapacityExceededException || error instanceof WorkspaceCapacityExceededException) {
+            log.info("No clone capacity for analysis {}, requeueing: {}", job.analysisId(), error.getMessage());
+            return analysisService.transition(analysis, AnalysisStatus.QUEUED)
+                    .then(analysisJobRepository.requeue(job.analysisId(), workerId, pollInterval));
+        }
+
+        return retryOrFail(job, analysis, error);
+    }
+
+    private Mono<Void> retryOrFail(ClaimedJob job, CodeAnalysis analysis, Throwable error) {
+        if (job.attempts() >= maxAttempts) {
+            return analysisService.markFailed(analysis, error)
+                    .then(analysisJobRepository.complete(job.analysisId(), workerId));
+        }
+
+        Duration delay = retryBackoff.multipliedBy(job.attempts());
+        log.warn("Analysis {} failed on attempt {}, retrying in {}: {}",
+                job.analysisId(), job.attempts(), delay, error.getMessage());
+
+        // An analysis that is already QUEUED only needs its job put back
+        return analysisService.markRetrying(analysis, error.getMessage())
+                .onErrorResume(AnalysisStateConflictException.class, conflict -> Mono.empty())
+                .then(analysisJobRepository.retryLater(job.analysisId(), workerId, delay, error.getMessage()));
+    }
+}
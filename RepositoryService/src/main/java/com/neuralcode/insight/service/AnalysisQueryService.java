@@ -0,0 +1,114 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.AnalysisFilter;
+import com.neuralcode.insight.dto.AnalysisPage;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.InvalidAnalysisException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Filtered listing of analyses with keyset pagination on {@code (start_time, id)}, newest
+ * first. Repository filters match on the canonical URL hash, so any spelling of a URL
+ * finds the same analyses. Each page is a single index range scan that starts where the previous page
+ * ended, so the cost of a page does not depend on how deep into the listing it is.
+ */
+@Service
+@RequiredArgsConstructor
+public class AnalysisQueryService {
+
+    private final R2dbcEntityTemplate entityTemplate;
+    private final RepositoryUrlCanonicalizer urlCanonicalizer;
+
+    @Value("${insight.listing.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${insight.listing.max-page-size:100}")
+    private int maxPageSize;
+
+    public Mono<AnalysisPage<CodeAnalysis>> listAnalyses(AnalysisFilter filter, String cursor, Integer limit) {
+        int pageSize = limit == null || limit <= 0 ? defaultPageSize : Math.min(limit, maxPageSize);
+
+        Criteria criteria = filterCriteria(filter);
+        if (cursor != null && !cursor.isBlank()) {
+            criteria = criteria.and(afterCursor(cursor));
+        }
+
+        Query query = Query.query(criteria)
+                .sort(Sort.by(Sort.Order.desc("startTime"), Sort.Order.desc("id")))
+                .limit(pageSize + 1);
+
+        return entityTemplate.select(CodeAnalysis.class)
+                .matching(query)
+                .all()
+                .collectList()
+                .map(rows -> toPage(rows, pageSize));
+    }
+
+    private Criteria filterCriteria(AnalysisFilter filter) {
+        Criteria criteria = Criteria.empty();
+        if (filter.status() != null) {
+            criteria = criteria.and("status").is(filter.status());
+        }
+        if (filter.repositoryUrl() != null) {
+            String hash = urlCanonicalizer.canonicalize(filter.repositoryUrl()).hash();
+            criteria = criteria.and("repositoryUrlHash").is(hash);
+        }
+        if (filter.from() != null) {
+            criteria = criteria.and("startTime").greaterThanOrEquals(filter.from());
+        }
+        if (filter.to() != null) {
+            criteria = criteria.and("startTime").lessThan(filter.to());
+        }
+        return criteria;
+    }
+
+    private Criteria afterCursor(String cursor) {
+        String[] parts = decodeCursor(cursor);
+        LocalDateTime startTime = LocalDateTime.parse(parts[0]);
+        String id = parts[1];
+
+        return Criteria.where("startTime").lessThan(startTime)
+                .or(Criteria.where("startTime").is(startTime).and("id").lessThan(id));
+    }
+
+    private AnalysisPage<CodeAnalysis> toPage(List<CodeAnalysis> rows, int pageSize) {
+        if (rows.size() <= pageSize) {
+            return new AnalysisPage<>(rows, null);
+        }
+        List<CodeAnalysis> items = rows.subList(0, pageSize);
+        CodeAnalysis last = items.get(items.size() - 1);
+        return new AnalysisPage<>(List.copyOf(items), encodeCursor(last));
+    }
+
+    private String encodeCursor(CodeAnalysis last) {
+        String raw = last.getStartTime() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new InvalidAnalysisException("Malformed page cursor.");
+            }
+            LocalDateTime.parse(parts[0]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidAnalysisException("Malformed page cursor.");
+        }
+    }
+}
@@ -1,15 +1,39 @@
 package com.neuralcode.insight.service;
 
+import com.neuralcode.insight.dto.AnalysisEvent;
+import com.neuralcode.insight.dto.AnalysisFilter;
+import com.neuralcode.insight.dto.AnalysisPage;
+import com.neuralcode.insight.dto.AnalysisRequest;
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.dto.CloneStrategy;
+import com.neuralcode.insight.dto.ManifestEntry;
+import com.neuralcode.insight.dto.RepositoryMetrics;
+import com.neuralcode.insight.entity.AnalysisStatus;
 import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.AnalysisCancelledException;
 import com.neuralcode.insight.exception.AnalysisNotFoundException;
+import com.neuralcode.insight.exception.AnalysisStateConflictException;
+import com.neuralcode.insight.exception.ManifestNotAvailableException;
+import com.neuralcode.insight.repository.AnalysisBatchRepository;
+import com.neuralcode.insight.repository.AnalysisJobRepository;
 import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import com.neuralcode.insight.repository.MetricsRepository;
+import io.micrometer.common.KeyValues;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -18,67 +42,370 @@ public class AnalysisService {
 
     private final CodeAnalysisRepository analysisRepository;
     private final RepositoryService repositoryService;
+    private final CloneDeduplicationService cloneDeduplicationService;
+    private final AnalysisJobRepository analysisJobRepository;
+    private final AnalysisBatchRepository analysisBatchRepository;
+    private final AnalysisEventPublisher eventPublisher;
+    private final AnalysisQueryService analysisQueryService;
+    private final RepositoryUrlCanonicalizer urlCanonicalizer;
+    private final AnalysisCache analysisCache;
+    private final SourceMetricsScanner sourceMetricsScanner;
+    private final WorkspaceManager workspaceManager;
+    private final MetricsRepository metricsRepository;
+    private final ContentManifestService contentManifestService;
+    private final RepositoryStorage repositoryStorage;
+    private final InsightMetrics insightMetrics;
+    private final RunningAnalyses runningAnalyses;
 
-    public Mono<CodeAnalysis> startAnalysis(String repositoryUrl, String branchName) {
-        String analysisId = UUID.randomUUID().toString();
+    @Value("${insight.events.resync-interval:15s}")
+    private Duration eventResyncInterval;
 
-        CodeAnalysis analysis = new CodeAnalysis(
-                analysisId, repositoryUrl, branchName, "STARTED", LocalDateTime.now()
-        );
+    /**
+     * Records the analysis and puts it on the durable job queue. Returns as soon as both
+     * rows are written; a worker picks the job up and runs the clone.
+     */
+    @Transactional
+    public Mono<CodeAnalysis> submitAnalysis(String repositoryUrl, String branchName, CloneOptions cloneOptions) {
+        CodeAnalysis analysis = newAnalysis(repositoryUrl, branchName, cloneOptions, AnalysisStatus.QUEUED);
 
-        return analysisRepository.save(analysis)
+        return insertAnalysis(analysis)
+                .flatMap(saved -> analysisJobRepository.enqueue(saved.getId()).thenReturn(saved.markNotNew()))
+                .doOnSuccess(saved -> log.info("Queued analysis {} for {}", saved.getId(), repositoryUrl));
+    }
+
+    /**
+     * Records and enqueues several analyses in one transaction, using one multi-row
+     * INSERT for the analyses and one for their jobs.
+     */
+    @Transactional
+    public Mono<List<CodeAnalysis>> submitAnalyses(List<AnalysisRequest> requests) {
+        List<CodeAnalysis> analyses = requests.stream()
+                .map(request -> newAnalysis(request.repositoryUrl(), request.branchName(), request.cloneOptions(),
+                        AnalysisStatus.QUEUED))
+                .toList();
+
+        return analysisBatchRepository.insertAll(analyses)
+                .then(analysisJobRepository.enqueueAll(analyses.stream().map(CodeAnalysis::getId).toList()))
+                .then(Mono.fromSupplier(() -> {
+                    analyses.forEach(analysis -> {
+                        analysis.markNotNew();
+                        eventPublisher.publishStatus(analysis.getId(), analysis.getStatus());
+                    });
+                    log.info("Queued batch of {} analyses", analyses.size());
+                    return analyses;
+                }));
+    }
+
+    /**
+     * Runs the analysis inline, completing only once the clone has finished. If the caller
+     * stops waiting, for example because the client disconnected, the pipeline is disposed
+     * and the analysis is cancelled.
+     */
+    public Mono<CodeAnalysis> startAnalysis(String repositoryUrl, String branchName, CloneOptions cloneOptions) {
+        CodeAnalysis analysis = newAnalysis(repositoryUrl, branchName, cloneOptions, AnalysisStatus.STARTED);
+
+        return insertAnalysis(analysis)
                 .flatMap(saved -> {
                     saved.markNotNew();
 
-                    return repositoryService.cloneAndStoreRepository(
-                                    repositoryUrl, branchName, analysisId)
-                            .flatMap(location -> {
-                                saved.setStatus("STORED_IN_LOCAL");
-                                saved.setStorageLocation(location);
-                                return analysisRepository.save(saved);
-                            })
-                            .onErrorResume(error -> {
-                                log.error("Analysis {} failed: {}", analysisId, error.getMessage(), error);
-
-                                saved.setStatus("ERROR");
-                                saved.setErrorMessage(error.getMessage());
-                                saved.setEndTime(LocalDateTime.now());
-
-                                return analysisRepository.save(saved)
-                                        .doOnSuccess(updatedAnalysis ->
-                                                log.info("Updated analysis {} status to ERROR", analysisId))
-                                        .then(Mono.error(error)); // Still propagate the error
-                            })
-                            ;
+                    return executeAnalysis(saved)
+                            .onErrorResume(error -> error instanceof AnalysisCancelledException
+                                    ? Mono.error(error)
+                                    : markFailed(saved, error).then(Mono.error(error))) // Still propagate the error
+                            .doOnCancel(() -> markCancelled(saved, "Client disconnected")
+                                    .subscribe(cancelled -> { }, error -> log.warn(
+                                            "Could not cancel analysis {}: {}", saved.getId(), error.getMessage())));
                 });
     }
 
-    public Mono<CodeAnalysis> getAnalysis(String analysisId) {
+    /**
+     * Cancels the analysis: moves it to CANCELLED and, if its pipeline is running in this
+     * instance, disposes it, which aborts the clone and deletes the partial checkout. A
+     * queued analysis is dropped by the worker when it claims the job. Fails with
+     * {@link AnalysisStateConflictException} once the analysis has finished.
+     */
+    public Mono<CodeAnalysis> cancelAnalysis(String analysisId) {
         return analysisRepository.findById(analysisId)
+                .switchIfEmpty(Mono.error(new AnalysisNotFoundException(analysisId)))
+                .flatMap(analysis -> markCancelled(analysis.markNotNew(), "Cancelled on request"))
+                .doOnNext(cancelled -> {
+                    boolean running = runningAnalyses.cancel(analysisId);
+                    log.info("Cancelled analysis {}{}", analysisId, running ? ", stopping its pipeline" : "");
+                });
+    }
+
+    /**
+     * Runs the clone pipeline for an already persisted analysis. Failures are propagated
+     * without touching the stored status so the caller can decide whether to retry. The
+     * whole pipeline is traced as one {@code insight.analysis} span and fails with
+     * {@link AnalysisCancelledException} if the analysis is cancelled while it runs.
+     */
+    public Mono<CodeAnalysis> executeAnalysis(CodeAnalysis analysis) {
+        return insightMetrics.observe("insight.analysis", analysis.getId(),
+                KeyValues.of("clone.strategy", String.valueOf(analysis.getCloneStrategy()).toLowerCase(Locale.ROOT)),
+                runningAnalyses.track(analysis.getId(), runAnalysis(analysis)));
+    }
+
+    /**
+     * Scans the stored checkout of an analysis whose pipeline stopped after the clone, for
+     * example because the worker running it died. If the checkout cannot be brought back
+     * the scan fails and the caller can retry it from QUEUED with a fresh clone.
+     */
+    public Mono<CodeAnalysis> resumeAnalysis(CodeAnalysis analysis) {
+        return insightMetrics.observe("insight.analysis", analysis.getId(),
+                KeyValues.of("clone.strategy", String.valueOf(analysis.getCloneStrategy()).toLowerCase(Locale.ROOT)),
+                runningAnalyses.track(analysis.getId(), scanStoredCheckout(analysis)));
+    }
+
+    private Mono<CodeAnalysis> runAnalysis(CodeAnalysis analysis) {
+        String analysisId = analysis.getId();
+        String repositoryUrl = analysis.getRepositoryUrl();
+        String branchName = analysis.getBranchName();
+        CloneOptions cloneOptions = CloneOptions.of(
+                analysis.getCloneStrategy() != null ? CloneStrategy.valueOf(analysis.getCloneStrategy()) : null,
+                analysis.getCloneDepth());
+        // Only called for the analysis that performs the clone, not for those joining it
+        Consumer<CloneTransfer> onTransfer = transfer -> {
+            analysis.setCloneObjects(transfer.objects());
+            analysis.setCloneBytes(transfer.bytes());
+            analysis.setCloneDurationMs(transfer.duration().toMillis());
+        };
+
+        return repositoryService.resolveCloneKey(repositoryUrl, branchName, cloneOptions)
+                .flatMap(cloneKey -> {
+                    analysis.setCommitSha(cloneKey.commitSha());
+                    return cloneDeduplicationService.cloneOnce(cloneKey, analysisId, () ->
+                            repositoryService.cloneAndStoreRepository(
+                                    repositoryUrl, branchName, analysisId, cloneOptions, onTransfer));
+                })
+                .switchIfEmpty(Mono.defer(() -> repositoryService.cloneAndStoreRepository(
+                                repositoryUrl, branchName, analysisId, cloneOptions, onTransfer)
+                        .map(location -> new CloneResult(analysisId, location))))
+                .flatMap(result -> {
+                    String sourceAnalysisId = analysisId.equals(result.ownerAnalysisId())
+                            ? null : result.ownerAnalysisId();
+                    AnalysisStatus target = AnalysisStatus.STORED_IN_LOCAL;
+
+                    return analysisRepository.updateStoredCheckout(analysisId, target.name(),
+                                    result.storageLocation(), analysis.getCommitSha(), sourceAnalysisId,
+                                    analysis.getCloneObjects(), analysis.getCloneBytes(),
+                                    analysis.getCloneDurationMs(), target.predecessors())
+                            .flatMap(rows -> applyTransition(analysis, target, rows))
+                            .doOnNext(updated -> {
+                                updated.setStorageLocation(result.storageLocation());
+                                updated.setSourceAnalysisId(sourceAnalysisId);
+                            });
+                })
+                .flatMap(this::scanStoredCheckout);
+    }
+
+    /**
+     * Computes the code metrics of a stored checkout and completes the analysis. The
+     * checkout is pinned for the duration of the scan so it cannot be evicted under it.
+     */
+    private Mono<CodeAnalysis> scanStoredCheckout(CodeAnalysis analysis) {
+        String storageLocation = analysis.getStorageLocation();
+
+        // All passes read the whole tree; running them together lets them share the page cache
+        return pinCheckout(storageLocation)
+                .then(Mono.defer(() -> Mono.when(sourceMetricsScanner.scan(analysis),
+                                contentManifestService.build(analysis.getId(), storageLocation),
+                                repositoryStorage.store(Paths.get(storageLocation)))
+                        .then(Mono.defer(() -> analysisRepository.updateScanBaseline(analysis.getId(),
+                                analysis.getCommitSha(), analysis.getBaselineAnalysisId())))
+                        .then(updateAnalysisStatus(analysis.getId(), AnalysisStatus.COMPLETED.name()))
+                        .then(Mono.fromSupplier(() -> {
+                            analysis.setStatus(AnalysisStatus.COMPLETED.name());
+                            analysis.setEndTime(LocalDateTime.now());
+                            return analysis;
+                        }))
+                        .doFinally(signal -> workspaceManager.unpin(storageLocation))));
+    }
+
+    /**
+     * Pins the checkout so it is not evicted while in use, first restoring it to local
+     * disk if it has been demoted to the object store.
+     */
+    private Mono<Void> pinCheckout(String storageLocation) {
+        return Mono.defer(() -> {
+            if (workspaceManager.pin(storageLocation)) {
+                return Mono.empty();
+            }
+            return repositoryStorage.restore(storageLocation, Paths.get(storageLocation))
+                    .filter(restored -> workspaceManager.pin(storageLocation))
+                    .switchIfEmpty(Mono.error(new IllegalStateException(
+                            "Checkout " + storageLocation + " is no longer available")))
+                    .then();
+        });
+    }
+
+    /**
+     * Moves the analysis to ERROR. Does nothing if it has already reached a status that
+     * cannot fail any more.
+     */
+    public Mono<CodeAnalysis> markFailed(CodeAnalysis analysis, Throwable error) {
+        log.error("Analysis {} failed: {}", analysis.getId(), error.getMessage(), error);
+
+        AnalysisStatus target = AnalysisStatus.ERROR;
+        LocalDateTime endTime = LocalDateTime.now();
+
+        return analysisRepository.updateStatusWithOutcome(analysis.getId(), target.name(), error.getMessage(),
+                        endTime, target.predecessors())
+                .flatMap(rows -> applyTransition(analysis, target, rows))
+                .doOnNext(updated -> {
+                    updated.setErrorMessage(error.getMessage());
+                    updated.setEndTime(endTime);
+                    log.info("Updated analysis {} status to ERROR", analysis.getId());
+                })
+                .onErrorResume(AnalysisStateConflictException.class, conflict -> {
+                    log.warn("Not marking analysis {} as failed: {}", analysis.getId(), conflict.getMessage());
+                    return Mono.just(analysis);
+                });
+    }
+
+    /**
+     * Moves the analysis to CANCELLED, keeping the reason as its error message.
+     */
+    public Mono<CodeAnalysis> markCancelled(CodeAnalysis analysis, String reason) {
+        AnalysisStatus target = AnalysisStatus.CANCELLED;
+        LocalDateTime endTime = LocalDateTime.now();
+
+        return analysisRepository.updateStatusWithOutcome(analysis.getId(), target.name(), reason, endTime,
+                        target.predecessors())
+                .flatMap(rows -> applyTransition(analysis, target, rows))
+                .doOnNext(updated -> {
+                    updated.setErrorMessage(reason);
+                    updated.setEndTime(endTime);
+                });
+    }
+
+    /**
+     * Puts the analysis back to QUEUED after a failed attempt that will be retried,
+     * keeping the error for diagnostics.
+     */
+    public Mono<CodeAnalysis> markRetrying(CodeAnalysis analysis, String errorMessage) {
+        AnalysisStatus target = AnalysisStatus.QUEUED;
+
+        return analysisRepository.updateStatusWithOutcome(analysis.getId(), target.name(), errorMessage,
+                        null, target.predecessors())
+                .flatMap(rows -> applyTransition(analysis, target, rows))
+                .doOnNext(updated -> updated.setErrorMessage(errorMessage));
+    }
+
+    /**
+     * Moves the analysis to the given status with a single conditional UPDATE, failing with
+     * {@link AnalysisStateConflictException} if its stored status does not allow it.
+     */
+    public Mono<CodeAnalysis> transition(CodeAnalysis analysis, AnalysisStatus target) {
+        return analysisRepository.updateStatus(analysis.getId(), target.name(), target.predecessors())
+                .flatMap(rows -> applyTransition(analysis, target, rows));
+    }
+
+    private Mono<CodeAnalysis> applyTransition(CodeAnalysis analysis, AnalysisStatus target, int rowsUpdated) {
+        analysisCache.invalidate(analysis.getId());
+        if (rowsUpdated == 0) {
+            return Mono.error(new AnalysisStateConflictException(analysis.getId(), target.name()));
+        }
+        analysis.setStatus(target.name());
+        eventPublisher.publishStatus(analysis.getId(), target.name());
+        return Mono.just(analysis);
+    }
+
+    private Mono<CodeAnalysis> insertAnalysis(CodeAnalysis analysis) {
+        return analysisRepository.save(analysis)
+                .doOnSuccess(saved -> eventPublisher.publishStatus(saved.getId(), saved.getStatus()));
+    }
+
+    /**
+     * Streams status and progress events for one analysis, starting with its stored state
+     * and ending once it reaches a terminal status. The stored state is re-read
+     * periodically so streams also finish for analyses running on another instance.
+     */
+    public Flux<AnalysisEvent> streamEvents(String analysisId) {
+        Flux<AnalysisEvent> stored = Flux.interval(Duration.ZERO, eventResyncInterval)
+                .concatMap(tick -> getAnalysis(analysisId))
+                .map(analysis -> AnalysisEvent.status(analysis.getId(), analysis.getStatus()))
+                .distinctUntilChanged(AnalysisEvent::status);
+
+        return getAnalysis(analysisId)
+                .thenMany(Flux.merge(eventPublisher.events(analysisId), stored))
+                .takeUntil(AnalysisEvent::isTerminal);
+    }
+
+    private CodeAnalysis newAnalysis(String repositoryUrl, String branchName, CloneOptions cloneOptions,
+                                     AnalysisStatus status) {
+        CodeAnalysis analysis = new CodeAnalysis(
+                UUID.randomUUID().toString(), repositoryUrl, branchName, status.name(), LocalDateTime.now()
+        );
+        analysis.setCloneStrategy(cloneOptions.strategy().name());
+        analysis.setCloneDepth(cloneOptions.depth() > 0 ? cloneOptions.depth() : null);
+
+        CanonicalRepositoryUrl canonical = urlCanonicalizer.canonicalize(repositoryUrl);
+        analysis.setCanonicalUrl(canonical.canonicalUrl());
+        analysis.setRepositoryUrlHash(canonical.hash());
+        return analysis;
+    }
+
+    public Mono<CodeAnalysis> getAnalysis(String analysisId) {
+        return analysisCache.get(analysisId)
+                .switchIfEmpty(Mono.error(new AnalysisNotFoundException(analysisId)));
+    }
+
+    public Mono<RepositoryMetrics> getMetrics(String analysisId) {
+        return getAnalysis(analysisId)
+                .flatMap(analysis -> metricsRepository.findRepositoryMetrics(analysisId))
                 .switchIfEmpty(Mono.error(new AnalysisNotFoundException(analysisId)));
     }
 
+    /**
+     * Returns the manifest file of the analysis' checkout. Fails with
+     * {@link ManifestNotAvailableException} once the checkout has been evicted or before
+     * the manifest has been written.
+     */
+    public Mono<Path> getManifest(String analysisId) {
+        return getAnalysis(analysisId)
+                .flatMap(analysis -> analysis.getStorageLocation() == null
+                        ? Mono.empty()
+                        : contentManifestService.find(analysis.getStorageLocation()))
+                .switchIfEmpty(Mono.error(new ManifestNotAvailableException(analysisId,
+                        "Analysis " + analysisId + " has no stored checkout with a manifest")));
+    }
+
+    public Flux<ManifestEntry> getManifestEntries(String analysisId) {
+        return getManifest(analysisId).flatMapMany(contentManifestService::readEntries);
+    }
+
     public Mono<Long> getAnalysisCount() {
         return analysisRepository.count();
     }
 
-    public Mono<CodeAnalysis> updateAnalysisStatus(String analysisId, String status) {
-        return analysisRepository.findById(analysisId)
-                .flatMap(analysis -> {
-                    analysis.setStatus(status);
-                    if ("COMPLETED".equals(status)) {
-                        analysis.setEndTime(LocalDateTime.now());
-                    }
-                    return analysisRepository.save(analysis);
-                });
+    public Mono<Void> updateAnalysisStatus(String analysisId, String status) {
+        AnalysisStatus target = AnalysisStatus.valueOf(status);
+        Mono<Integer> update = target.isTerminal()
+                ? analysisRepository.updateStatusWithOutcome(analysisId, target.name(), null,
+                        LocalDateTime.now(), target.predecessors())
+                : analysisRepository.updateStatus(analysisId, target.name(), target.predecessors());
+
+        return update.flatMap(rows -> {
+            analysisCache.invalidate(analysisId);
+            if (rows == 0) {
+                return Mono.error(new AnalysisStateConflictException(analysisId, target.name()));
+            }
+            eventPublisher.publishStatus(analysisId, target.name());
+            return Mono.empty();
+        });
     }
 
-    public Flux<CodeAnalysis> getAllAnalyses() {
-        return analysisRepository.findAll();
+    public Mono<AnalysisPage<CodeAnalysis>> listAnalyses(AnalysisFilter filter, String cursor, Integer limit) {
+        return analysisQueryService.listAnalyses(filter, cursor, limit);
     }
 
+    /**
+     * Returns the most recent analyses of a repository, capped at one listing page.
+     */
     public Flux<CodeAnalysis> getAnalysisForUrl(String Url) {
-        return analysisRepository.findByRepositoryUrl(Url)
+        return analysisQueryService.listAnalyses(new AnalysisFilter(null, Url, null, null), null, Integer.MAX_VALUE)
+                .flatMapIterable(AnalysisPage::items)
                 .switchIfEmpty(Flux.error(new AnalysisNotFoundException(Url)));
     }
 }
@@ -0,0 +1,236 @@
+package com.neuralcode.insight.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.neuralcode.insight.dto.CacheStatistics;
+import com.neuralcode.insight.dto.FileMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Content-addressed store of per-file metrics keyed by git blob id. Identical file
+ * contents have the same blob id in every repository and branch, so a file that has been
+ * measured anywhere is not read again.
+ * <p>
+ * Entries are appended to a log of fixed-size 52-byte records (blob id, size and the six
+ * counters) behind a header naming the format and the calculator settings; a log written
+ * with other settings is discarded on startup. The in-memory index is a bounded cache
+ * holding the decoded records themselves, which cost about as much as file offsets
+ * would. Evicted entries stay in the log until it grows to twice the index capacity and
+ * is rewritten from the live entries.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobMetricsCache {
+
+    private static final int MAGIC = 0x4E43424D; // "NCBM"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 4 + 8;
+    private static final int RECORD_BYTES = Constants.OBJECT_ID_LENGTH + 8 + 6 * 4;
+
+    @Value("${insight.cache.blob-metrics.enabled:true}")
+    private boolean enabled;
+
+    @Value("${insight.cache.blob-metrics.path:${java.io.tmpdir}/neural-code-insight/blob-metrics.log}")
+    private String logPath;
+
+    @Value("${insight.cache.blob-metrics.max-entries:500000}")
+    private long maxEntries;
+
+    private final JavaMetricsCalculator metricsCalculator;
+
+    private Cache<ObjectId, BlobMetrics> index;
+
+    private Path logFile;
+
+    private FileChannel logChannel;
+
+    private long logRecords;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        index = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .recordStats()
+                .build();
+        if (!enabled) {
+            return;
+        }
+
+        logFile = Paths.get(logPath);
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        load();
+        logChannel = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        if (logChannel.size() == 0) {
+            logChannel.write(header());
+        } else {
+            logChannel.truncate(HEADER_BYTES + logRecords * RECORD_BYTES);
+        }
+        log.info("Blob metrics cache loaded {} entries from {}", index.estimatedSize(), logFile);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() throws IOException {
+        if (logChannel != null) {
+            logChannel.close();
+        }
+    }
+
+    /**
+     * Returns the cached metrics of the blob under the given path, or null on a miss.
+     */
+    public FileMetrics get(ObjectId blobId, String path) {
+        if (!enabled) {
+            return null;
+        }
+        BlobMetrics metrics = index.getIfPresent(blobId);
+        return metrics != null ? metrics.toFileMetrics(path) : null;
+    }
+
+    public void put(ObjectId blobId, FileMetrics metrics) {
+        if (!enabled) {
+            return;
+        }
+        BlobMetrics blobMetrics = BlobMetrics.of(metrics);
+        if (index.asMap().putIfAbsent(blobId.copy(), blobMetrics) == null) {
+            append(blobId, blobMetrics);
+        }
+    }
+
+    public CacheStatistics statistics() {
+        CacheStats stats = index.stats();
+        return new CacheStatistics(index.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    private synchronized void append(ObjectId blobId, BlobMetrics metrics) {
+        try {
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            write(record, blobId, metrics);
+            record.flip();
+            while (record.hasRemaining()) {
+                logChannel.write(record);
+            }
+            if (++logRecords > 2 * maxEntries) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to append to blob metrics log {}", logFile, e);
+        }
+    }
+
+    private void load() throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (!header.equals(header())) {
+                log.info("Discarding blob metrics log {} written with other settings", logFile);
+                channel.close();
+                Files.delete(logFile);
+                return;
+            }
+
+            // A torn record at the end of the log is ignored and truncated away before appending
+            long recordCount = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            ByteBuffer records = ByteBuffer.allocate(RECORD_BYTES * 4096);
+            long position = HEADER_BYTES;
+            while (logRecords < recordCount && channel.read(records, position) > 0) {
+                records.flip();
+                while (records.remaining() >= RECORD_BYTES && logRecords < recordCount) {
+                    byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+                    records.get(id);
+                    index.put(ObjectId.fromRaw(id), new BlobMetrics(records.getLong(), records.getInt(),
+                            records.getInt(), records.getInt(), records.getInt(), records.getInt(), records.getInt()));
+                    position += RECORD_BYTES;
+                    logRecords++;
+                }
+                records.clear();
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with only the entries still in the index.
+     */
+    private void compact() throws IOException {
+        Path compacted = Files.createTempFile(logFile.toAbsolutePath().getParent(), "blob-metrics-", ".tmp");
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+            channel.write(header());
+            ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+            for (Map.Entry<ObjectId, BlobMetrics> entry : index.asMap().entrySet()) {
+                record.clear();
+                write(record, entry.getKey(), entry.getValue());
+                record.flip();
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                written++;
+            }
+        }
+        logChannel.close();
+        Files.move(compacted, logFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logChannel = FileChannel.open(logFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        log.info("Compacted blob metrics log from {} to {} records", logRecords, written);
+        logRecords = written;
+    }
+
+    private ByteBuffer header() {
+        return ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC)
+                .putInt(FORMAT_VERSION)
+                .putInt(JavaMetricsCalculator.VERSION)
+                .putLong(metricsCalculator.maxFileBytes())
+                .flip();
+    }
+
+    private static void write(ByteBuffer buffer, ObjectId blobId, BlobMetrics metrics) {
+        byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+        blobId.copyRawTo(id, 0);
+        buffer.put(id)
+                .putLong(metrics.sizeBytes())
+                .putInt(metrics.totalLines())
+                .putInt(metrics.codeLines())
+                .putInt(metrics.commentLines())
+                .putInt(metrics.blankLines())
+                .putInt(metrics.classCount())
+                .putInt(metrics.methodCount());
+    }
+
+    private record BlobMetrics(long sizeBytes, int totalLines, int codeLines, int commentLines, int blankLines,
+                               int classCount, int methodCount) {
+
+        static BlobMetrics of(FileMetrics metrics) {
+            return new BlobMetrics(metrics.sizeBytes(), metrics.totalLines(), metrics.codeLines(),
+                    metrics.commentLines(), metrics.blankLines(), metrics.classCount(), metrics.methodCount());
+        }
+
+        FileMetrics toFileMetrics(String path) {
+            return new FileMetrics(path, sizeBytes, totalLines, codeLines, commentLines, blankLines, classCount,
+                    methodCount);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.neuralcode.insight.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Supplies the schedulers that blocking work such as JGit clones and directory deletion
+ * runs on.
+ * <p>
+ * In {@code bounded-elastic} mode these are bounded elastic schedulers, one platform
+ * thread per running task. In {@code virtual-threads} mode every task gets its own virtual
+ * thread, so thousands of tasks parked on I/O cost little memory and no pool has to be
+ * sized for them. Virtual threads need Java 21; on older runtimes the mode falls back to
+ * bounded elastic with a warning. Either way concurrency is limited explicitly, by the
+ * admission control of the caller or by the permits of {@link #fromCallable}, rather than
+ * by how many threads a pool may start.
+ */
+@Slf4j
+@Component
+public class BlockingSchedulers {
+
+    public enum Mode {
+        BOUNDED_ELASTIC,
+        VIRTUAL_THREADS
+    }
+
+    @Value("${insight.blocking.mode:bounded-elastic}")
+    private Mode mode = Mode.BOUNDED_ELASTIC;
+
+    @Value("${insight.blocking.max-concurrent:64}")
+    private int maxConcurrent = 64;
+
+    private Scheduler shared;
+    private Semaphore permits;
+    private boolean virtual;
+
+    @PostConstruct
+    public void initialize() {
+        virtual = mode == Mode.VIRTUAL_THREADS && virtualThreadFactory("probe-").isPresent();
+        if (mode == Mode.VIRTUAL_THREADS && !virtual) {
+            log.warn("insight.blocking.mode is virtual-threads but Java {} has no virtual threads, which need "
+                    + "Java 21; running blocking work on bounded elastic schedulers instead", Runtime.version().feature());
+        }
+        shared = virtual ? newScheduler("blocking", maxConcurrent) : Schedulers.boundedElastic();
+        permits = new Semaphore(maxConcurrent, true);
+        log.info("Blocking work runs on {}, at most {} shared tasks at once",
+                virtual ? "virtual threads" : "bounded elastic schedulers", maxConcurrent);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (virtual && shared != null) {
+            shared.dispose();
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Returns the shared scheduler, for blocking sources such as lazy walks over a tree
+     * that cannot be wrapped in a single {@link #fromCallable} task. Work scheduled on it
+     * directly takes no permit.
+     */
+    public Scheduler scheduler() {
+        return shared;
+    }
+
+    /**
+     * Creates a scheduler of its own for one kind of blocking work. The caller limits how
+     * many tasks it runs at once; {@code maxThreads} only caps the bounded elastic pool.
+     */
+    public Scheduler newScheduler(String name, int maxThreads) {
+        if (mode == Mode.VIRTUAL_THREADS) {
+            Optional<ThreadFactory> factory = virtualThreadFactory(name + "-");
+            if (factory.isPresent()) {
+                return Schedulers.fromExecutorService(newThreadPerTaskExecutor(factory.get()), name);
+            }
+        }
+        return Schedulers.newBoundedElastic(maxThreads, Integer.MAX_VALUE, name);
+    }
+
+    /**
+     * Runs a blocking task on the shared scheduler once one of the {@code max-concurrent}
+     * permits is free. Waiting for a permit blocks the task's own thread, which costs
+     * nothing on a virtual thread.
+     */
+    public <T> Mono<T> fromCallable(Callable<T> task) {
+        return Mono.fromCallable(() -> {
+                    permits.acquire();
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                })
+                .subscribeOn(shared);
+    }
+
+    /**
+     * Builds a factory of named virtual threads through reflection, since the code is
+     * compiled for Java 17. Empty when the runtime has no virtual threads.
+     */
+    static Optional<ThreadFactory> virtualThreadFactory(String prefix) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return Optional.of((ThreadFactory) builderType.getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual thread executor not available", e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.neuralcode.insight.service;
+
+/**
+ * Transport-independent identity of a repository: {@code host/path} without scheme,
+ * credentials, port or {@code .git} suffix, plus its SHA-256 as a fixed-width lookup key.
+ */
+public record CanonicalRepositoryUrl(String canonicalUrl, String hash, String projectName) {
+}
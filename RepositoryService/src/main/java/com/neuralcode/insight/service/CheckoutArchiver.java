@@ -0,0 +1,256 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Packs a checkout into a gzip-compressed tar archive written to a stream, for upload as a
+ * single object.
+ * <p>
+ * Every tar entry is compressed as its own gzip member. Concatenated members form a valid
+ * gzip stream, so the archive still unpacks with standard tools, while each file can be
+ * read back on its own by decompressing just its member. The returned index records where
+ * each file's member starts and how long it is. Compressing files separately costs some
+ * ratio on small files, which the default fast compression level makes up for in speed.
+ * <p>
+ * The index is encoded as the magic {@code NCAX} and a format version byte, followed by one
+ * record per file: unsigned 16-bit path length, UTF-8 path, 64-bit member offset, member
+ * length and uncompressed size.
+ */
+@Component
+public class CheckoutArchiver {
+
+    private static final byte[] INDEX_MAGIC = {'N', 'C', 'A', 'X'};
+    private static final byte INDEX_FORMAT_VERSION = 1;
+
+    @Value("${insight.storage.archive.compression-level:1}")
+    private int compressionLevel;
+
+    /**
+     * Writes the archive of the checkout under {@code root} to the output and returns the
+     * index of its regular files, in archive order. The output is flushed but not closed.
+     */
+    public List<ArchiveEntry> write(Path root, OutputStream output) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(output);
+        List<ArchiveEntry> index = new ArrayList<>();
+
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (path.equals(root) || !isArchivable(path)) {
+                    continue;
+                }
+                String name = root.relativize(path).toString().replace('\\', '/');
+                TarArchiveEntry entry = newEntry(path, name);
+                long offset = counter.getByteCount();
+                writeMember(counter, entry, path);
+                if (hasContent(entry)) {
+                    index.add(new ArchiveEntry(name, offset, counter.getByteCount() - offset, entry.getSize()));
+                }
+            }
+        }
+
+        // Two zero records mark the end of the tar stream
+        try (OutputStream member = newMember(counter)) {
+            member.write(new byte[2 * TarConstants.DEFAULT_RCDSIZE]);
+        }
+        output.flush();
+        return index;
+    }
+
+    /**
+     * Opens the content of a single file given the bytes of its gzip member, as located by
+     * its {@link ArchiveEntry}.
+     */
+    public InputStream openMember(InputStream member) throws IOException {
+        TarArchiveInputStream tar = new TarArchiveInputStream(new GzipCompressorInputStream(member));
+        if (tar.getNextEntry() == null) {
+            tar.close();
+            throw new IOException("Archive member holds no entry");
+        }
+        return tar;
+    }
+
+    /**
+     * Unpacks archive content into the target directory. The input may be the whole
+     * archive or any run of consecutive members starting at a member boundary. Returns
+     * the number of entries written. Entries are never written through a symbolic link
+     * unpacked before them, since the link may point anywhere.
+     */
+    public long unpack(InputStream input, Path target) throws IOException {
+        Path root = target.toAbsolutePath().normalize();
+        long count = 0;
+        TarArchiveInputStream tar = new TarArchiveInputStream(new GzipCompressorInputStream(input, true));
+        TarArchiveEntry entry;
+        while ((entry = tar.getNextEntry()) != null) {
+            Path path = root.resolve(entry.getName()).normalize();
+            if (!path.startsWith(root)) {
+                throw new IOException("Archive entry " + entry.getName() + " points outside " + root);
+            }
+            checkNoSymbolicLinkAbove(root, path, entry.getName());
+            if (entry.isDirectory()) {
+                Files.createDirectories(path);
+            } else if (entry.isSymbolicLink()) {
+                Files.createDirectories(path.getParent());
+                Files.deleteIfExists(path);
+                Files.createSymbolicLink(path, Path.of(entry.getLinkName()));
+            } else {
+                Files.createDirectories(path.getParent());
+                Files.copy(tar, path, StandardCopyOption.REPLACE_EXISTING);
+                if ((entry.getMode() & 0100) != 0) {
+                    path.toFile().setExecutable(true);
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Picks the offsets at which to split an archive into at most {@code segments} runs of
+     * members of about equal compressed size. The first offset is always zero, so the
+     * runs together cover the whole archive including its unindexed entries.
+     */
+    static List<Long> segmentStarts(List<ArchiveEntry> entries, int segments) {
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        if (entries.isEmpty() || segments <= 1) {
+            return starts;
+        }
+        ArchiveEntry last = entries.get(entries.size() - 1);
+        long segmentBytes = Math.max(1, (last.offset() + last.compressedLength()) / segments);
+        for (ArchiveEntry entry : entries) {
+            if (starts.size() == segments) {
+                break;
+            }
+            if (entry.offset() >= starts.get(starts.size() - 1) + segmentBytes) {
+                starts.add(entry.offset());
+            }
+        }
+        return starts;
+    }
+
+    public byte[] encodeIndex(List<ArchiveEntry> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entries.size() * 64 + INDEX_MAGIC.length + 1);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.write(INDEX_MAGIC);
+            output.writeByte(INDEX_FORMAT_VERSION);
+            for (ArchiveEntry entry : entries) {
+                byte[] path = entry.path().getBytes(StandardCharsets.UTF_8);
+                output.writeShort(path.length);
+                output.write(path);
+                output.writeLong(entry.offset());
+                output.writeLong(entry.compressedLength());
+                output.writeLong(entry.sizeBytes());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    public List<ArchiveEntry> decodeIndex(byte[] encoded) throws IOException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            input.readFully(magic);
+            if (!Arrays.equals(magic, INDEX_MAGIC) || input.readUnsignedByte() != INDEX_FORMAT_VERSION) {
+                throw new IOException("Unsupported archive index format");
+            }
+            List<ArchiveEntry> entries = new ArrayList<>();
+            while (true) {
+                int pathLength;
+                try {
+                    pathLength = input.readUnsignedShort();
+                } catch (EOFException end) {
+                    return entries;
+                }
+                byte[] path = new byte[pathLength];
+                input.readFully(path);
+                entries.add(new ArchiveEntry(new String(path, StandardCharsets.UTF_8), input.readLong(),
+                        input.readLong(), input.readLong()));
+            }
+        }
+    }
+
+    private void writeMember(OutputStream output, TarArchiveEntry entry, Path path) throws IOException {
+        try (GzipCompressorOutputStream member = newMember(output)) {
+            // One record per block, so the member ends right after the entry's padding
+            TarArchiveOutputStream tar = new TarArchiveOutputStream(member, TarConstants.DEFAULT_RCDSIZE);
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+            tar.putArchiveEntry(entry);
+            if (hasContent(entry)) {
+                Files.copy(path, tar);
+            }
+            tar.closeArchiveEntry();
+            tar.flush();
+        }
+    }
+
+    private GzipCompressorOutputStream newMember(OutputStream output) throws IOException {
+        GzipParameters parameters = new GzipParameters();
+        parameters.setCompressionLevel(compressionLevel);
+        return new GzipCompressorOutputStream(CloseShieldOutputStream.wrap(output), parameters);
+    }
+
+    private static void checkNoSymbolicLinkAbove(Path root, Path path, String name) throws IOException {
+        for (Path parent = path.getParent(); parent != null && !parent.equals(root); parent = parent.getParent()) {
+            if (Files.isSymbolicLink(parent)) {
+                throw new IOException("Archive entry " + name + " lies under symbolic link " + root.relativize(parent));
+            }
+        }
+    }
+
+    // TarArchiveEntry.isFile() also holds for symbolic links, whose target must not be read
+    private static boolean hasContent(TarArchiveEntry entry) {
+        return entry.isFile() && !entry.isSymbolicLink();
+    }
+
+    private static boolean isArchivable(Path path) {
+        return Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)
+                || Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)
+                || Files.isSymbolicLink(path);
+    }
+
+    private static TarArchiveEntry newEntry(Path path, String name) throws IOException {
+        TarArchiveEntry entry;
+        if (Files.isSymbolicLink(path)) {
+            entry = new TarArchiveEntry(name, TarConstants.LF_SYMLINK);
+            entry.setLinkName(Files.readSymbolicLink(path).toString());
+        } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+            entry = new TarArchiveEntry(name + "/");
+        } else {
+            entry = new TarArchiveEntry(name);
+            entry.setSize(Files.size(path));
+            entry.setMode(Files.isExecutable(path) ? 0100755 : TarArchiveEntry.DEFAULT_FILE_MODE);
+        }
+        entry.setModTime(new Date(Files.getLastModifiedTime(path, LinkOption.NOFOLLOW_LINKS).toMillis()));
+        return entry;
+    }
+}
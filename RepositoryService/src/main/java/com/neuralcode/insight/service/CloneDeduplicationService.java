@@ -0,0 +1,105 @@
+package com.neuralcode.insight.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.context.ContextView;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent clones of the same {@link CloneKey} onto a single in-flight
+ * operation. The first caller for a key performs the clone; callers arriving while it is
+ * running receive the same result without starting a clone of their own.
+ * <p>
+ * The flight counts the callers waiting on it. When the last of them cancels, the clone
+ * itself is cancelled, so a shared clone stops once nobody wants its result any more.
+ */
+@Slf4j
+@Service
+public class CloneDeduplicationService {
+
+    private final Map<CloneKey, Flight> inFlight = new HashMap<>();
+
+    public Mono<CloneResult> cloneOnce(CloneKey key, String analysisId, Supplier<Mono<String>> cloneOperation) {
+        return Mono.deferContextual(context -> {
+            Flight flight;
+            boolean created = false;
+            synchronized (inFlight) {
+                flight = inFlight.get(key);
+                if (flight == null) {
+                    flight = new Flight();
+                    inFlight.put(key, flight);
+                    created = true;
+                }
+                flight.waiting++;
+            }
+
+            if (created) {
+                start(key, flight, analysisId, cloneOperation, context);
+            } else {
+                log.info("Analysis {} joined in-flight clone of {} at {}",
+                        analysisId, key.normalizedUrl(), key.commitSha());
+            }
+            Flight joined = flight;
+            return flight.result.asMono().doOnCancel(() -> leave(key, joined, analysisId));
+        });
+    }
+
+    public int inFlightCount() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    /**
+     * Runs the clone on behalf of every caller, in the context of the one that started it
+     * so its trace is kept.
+     */
+    private void start(CloneKey key, Flight flight, String analysisId, Supplier<Mono<String>> cloneOperation,
+                       ContextView context) {
+        flight.clone.update(Mono.defer(cloneOperation)
+                .contextWrite(context)
+                .subscribe(location -> {
+                    finish(key, flight);
+                    flight.result.tryEmitValue(new CloneResult(analysisId, location));
+                }, error -> {
+                    finish(key, flight);
+                    flight.result.tryEmitError(error);
+                }, () -> {
+                    finish(key, flight);
+                    flight.result.tryEmitEmpty();
+                }));
+    }
+
+    private void finish(CloneKey key, Flight flight) {
+        synchronized (inFlight) {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private void leave(CloneKey key, Flight flight, String analysisId) {
+        boolean abandoned;
+        synchronized (inFlight) {
+            abandoned = --flight.waiting == 0 && inFlight.remove(key, flight);
+        }
+        if (abandoned) {
+            log.info("Last analysis waiting on clone of {} at {} left ({}), cancelling it",
+                    key.normalizedUrl(), key.commitSha(), analysisId);
+            flight.clone.dispose();
+        }
+    }
+
+    private static final class Flight {
+
+        private final Sinks.One<CloneResult> result = Sinks.one();
+        private final Disposable.Swap clone = Disposables.swap();
+        // Guarded by inFlight
+        private int waiting;
+    }
+}
@@ -0,0 +1,161 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.CloneCapacityExceededException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.transport.URIish;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.scheduler.Scheduler;
+
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs blocking clone work on a dedicated scheduler with explicit admission control: at
+ * most {@code max-concurrent} clones run at once, at most {@code max-per-host} of them
+ * against any single remote host, and at most {@code max-queued} wait for a slot. Work
+ * beyond that is rejected immediately with {@link CloneCapacityExceededException}. The
+ * scheduler comes from {@link BlockingSchedulers}, so clones may run on virtual threads;
+ * the limits here hold either way.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CloneExecutor {
+
+    private final BlockingSchedulers blockingSchedulers;
+
+    @Value("${insight.clone.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${insight.clone.max-per-host:4}")
+    private int maxPerHost;
+
+    @Value("${insight.clone.max-queued:32}")
+    private int maxQueued;
+
+    @Value("#{${insight.clone.host-limits:{:}}}")
+    private Map<String, Integer> hostLimits = Map.of();
+
+    private final Map<String, Integer> activePerHost = new HashMap<>();
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private int active;
+
+    private Scheduler scheduler;
+
+    @PostConstruct
+    public void initialize() {
+        scheduler = blockingSchedulers.newScheduler("clone", maxConcurrent);
+        log.info("Clone executor started: {} concurrent, {} per host, {} queued",
+                maxConcurrent, maxPerHost, maxQueued);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.dispose();
+        }
+    }
+
+    /**
+     * Runs the task once a slot for the repository's host is free.
+     */
+    public <T> Mono<T> execute(String repositoryUrl, Callable<T> task) {
+        String host = hostOf(repositoryUrl);
+        return Mono.usingWhen(
+                acquire(host),
+                permit -> Mono.fromCallable(task).subscribeOn(scheduler),
+                permit -> Mono.fromRunnable(() -> release(host)));
+    }
+
+    public synchronized int getActiveCount() {
+        return active;
+    }
+
+    public synchronized int getQueuedCount() {
+        return waiting.size();
+    }
+
+    private Mono<String> acquire(String host) {
+        return Mono.<String>create(sink -> {
+            synchronized (this) {
+                if (hasCapacity(host)) {
+                    grant(host);
+                } else if (waiting.size() >= maxQueued) {
+                    sink.error(new CloneCapacityExceededException(host,
+                            "Clone queue is full (" + maxQueued + " waiting), please retry later"));
+                    return;
+                } else {
+                    Waiter waiter = new Waiter(host, sink);
+                    waiting.addLast(waiter);
+                    sink.onCancel(() -> {
+                        synchronized (this) {
+                            waiting.remove(waiter);
+                        }
+                    });
+                    log.debug("Clone for host {} queued, {} waiting", host, waiting.size());
+                    return;
+                }
+            }
+            sink.success(host);
+        })
+                // A slot granted to a waiter that was cancelled in the meantime is discarded
+                // rather than delivered; hand it straight back
+                .doOnDiscard(String.class, this::release);
+    }
+
+    private void release(String host) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            active--;
+            activePerHost.computeIfPresent(host, (key, count) -> count > 1 ? count - 1 : null);
+
+            // Hand freed slots to the oldest waiters whose host is not at its own limit
+            Iterator<Waiter> iterator = waiting.iterator();
+            while (iterator.hasNext() && active < maxConcurrent) {
+                Waiter waiter = iterator.next();
+                if (hasCapacity(waiter.host())) {
+                    iterator.remove();
+                    grant(waiter.host());
+                    granted.add(waiter);
+                }
+            }
+        }
+        granted.forEach(waiter -> waiter.sink().success(waiter.host()));
+    }
+
+    private boolean hasCapacity(String host) {
+        int hostLimit = hostLimits.getOrDefault(host, maxPerHost);
+        return active < maxConcurrent && activePerHost.getOrDefault(host, 0) < hostLimit;
+    }
+
+    private void grant(String host) {
+        active++;
+        activePerHost.merge(host, 1, Integer::sum);
+    }
+
+    String hostOf(String repositoryUrl) {
+        try {
+            String host = new URIish(repositoryUrl).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : "local";
+        } catch (URISyntaxException e) {
+            return "unknown";
+        }
+    }
+
+    private record Waiter(String host, MonoSink<String> sink) {
+    }
+}
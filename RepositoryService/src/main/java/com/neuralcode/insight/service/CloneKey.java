@@ -0,0 +1,10 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CloneOptions;
+
+/**
+ * Identifies a checkout by what it contains rather than by who asked for it: two
+ * requests with equal keys produce identical working trees.
+ */
+public record CloneKey(String normalizedUrl, String branchName, String commitSha, CloneOptions cloneOptions) {
+}
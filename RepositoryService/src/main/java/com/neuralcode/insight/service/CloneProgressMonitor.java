@@ -0,0 +1,177 @@
+package com.neuralcode.insight.service;
+
+import org.eclipse.jgit.internal.JGitText;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Forwards JGit clone progress to the {@link AnalysisEventPublisher}, throttled so a fast
+ * clone does not flood subscribers with one event per object.
+ * <p>
+ * Also tracks how the transfer is going for the {@link CloneWatchdog}: when progress was
+ * last made, how many objects have been received out of how many the remote announced,
+ * and how many bytes of pack data have been written. JGit calls the monitor from the clone
+ * thread while the watchdog reads it from another, so that state is volatile. The watchdog
+ * aborts a clone through {@link #cancel()}, which JGit polls via {@link #isCancelled()}.
+ */
+public class CloneProgressMonitor implements ProgressMonitor {
+
+    private static final long PUBLISH_INTERVAL_MILLIS = 250;
+
+    private final String analysisId;
+    private final AnalysisEventPublisher eventPublisher;
+
+    private String task;
+    private int totalWork;
+    private volatile int completedWork;
+    private long lastPublished;
+
+    private volatile boolean receiving;
+    private volatile long receivedObjects;
+    private volatile long expectedObjects;
+    private volatile long packBytes;
+    private volatile long startedNanos;
+    private volatile long lastProgressNanos;
+    private volatile boolean cancelled;
+
+    private volatile File packDirectory;
+
+    public CloneProgressMonitor(String analysisId, AnalysisEventPublisher eventPublisher) {
+        this.analysisId = analysisId;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Marks the start of the transfer, once the clone holds its slot and any mirror lock
+     * it needs. Time spent waiting before this does not count as a stall. Later calls
+     * leave the clock running.
+     */
+    public void markStarted() {
+        if (startedNanos == 0) {
+            lastProgressNanos = System.nanoTime();
+            startedNanos = lastProgressNanos;
+        }
+    }
+
+    /**
+     * Sets the object database whose pack files are sampled for progress: the checkout's
+     * {@code .git} directory, or a bare mirror while it is being fetched into.
+     */
+    public void samplePacksIn(Path objectDatabase) {
+        packDirectory = objectDatabase.resolve("objects").resolve("pack").toFile();
+        packBytes = 0;
+    }
+
+    @Override
+    public void start(int totalTasks) {
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        this.task = title;
+        this.totalWork = totalWork;
+        this.completedWork = 0;
+        receiving = JGitText.get().receivingObjects.equals(title);
+        if (receiving && totalWork > 0) {
+            expectedObjects += totalWork;
+        }
+        lastProgressNanos = System.nanoTime();
+        publish();
+    }
+
+    @Override
+    public void update(int completed) {
+        completedWork += completed;
+        lastProgressNanos = System.nanoTime();
+        if (System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL_MILLIS) {
+            publish();
+        }
+    }
+
+    @Override
+    public void endTask() {
+        if (receiving) {
+            receivedObjects += completedWork;
+            receiving = false;
+        }
+        publish();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void showDuration(boolean enabled) {
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isStarted() {
+        return startedNanos != 0;
+    }
+
+    /**
+     * Objects received so far, including those of a receive still in progress.
+     */
+    public long getReceivedObjects() {
+        return receiving ? receivedObjects + completedWork : receivedObjects;
+    }
+
+    /**
+     * Objects the remote announced it would send, or 0 while that is not known yet.
+     */
+    public long getExpectedObjects() {
+        return expectedObjects;
+    }
+
+    public long getPackBytes() {
+        return packBytes;
+    }
+
+    public Duration getElapsed() {
+        return isStarted() ? Duration.ofNanos(System.nanoTime() - startedNanos) : Duration.ZERO;
+    }
+
+    public Duration getSinceLastProgress() {
+        return isStarted() ? Duration.ofNanos(System.nanoTime() - lastProgressNanos) : Duration.ZERO;
+    }
+
+    /**
+     * Measures the pack data written so far. JGit reports no progress while it is still
+     * negotiating or while a single large object arrives, so pack growth counts as progress
+     * as well.
+     */
+    public void samplePackBytes() {
+        File[] packs = packDirectory != null ? packDirectory.listFiles() : null;
+        if (packs == null) {
+            return;
+        }
+        long bytes = 0;
+        for (File pack : packs) {
+            bytes += pack.length();
+        }
+        if (bytes > packBytes) {
+            packBytes = bytes;
+            lastProgressNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Final figures of a finished clone, with {@code bytes} measured by the caller.
+     */
+    public CloneTransfer transfer(long bytes) {
+        return new CloneTransfer(getReceivedObjects(), bytes, getElapsed());
+    }
+
+    private void publish() {
+        lastPublished = System.currentTimeMillis();
+        eventPublisher.publishProgress(analysisId, task, completedWork, totalWork);
+    }
+}
@@ -0,0 +1,7 @@
+package com.neuralcode.insight.service;
+
+/**
+ * Location of a checkout together with the analysis that actually performed the clone.
+ */
+public record CloneResult(String ownerAnalysisId, String storageLocation) {
+}
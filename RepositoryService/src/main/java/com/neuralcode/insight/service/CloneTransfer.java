@@ -0,0 +1,23 @@
+package com.neuralcode.insight.service;
+
+import java.time.Duration;
+
+/**
+ * What a finished clone transferred: objects received, size of the resulting object
+ * database and time from the start of the clone to its end, excluding time queued.
+ */
+public record CloneTransfer(long objects, long bytes, Duration duration) {
+
+    public double objectsPerSecond() {
+        return perSecond(objects);
+    }
+
+    public double bytesPerSecond() {
+        return perSecond(bytes);
+    }
+
+    private double perSecond(long amount) {
+        long millis = duration.toMillis();
+        return millis == 0 ? 0 : amount * 1000.0 / millis;
+    }
+}
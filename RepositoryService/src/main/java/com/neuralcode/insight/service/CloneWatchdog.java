@@ -0,0 +1,86 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.RepositoryCloneException;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Aborts clones that stop making progress or run far longer than their size warrants.
+ * <p>
+ * A clone has stalled once neither JGit progress nor pack data has moved for
+ * {@code stall-timeout}, which frees its slot within seconds whatever the size of the
+ * repository. Independently, a clone may run for at most {@code ceiling.base} plus the
+ * time to receive the objects the remote announced at {@code ceiling.min-objects-per-second},
+ * capped at {@code ceiling.max}, so a large repository that keeps trickling in is still
+ * bounded. Time spent waiting for a slot counts towards neither.
+ */
+@Slf4j
+@Component
+public class CloneWatchdog {
+
+    @Getter
+    @Value("${insight.clone.stall-timeout:30s}")
+    private Duration stallTimeout = Duration.ofSeconds(30);
+
+    @Value("${insight.clone.check-interval:1s}")
+    private Duration checkInterval = Duration.ofSeconds(1);
+
+    @Value("${insight.clone.ceiling.base:5m}")
+    private Duration ceilingBase = Duration.ofMinutes(5);
+
+    @Value("${insight.clone.ceiling.min-objects-per-second:200}")
+    private long minObjectsPerSecond = 200;
+
+    @Value("${insight.clone.ceiling.max:2h}")
+    private Duration ceilingMax = Duration.ofHours(2);
+
+    /**
+     * Fails the clone with {@link RepositoryCloneException} once it stalls or exceeds its
+     * ceiling, cancelling it both in Reactor and, through the monitor, in JGit.
+     */
+    public <T> Mono<T> watch(Mono<T> clone, CloneProgressMonitor progressMonitor, String analysisId,
+                             String repositoryUrl) {
+        Mono<T> watchdog = Flux.interval(checkInterval)
+                .filter(tick -> progressMonitor.isStarted())
+                .concatMap(tick -> {
+                    progressMonitor.samplePackBytes();
+                    String violation = violation(progressMonitor);
+                    if (violation == null) {
+                        return Mono.empty();
+                    }
+                    progressMonitor.cancel();
+                    log.warn("Aborting clone of {} for analysis {}: {}", repositoryUrl, analysisId, violation);
+                    return Mono.error(new RepositoryCloneException(analysisId, repositoryUrl, violation, null));
+                })
+                .then(Mono.never());
+        return Mono.firstWithSignal(clone, watchdog);
+    }
+
+    /**
+     * Time the clone may run for, given the objects announced so far.
+     */
+    Duration ceiling(long expectedObjects) {
+        Duration ceiling = ceilingBase.plusSeconds(expectedObjects / Math.max(minObjectsPerSecond, 1));
+        return ceiling.compareTo(ceilingMax) > 0 ? ceilingMax : ceiling;
+    }
+
+    private String violation(CloneProgressMonitor progressMonitor) {
+        Duration idle = progressMonitor.getSinceLastProgress();
+        if (idle.compareTo(stallTimeout) >= 0) {
+            return String.format("Repository clone stalled: no progress for %d seconds after %d objects",
+                    idle.toSeconds(), progressMonitor.getReceivedObjects());
+        }
+        Duration ceiling = ceiling(progressMonitor.getExpectedObjects());
+        if (progressMonitor.getElapsed().compareTo(ceiling) >= 0) {
+            return String.format("Repository clone exceeded its limit of %d seconds for %d objects",
+                    ceiling.toSeconds(), progressMonitor.getExpectedObjects());
+        }
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+package com.neuralcode.insight.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reads commit information from a local checkout for incremental re-analysis.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CommitDiffResolver {
+
+    private final BlockingSchedulers blockingSchedulers;
+
+    /**
+     * Returns the commit the checkout's HEAD points to, or empty if it is not a git
+     * working tree.
+     */
+    public Optional<String> headCommit(String storageLocation) {
+        try (Repository repository = open(storageLocation)) {
+            ObjectId head = repository.resolve(Constants.HEAD);
+            return Optional.ofNullable(head).map(ObjectId::name);
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Could not resolve HEAD of {}: {}", storageLocation, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Returns every path added, modified or deleted between the given commit and HEAD of
+     * the checkout, using the old and the new path of each change. Empty if the base
+     * commit is not available locally, as happens with shallow clones.
+     */
+    public Optional<Set<String>> changedPaths(String storageLocation, String baseCommit) {
+        try (Repository repository = open(storageLocation);
+             RevWalk walk = new RevWalk(repository);
+             DiffFormatter formatter = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+            ObjectId base = ObjectId.fromString(baseCommit);
+            ObjectId head = repository.resolve(Constants.HEAD);
+            if (head == null || !repository.getObjectDatabase().has(base)) {
+                return Optional.empty();
+            }
+
+            RevCommit baseRevision = walk.parseCommit(base);
+            RevCommit headRevision = walk.parseCommit(head);
+
+            formatter.setRepository(repository);
+            formatter.setDetectRenames(false);
+
+            Set<String> changed = new HashSet<>();
+            for (DiffEntry entry : formatter.scan(baseRevision.getTree(), headRevision.getTree())) {
+                if (!DiffEntry.DEV_NULL.equals(entry.getOldPath())) {
+                    changed.add(entry.getOldPath());
+                }
+                if (!DiffEntry.DEV_NULL.equals(entry.getNewPath())) {
+                    changed.add(entry.getNewPath());
+                }
+            }
+            return Optional.of(changed);
+        } catch (IOException | IllegalArgumentException e) {
+            log.debug("Could not diff {} against {}: {}", storageLocation, baseCommit, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Streams the regular files tracked at HEAD whose path ends with the given suffix,
+     * optionally restricted to the given paths, together with their blob ids. The ids are
+     * read from the tree objects, so the working tree is not touched.
+     */
+    public Flux<TrackedFile> trackedFiles(String storageLocation, String suffix, Collection<String> onlyPaths) {
+        return Flux.using(() -> open(storageLocation),
+                        repository -> Flux.<TrackedFile, TreeWalk>generate(
+                                () -> newTreeWalk(repository, suffix, onlyPaths),
+                                (walk, sink) -> {
+                                    try {
+                                        while (walk.next()) {
+                                            FileMode mode = walk.getFileMode(0);
+                                            if (mode == FileMode.REGULAR_FILE || mode == FileMode.EXECUTABLE_FILE) {
+                                                sink.next(new TrackedFile(walk.getPathString(), walk.getObjectId(0)));
+                                                return walk;
+                                            }
+                                        }
+                                        sink.complete();
+                                    } catch (IOException e) {
+                                        sink.error(e);
+                                    }
+                                    return walk;
+                                },
+                                TreeWalk::close),
+                        Repository::close)
+                .subscribeOn(blockingSchedulers.scheduler());
+    }
+
+    private TreeWalk newTreeWalk(Repository repository, String suffix, Collection<String> onlyPaths)
+            throws IOException {
+        ObjectId head = repository.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new IOException("Checkout " + repository.getWorkTree() + " has no HEAD commit");
+        }
+        TreeWalk walk = new TreeWalk(repository);
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            walk.addTree(revWalk.parseCommit(head).getTree());
+        }
+        walk.setRecursive(true);
+        TreeFilter filter = PathSuffixFilter.create(suffix);
+        if (onlyPaths != null) {
+            filter = onlyPaths.isEmpty()
+                    ? TreeFilter.ALL.negate()
+                    : AndTreeFilter.create(PathFilterGroup.createFromStrings(onlyPaths), filter);
+        }
+        walk.setFilter(filter);
+        return walk;
+    }
+
+    private Repository open(String storageLocation) throws IOException {
+        return new FileRepositoryBuilder()
+                .setWorkTree(new File(storageLocation))
+                .setMustExist(true)
+                .build();
+    }
+}
@@ -0,0 +1,314 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.ManifestEntry;
+import com.neuralcode.insight.repository.ManifestRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.stream.Stream;
+
+/**
+ * Builds a manifest of every file in a checkout with its size and SHA-256 digest, and
+ * writes it to a compact binary file next to the checkout.
+ * <p>
+ * Files are hashed on a dedicated pool with one thread per core. Large files are hashed
+ * through memory-mapped windows of the file, so their content is digested straight from
+ * the page cache without being copied into the heap; small files, for which setting up a
+ * mapping costs more than it saves, are read through a reused direct buffer. Entries are
+ * written in walk order as they complete.
+ * <p>
+ * The binary format is a header of the magic {@code NCIM}, a format version byte and an
+ * algorithm byte, followed by one record per file: 32-bit path length, UTF-8 path, 64-bit
+ * size and the 32-byte digest. Version 1 manifests, which stored the path length in 16
+ * bits, are still read.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContentManifestService {
+
+    private static final byte[] MAGIC = {'N', 'C', 'I', 'M'};
+    private static final byte FORMAT_VERSION = 2;
+    private static final byte SHORT_PATH_FORMAT_VERSION = 1;
+    private static final byte ALGORITHM_SHA_256 = 1;
+    private static final int DIGEST_LENGTH = 32;
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_BYTES));
+
+    @Value("${insight.manifest.enabled:true}")
+    private boolean enabled;
+
+    @Value("${insight.manifest.parallelism:0}")
+    private int parallelism;
+
+    @Value("${insight.manifest.mmap-threshold-bytes:1048576}")
+    private long mmapThresholdBytes;
+
+    @Value("${insight.manifest.persist-to-database:false}")
+    private boolean persistToDatabase;
+
+    @Value("${insight.manifest.batch-size:500}")
+    private int batchSize;
+
+    private final WorkspaceManager workspaceManager;
+    private final ManifestRepository manifestRepository;
+    private final BlockingSchedulers blockingSchedulers;
+
+    private Scheduler hashScheduler;
+
+    @PostConstruct
+    public void initialize() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        hashScheduler = Schedulers.newParallel("manifest-hash", parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (hashScheduler != null) {
+            hashScheduler.dispose();
+        }
+    }
+
+    /**
+     * Writes the manifest of the checkout unless it already exists. Checkouts shared by
+     * several analyses get one manifest; it is written to a temporary file and moved into
+     * place, so readers never see a partial manifest. Completes with the manifest path.
+     */
+    public Mono<Path> build(String analysisId, String storageLocation) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        Path root = Paths.get(storageLocation);
+        Path manifest = workspaceManager.manifestFile(storageLocation);
+
+        return Mono.defer(() -> {
+            if (Files.exists(manifest)) {
+                return persist(analysisId, manifest).thenReturn(manifest);
+            }
+            long startNanos = System.nanoTime();
+            return Mono.fromCallable(() -> Files.createTempFile(manifest.getParent(), "manifest-", ".tmp"))
+                    .flatMap(temporary -> writeManifest(root, temporary)
+                            .doOnNext(count -> log.info("Hashed {} files of analysis {} in {} ms",
+                                    count, analysisId, (System.nanoTime() - startNanos) / 1_000_000))
+                            .then(Mono.fromCallable(() -> Files.move(temporary, manifest,
+                                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING)))
+                            .doOnError(error -> deleteQuietly(temporary)))
+                    .flatMap(written -> persist(analysisId, written).thenReturn(written));
+        }).subscribeOn(blockingSchedulers.scheduler());
+    }
+
+    /**
+     * Returns the location of the checkout's manifest if it has been written.
+     */
+    public Mono<Path> find(String storageLocation) {
+        return blockingSchedulers.fromCallable(() -> {
+            Path manifest = workspaceManager.manifestFile(storageLocation);
+            return Files.exists(manifest) ? manifest : null;
+        });
+    }
+
+    /**
+     * Decodes a manifest file into its entries, in the order they were written.
+     */
+    public Flux<ManifestEntry> readEntries(Path manifest) {
+        return Flux.<ManifestEntry, ManifestInput>generate(
+                        () -> openManifest(manifest),
+                        (input, sink) -> {
+                            ManifestEntry entry = readEntry(input);
+                            if (entry == null) {
+                                sink.complete();
+                            } else {
+                                sink.next(entry);
+                            }
+                            return input;
+                        },
+                        this::closeQuietly)
+                .subscribeOn(blockingSchedulers.scheduler());
+    }
+
+    private Mono<Long> writeManifest(Path root, Path target) {
+        Path gitDirectory = root.resolve(".git");
+        Flux<Path> files = Flux.using(() -> Files.walk(root), Flux::fromStream, Stream::close)
+                .filter(path -> !path.startsWith(gitDirectory))
+                .filter(path -> Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS))
+                .subscribeOn(blockingSchedulers.scheduler());
+
+        return Flux.using(
+                        () -> new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target))),
+                        output -> {
+                            writeHeader(output);
+                            return files
+                                    .flatMapSequential(file -> Mono.fromCallable(() -> hash(root, file))
+                                            .subscribeOn(hashScheduler), parallelism)
+                                    .doOnNext(entry -> writeEntry(output, entry));
+                        },
+                        this::closeQuietly)
+                .count();
+    }
+
+    private HashedFile hash(Path root, Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size >= mmapThresholdBytes) {
+                for (long position = 0; position < size; position += MAP_WINDOW_BYTES) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAP_WINDOW_BYTES, size - position));
+                    digest.update(window);
+                }
+            } else {
+                ByteBuffer buffer = READ_BUFFER.get();
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        String relativePath = root.relativize(file).toString().replace('\\', '/');
+        return new HashedFile(relativePath.getBytes(StandardCharsets.UTF_8), size, digest.digest());
+    }
+
+    private Mono<Void> persist(String analysisId, Path manifest) {
+        if (!persistToDatabase) {
+            return Mono.empty();
+        }
+        return manifestRepository.deleteForAnalysis(analysisId)
+                .thenMany(readEntries(manifest)
+                        .buffer(batchSize)
+                        .concatMap(batch -> manifestRepository.insertEntries(analysisId, batch)))
+                .then();
+    }
+
+    static void writeHeader(DataOutputStream output) {
+        try {
+            output.write(MAGIC);
+            output.writeByte(FORMAT_VERSION);
+            output.writeByte(ALGORITHM_SHA_256);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void writeEntry(DataOutputStream output, HashedFile entry) {
+        try {
+            output.writeInt(entry.path().length);
+            output.write(entry.path());
+            output.writeLong(entry.sizeBytes());
+            output.write(entry.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ManifestInput openManifest(Path manifest) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)));
+        byte[] magic = new byte[MAGIC.length];
+        input.readFully(magic);
+        int version = input.readUnsignedByte();
+        int algorithm = input.readUnsignedByte();
+        if (!Arrays.equals(magic, MAGIC) || (version != FORMAT_VERSION && version != SHORT_PATH_FORMAT_VERSION)
+                || algorithm != ALGORITHM_SHA_256) {
+            input.close();
+            throw new IOException("Unsupported manifest format in " + manifest);
+        }
+        return new ManifestInput(input, version);
+    }
+
+    private static ManifestEntry readEntry(ManifestInput manifest) {
+        DataInputStream input = manifest.input();
+        try {
+            int pathLength;
+            try {
+                pathLength = manifest.version() == SHORT_PATH_FORMAT_VERSION
+                        ? input.readUnsignedShort()
+                        : input.readInt();
+            } catch (EOFException end) {
+                return null;
+            }
+            if (pathLength < 0) {
+                throw new IOException("Corrupt manifest entry with path length " + pathLength);
+            }
+            byte[] path = new byte[pathLength];
+            input.readFully(path);
+            long size = input.readLong();
+            byte[] digest = new byte[DIGEST_LENGTH];
+            input.readFully(digest);
+            return new ManifestEntry(new String(path, StandardCharsets.UTF_8), size, HexFormat.of().formatHex(digest));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.debug("Failed to close manifest stream", e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Failed to delete temporary manifest {}", file, e);
+        }
+    }
+
+    record HashedFile(byte[] path, long sizeBytes, byte[] digest) {
+    }
+
+    private record ManifestInput(DataInputStream input, int version) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CacheStatistics;
+import com.neuralcode.insight.repository.AnalysisJobRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Exposes the state the services already keep as gauges and counters: clone slots and
+ * waiters, running jobs, upload counters and cache statistics. The depth of the shared job
+ * queue lives in the database, so it is polled every {@code queue-depth-interval} rather
+ * than read on each scrape.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InsightMeterBinder implements MeterBinder {
+
+    @Value("${insight.observability.queue-depth-interval:15s}")
+    private Duration queueDepthInterval;
+
+    private final CloneExecutor cloneExecutor;
+    private final AnalysisJobWorker analysisJobWorker;
+    private final AnalysisJobRepository analysisJobRepository;
+    private final S3StorageService s3StorageService;
+    private final AnalysisCache analysisCache;
+    private final BlobMetricsCache blobMetricsCache;
+
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    private Disposable queueDepthPoller;
+
+    @PostConstruct
+    public void initialize() {
+        queueDepthPoller = Flux.interval(Duration.ZERO, queueDepthInterval, Schedulers.parallel())
+                .onBackpressureDrop()
+                .concatMap(tick -> analysisJobRepository.countQueued()
+                        .onErrorResume(ex -> {
+                            log.debug("Failed to read job queue depth: {}", ex.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe(queueDepth::set);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (queueDepthPoller != null) {
+            queueDepthPoller.dispose();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("insight.clone.active", cloneExecutor, CloneExecutor::getActiveCount)
+                .description("Clones currently running")
+                .register(registry);
+        Gauge.builder("insight.clone.queued", cloneExecutor, CloneExecutor::getQueuedCount)
+                .description("Clones waiting for a slot")
+                .register(registry);
+
+        Gauge.builder("insight.queue.depth", queueDepth, AtomicLong::get)
+                .description("Analysis jobs waiting in the shared queue")
+                .register(registry);
+        Gauge.builder("insight.queue.active", analysisJobWorker, AnalysisJobWorker::getActiveJobs)
+                .description("Analysis jobs this instance is running")
+                .register(registry);
+
+        Gauge.builder("insight.s3.upload.active", s3StorageService, s3 -> s3.statistics().activeUploads())
+                .description("Directory uploads in progress")
+                .register(registry);
+        FunctionCounter.builder("insight.s3.upload.transferred", s3StorageService,
+                        s3 -> s3.statistics().bytesUploaded())
+                .description("Bytes uploaded by directory uploads")
+                .baseUnit("bytes")
+                .register(registry);
+        FunctionCounter.builder("insight.s3.upload.files", s3StorageService, s3 -> s3.statistics().filesUploaded())
+                .tag("result", "uploaded")
+                .register(registry);
+        FunctionCounter.builder("insight.s3.upload.files", s3StorageService, s3 -> s3.statistics().filesRetried())
+                .tag("result", "retried")
+                .register(registry);
+        FunctionCounter.builder("insight.s3.upload.files", s3StorageService, s3 -> s3.statistics().filesFailed())
+                .tag("result", "failed")
+                .register(registry);
+
+        bindCache(registry, "analysis", analysisCache, AnalysisCache::statistics);
+        bindCache(registry, "blob-metrics", blobMetricsCache, BlobMetricsCache::statistics);
+    }
+
+    private <T> void bindCache(MeterRegistry registry, String cache, T source,
+                               Function<T, CacheStatistics> statistics) {
+        Gauge.builder("insight.cache.size", source, s -> statistics.apply(s).size())
+                .tag("cache", cache)
+                .register(registry);
+        FunctionCounter.builder("insight.cache.gets", source, s -> statistics.apply(s).hitCount())
+                .tags("cache", cache, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("insight.cache.gets", source, s -> statistics.apply(s).missCount())
+                .tags("cache", cache, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("insight.cache.evictions", source, s -> statistics.apply(s).evictionCount())
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
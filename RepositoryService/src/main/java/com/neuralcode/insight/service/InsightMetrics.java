@@ -0,0 +1,204 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CloneStrategy;
+import io.micrometer.common.KeyValues;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.internal.TimedScheduledExecutorService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.Scannable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records the timings and sizes of the analysis pipeline and opens the observations that
+ * become trace spans. Every analysis runs inside an {@code insight.analysis} observation
+ * tagged with its id; observations started further down the pipeline, such as clones and
+ * database queries, find it in the Reactor context and become its children.
+ * <p>
+ * The analysis id is a high cardinality key, so it appears on spans but never as a metric
+ * tag.
+ */
+@Component
+@RequiredArgsConstructor
+public class InsightMetrics {
+
+    public static final String ANALYSIS_ID = "analysis.id";
+
+    static final String SCHEDULER_DECORATOR = "insight.metrics";
+
+    private static final String SCHEDULER_METRICS = "reactor.scheduler";
+
+    private final MeterRegistry meterRegistry;
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * Wraps the pipeline of one analysis step in an observation that is a child of any
+     * observation already in the subscriber context.
+     */
+    public <T> Mono<T> observe(String name, String analysisId, KeyValues lowCardinalityKeyValues, Mono<T> source) {
+        return Mono.deferContextual(context -> {
+            Observation observation = Observation.createNotStarted(name, observationRegistry)
+                    .parentObservation(context.getOrDefault(ObservationThreadLocalAccessor.KEY, null))
+                    .lowCardinalityKeyValues(lowCardinalityKeyValues)
+                    .highCardinalityKeyValue(ANALYSIS_ID, analysisId)
+                    .start();
+            return source
+                    .doOnError(observation::error)
+                    .doOnTerminate(observation::stop)
+                    .doOnCancel(observation::stop)
+                    .contextWrite(inner -> inner.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /**
+     * Records the size and speed of a finished clone. Object counts come from the JGit
+     * progress monitor; bytes are the size of the cloned object database.
+     */
+    public void recordClone(CloneStrategy strategy, CloneTransfer transfer) {
+        Tags tags = Tags.of("strategy", strategy.name().toLowerCase(Locale.ROOT));
+        DistributionSummary.builder("insight.clone.objects")
+                .description("Objects received by a clone")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(transfer.objects());
+        DistributionSummary.builder("insight.clone.bytes")
+                .description("Size of the object database of a clone")
+                .baseUnit("bytes")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(transfer.bytes());
+        if (!transfer.duration().isZero()) {
+            DistributionSummary.builder("insight.clone.throughput")
+                    .description("Transfer rate of a clone")
+                    .baseUnit("bytes/s")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(transfer.bytesPerSecond());
+        }
+    }
+
+    /**
+     * Records one completed object store upload, either a file-per-object directory upload
+     * or a streamed archive.
+     */
+    public void recordUpload(String kind, long bytes, Duration duration) {
+        Tags tags = Tags.of("kind", kind);
+        Timer.builder("insight.s3.upload")
+                .description("Duration of an object store upload")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(duration);
+        if (!duration.isZero()) {
+            DistributionSummary.builder("insight.s3.upload.throughput")
+                    .description("Throughput of an object store upload")
+                    .baseUnit("bytes/s")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(bytes * 1_000_000_000d / duration.toNanos());
+        }
+    }
+
+    /**
+     * Times every executor that backs a Reactor scheduler created from now on, so each
+     * scheduler reports its active, queued and completed tasks and its task durations.
+     * Must run before the schedulers are created, so it is called from {@code main}.
+     * <p>
+     * Bounded elastic schedulers decorate each worker on its own and replace idle workers
+     * with new ones, so the meters are tagged with the scheduler only and shared by all of
+     * its executors, past and present.
+     */
+    public static void monitorSchedulers(MeterRegistry registry) {
+        Map<String, SchedulerExecutors> schedulers = new ConcurrentHashMap<>();
+        Schedulers.addExecutorServiceDecorator(SCHEDULER_DECORATOR, (scheduler, executor) -> {
+            String name = Scannable.from(scheduler).scanOrDefault(Scannable.Attr.NAME, scheduler.getClass().getName());
+            Tags tags = Tags.of("scheduler", name);
+            schedulers.computeIfAbsent(name, key -> new SchedulerExecutors(registry, tags)).add(executor);
+            return new TimedScheduledExecutorService(registry, executor, SCHEDULER_METRICS, "", tags);
+        });
+    }
+
+    /**
+     * The executors currently backing one scheduler. Gauges sum over the executors that are
+     * still running; the completed count keeps the tasks of executors that were shut down,
+     * so it never goes backwards when a worker is evicted.
+     */
+    private static final class SchedulerExecutors {
+
+        private final Set<ThreadPoolExecutor> executors = new HashSet<>();
+        private long retiredCompleted;
+
+        SchedulerExecutors(MeterRegistry registry, Tags tags) {
+            Tags meterTags = tags.and("name", SCHEDULER_METRICS);
+            FunctionCounter.builder("executor.completed", this, SchedulerExecutors::completed)
+                    .description("The approximate total number of tasks that have completed execution")
+                    .baseUnit("tasks")
+                    .tags(meterTags)
+                    .register(registry);
+            Gauge.builder("executor.active", this, scheduler -> scheduler.sum(ThreadPoolExecutor::getActiveCount))
+                    .description("The approximate number of threads that are actively executing tasks")
+                    .baseUnit("threads")
+                    .tags(meterTags)
+                    .register(registry);
+            Gauge.builder("executor.queued", this, scheduler -> scheduler.sum(pool -> pool.getQueue().size()))
+                    .description("The approximate number of tasks that are queued for execution")
+                    .baseUnit("tasks")
+                    .tags(meterTags)
+                    .register(registry);
+            Gauge.builder("executor.pool.size", this, scheduler -> scheduler.sum(ThreadPoolExecutor::getPoolSize))
+                    .description("The current number of threads in the pool")
+                    .baseUnit("threads")
+                    .tags(meterTags)
+                    .register(registry);
+        }
+
+        synchronized void add(ScheduledExecutorService executor) {
+            retireTerminated();
+            if (executor instanceof ThreadPoolExecutor pool) {
+                executors.add(pool);
+            }
+        }
+
+        private synchronized double completed() {
+            return retiredCompleted + sum(ThreadPoolExecutor::getCompletedTaskCount);
+        }
+
+        private synchronized double sum(ToLongFunction<ThreadPoolExecutor> value) {
+            retireTerminated();
+            return executors.stream().mapToLong(value).sum();
+        }
+
+        private void retireTerminated() {
+            executors.removeIf(pool -> {
+                if (!pool.isTerminated()) {
+                    return false;
+                }
+                retiredCompleted += pool.getCompletedTaskCount();
+                return true;
+            });
+        }
+    }
+}
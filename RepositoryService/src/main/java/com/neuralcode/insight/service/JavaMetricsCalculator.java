@@ -0,0 +1,198 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.FileMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Computes line, class and method counts of a Java source file in a single streaming pass,
+ * so memory use does not depend on the size of the file. Declarations are recognised
+ * lexically rather than by parsing, which is accurate for conventionally formatted code.
+ * <p>
+ * Files larger than the configured limit, typically generated code, only report their size.
+ */
+@Component
+public class JavaMetricsCalculator {
+
+    /**
+     * Identifies the counting rules. Bump it whenever a change alters the metrics of any
+     * file, so that results cached by {@link BlobMetricsCache} are recomputed.
+     */
+    public static final int VERSION = 1;
+
+    private static final Pattern TYPE_DECLARATION = Pattern.compile(
+            "(?:^|[^\\w$.])(?:class|interface|enum)\\s+[A-Za-z_$][\\w$]*|\\brecord\\s+[A-Za-z_$][\\w$]*\\s*[(<]");
+
+    private static final Pattern METHOD_DECLARATION = Pattern.compile(
+            "^\\s*(?:@[\\w$.]+\\s+)*(?:(?:public|protected|private|static|final|abstract|synchronized|native"
+                    + "|default|strictfp)\\s+)*(?:<[^>]*>\\s+)?([\\w$][\\w$.<>\\[\\], ?]*?)\\s+([A-Za-z_$][\\w$]*)\\s*\\(");
+
+    private static final Set<String> NON_DECLARATION_WORDS = Set.of(
+            "return", "new", "throw", "else", "case", "yield", "assert", "if", "for", "while", "switch", "catch",
+            "synchronized", "try", "do");
+
+    @Value("${insight.metrics.max-file-bytes:2097152}")
+    private long maxFileBytes;
+
+    public long maxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public FileMetrics measure(Path root, Path file) {
+        String relativePath = root.relativize(file).toString().replace('\\', '/');
+        try {
+            long sizeBytes = Files.size(file);
+            if (sizeBytes > maxFileBytes) {
+                return new FileMetrics(relativePath, sizeBytes, 0, 0, 0, 0, 0, 0);
+            }
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8))) {
+                return measure(relativePath, sizeBytes, reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+    }
+
+    FileMetrics measure(String relativePath, long sizeBytes, BufferedReader reader) throws IOException {
+        LineScanner scanner = new LineScanner();
+        int totalLines = 0;
+        int codeLines = 0;
+        int commentLines = 0;
+        int blankLines = 0;
+        int classCount = 0;
+        int methodCount = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            totalLines++;
+            if (line.isBlank() && !scanner.inTextBlock) {
+                blankLines++;
+                continue;
+            }
+
+            String code = scanner.stripComments(line);
+            if (code.isBlank()) {
+                if (scanner.sawComment) {
+                    commentLines++;
+                } else {
+                    blankLines++;
+                }
+                continue;
+            }
+
+            codeLines++;
+            classCount += count(TYPE_DECLARATION.matcher(code));
+            if (code.indexOf('(') >= 0 && isMethodDeclaration(code)) {
+                methodCount++;
+            }
+        }
+        return new FileMetrics(relativePath, sizeBytes, totalLines, codeLines, commentLines, blankLines,
+                classCount, methodCount);
+    }
+
+    private boolean isMethodDeclaration(String code) {
+        Matcher matcher = METHOD_DECLARATION.matcher(code);
+        if (!matcher.find()) {
+            return false;
+        }
+        String type = matcher.group(1).trim();
+        String name = matcher.group(2);
+        int firstSpace = type.indexOf(' ');
+        String firstWord = firstSpace < 0 ? type : type.substring(0, firstSpace);
+        return !NON_DECLARATION_WORDS.contains(firstWord)
+                && !NON_DECLARATION_WORDS.contains(name)
+                && code.lastIndexOf('=', matcher.end()) < 0;
+    }
+
+    private static int count(Matcher matcher) {
+        int count = 0;
+        while (matcher.find()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tracks block comments, string literals and text blocks across lines and returns the
+     * code on each line with comments and literal contents removed.
+     */
+    private static final class LineScanner {
+        private boolean inBlockComment;
+        private boolean inTextBlock;
+        private boolean sawComment;
+
+        String stripComments(String line) {
+            StringBuilder code = new StringBuilder(line.length());
+            sawComment = inBlockComment;
+            int length = line.length();
+            int i = 0;
+            while (i < length) {
+                char c = line.charAt(i);
+                char next = i + 1 < length ? line.charAt(i + 1) : 0;
+
+                if (inBlockComment) {
+                    if (c == '*' && next == '/') {
+                        inBlockComment = false;
+                        i += 2;
+                    } else {
+                        i++;
+                    }
+                } else if (inTextBlock) {
+                    if (line.startsWith("\"\"\"", i)) {
+                        inTextBlock = false;
+                        code.append("\"\"");
+                        i += 3;
+                    } else {
+                        code.append(c == ' ' ? ' ' : 'x');
+                        i++;
+                    }
+                } else if (c == '/' && next == '/') {
+                    sawComment = true;
+                    break;
+                } else if (c == '/' && next == '*') {
+                    sawComment = true;
+                    inBlockComment = true;
+                    i += 2;
+                } else if (line.startsWith("\"\"\"", i)) {
+                    inTextBlock = true;
+                    code.append("\"\"");
+                    i += 3;
+                } else if (c == '"' || c == '\'') {
+                    i = skipLiteral(line, i, c);
+                    code.append(c).append(c);
+                } else {
+                    code.append(c);
+                    i++;
+                }
+            }
+            return code.toString();
+        }
+
+        private static int skipLiteral(String line, int start, char quote) {
+            int i = start + 1;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == quote) {
+                    return i + 1;
+                } else {
+                    i++;
+                }
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.neuralcode.insight.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Keeps checkouts where they were cloned, in the directory owned by the
+ * {@link WorkspaceManager}. The location is the checkout's path, and a checkout can only
+ * be restored to where it already is.
+ */
+@Component
+@RequiredArgsConstructor
+public class LocalRepositoryStorage implements RepositoryStorage {
+
+    private final WorkspaceManager workspaceManager;
+    private final BlockingSchedulers blockingSchedulers;
+
+    @Override
+    public Mono<String> store(Path checkout) {
+        return blockingSchedulers.fromCallable(() -> {
+            workspaceManager.register(checkout);
+            return checkout.toString();
+        });
+    }
+
+    @Override
+    public Mono<Path> restore(String location, Path target) {
+        Path checkout = Paths.get(location);
+        return exists(location)
+                .filter(exists -> exists && checkout.equals(target))
+                .map(exists -> checkout);
+    }
+
+    @Override
+    public Mono<Boolean> exists(String location) {
+        return blockingSchedulers.fromCallable(() -> Files.isDirectory(Paths.get(location)));
+    }
+
+    @Override
+    public Mono<Void> delete(String location) {
+        return Mono.fromRunnable(() -> workspaceManager.discard(Paths.get(location)));
+    }
+}
@@ -0,0 +1,248 @@
+package com.neuralcode.insight.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keeps one bare mirror per remote repository so that repeated analyses only fetch
+ * the delta from the remote and then clone locally from the mirror.
+ * <p>
+ * Mirrors are refreshed under a per-mirror write lock and read under a read lock, so
+ * concurrent analyses of the same remote never fetch into the same mirror at once and
+ * a mirror is never evicted while a checkout is being created from it.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MirrorCacheService {
+
+    @Value("${insight.mirror.enabled:true}")
+    private boolean enabled;
+
+    @Value("${insight.mirror.root:${java.io.tmpdir}/neural-code-insight/mirrors}")
+    private String mirrorRoot;
+
+    @Value("${insight.mirror.max-disk-bytes:10737418240}")
+    private long maxDiskBytes;
+
+    private static final String MIRROR_REFSPEC = "+refs/*:refs/*";
+
+    private static final long LOCK_POLL_MILLIS = 500;
+
+    private final RepositoryUrlCanonicalizer urlCanonicalizer;
+
+    private final Map<String, Mirror> mirrors = new ConcurrentHashMap<>();
+
+    private Path rootPath;
+
+    @FunctionalInterface
+    public interface MirrorAction<T> {
+        T apply(String mirrorUri) throws GitAPIException, IOException;
+    }
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        rootPath = Paths.get(mirrorRoot);
+        Files.createDirectories(rootPath);
+
+        // Pick up mirrors left behind by a previous run so they count against the budget
+        try (Stream<Path> existing = Files.list(rootPath)) {
+            existing.filter(Files::isDirectory).forEach(dir -> {
+                Mirror mirror = new Mirror(dir);
+                mirror.sizeBytes = FileUtils.sizeOfDirectory(dir.toFile());
+                mirror.lastAccess = dir.toFile().lastModified();
+                mirrors.put(dir.getFileName().toString(), mirror);
+            });
+        }
+        log.info("Mirror cache initialized at {} with {} existing mirrors", rootPath, mirrors.size());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Brings the mirror of the given remote up to date and runs the action against it
+     * while holding the mirror's read lock. The action receives a local URI that can be
+     * used as the clone source.
+     */
+    public <T> T withMirror(String repositoryUrl, MirrorAction<T> action) throws GitAPIException, IOException {
+        return withMirror(repositoryUrl, NullProgressMonitor.INSTANCE, action);
+    }
+
+    public <T> T withMirror(String repositoryUrl, ProgressMonitor progressMonitor, MirrorAction<T> action)
+            throws GitAPIException, IOException {
+        return withMirror(repositoryUrl, progressMonitor, mirrorDirectory -> {
+        }, action);
+    }
+
+    /**
+     * As {@link #withMirror(String, ProgressMonitor, MirrorAction)}, calling {@code onLocked}
+     * with the mirror directory once the write lock is held, before the mirror is refreshed.
+     * Waiting for the lock gives up with {@link InterruptedIOException} when the thread is
+     * interrupted or the monitor is cancelled, so an aborted clone does not stay parked
+     * behind another clone's fetch.
+     */
+    public <T> T withMirror(String repositoryUrl, ProgressMonitor progressMonitor, Consumer<Path> onLocked,
+                            MirrorAction<T> action) throws GitAPIException, IOException {
+        String name = mirrorDirectoryName(repositoryUrl);
+
+        Mirror mirror;
+        ReentrantReadWriteLock.WriteLock writeLock;
+        while (true) {
+            mirror = mirrors.computeIfAbsent(name, key -> new Mirror(rootPath.resolve(key)));
+            writeLock = mirror.lock.writeLock();
+            lock(writeLock, progressMonitor, name);
+            if (mirrors.get(name) == mirror) {
+                break;
+            }
+            // Evicted while we were waiting for the lock, start over with a fresh entry
+            writeLock.unlock();
+        }
+
+        ReentrantReadWriteLock.ReadLock readLock = mirror.lock.readLock();
+        try {
+            onLocked.accept(mirror.directory);
+            refresh(mirror, repositoryUrl, progressMonitor);
+            // Downgrade so other checkouts from this mirror can proceed concurrently
+            readLock.lock();
+        } finally {
+            writeLock.unlock();
+        }
+
+        try {
+            return action.apply(mirror.directory.toUri().toString());
+        } finally {
+            readLock.unlock();
+            enforceDiskBudget();
+        }
+    }
+
+    private void lock(ReentrantReadWriteLock.WriteLock writeLock, ProgressMonitor progressMonitor, String name)
+            throws InterruptedIOException {
+        try {
+            while (!writeLock.tryLock(LOCK_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (progressMonitor.isCancelled()) {
+                    throw new InterruptedIOException("Cancelled while waiting for mirror " + name);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for mirror " + name);
+        }
+    }
+
+    private void refresh(Mirror mirror, String repositoryUrl, ProgressMonitor progressMonitor)
+            throws GitAPIException, IOException {
+        File directory = mirror.directory.toFile();
+
+        if (new File(directory, "HEAD").exists()) {
+            log.debug("Fetching updates into mirror: {}", directory);
+            try (Git git = Git.open(directory)) {
+                // Fetch from the URL of this request rather than the one the mirror was created
+                // with; both canonicalize to the same repository but may use other transports
+                git.fetch()
+                        .setRemote(repositoryUrl)
+                        .setRefSpecs(MIRROR_REFSPEC)
+                        .setRemoveDeletedRefs(true)
+                        .setProgressMonitor(progressMonitor)
+                        .call();
+            }
+        } else {
+            log.info("Creating mirror for repository: {} at {}", repositoryUrl, directory);
+            FileUtils.deleteDirectory(directory);
+            try (Git ignored = Git.cloneRepository()
+                    .setURI(repositoryUrl)
+                    .setDirectory(directory)
+                    .setMirror(true)
+                    .setProgressMonitor(progressMonitor)
+                    .call()) {
+                log.debug("Mirror created: {}", directory);
+            } catch (GitAPIException | RuntimeException e) {
+                FileUtils.deleteQuietly(directory);
+                throw e;
+            }
+        }
+
+        mirror.sizeBytes = FileUtils.sizeOfDirectory(directory);
+        mirror.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Evicts least recently used mirrors until the cache fits its disk budget. Mirrors
+     * that are currently locked are skipped and retried on the next call.
+     */
+    private void enforceDiskBudget() {
+        long totalBytes = mirrors.values().stream().mapToLong(mirror -> mirror.sizeBytes).sum();
+        if (totalBytes <= maxDiskBytes) {
+            return;
+        }
+
+        List<Map.Entry<String, Mirror>> candidates = mirrors.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                .toList();
+
+        for (Map.Entry<String, Mirror> entry : candidates) {
+            if (totalBytes <= maxDiskBytes) {
+                break;
+            }
+            Mirror mirror = entry.getValue();
+            ReentrantReadWriteLock.WriteLock writeLock = mirror.lock.writeLock();
+            if (!writeLock.tryLock()) {
+                continue;
+            }
+            try {
+                FileUtils.deleteDirectory(mirror.directory.toFile());
+                mirrors.remove(entry.getKey(), mirror);
+                totalBytes -= mirror.sizeBytes;
+                log.info("Evicted mirror {} ({} bytes)", mirror.directory, mirror.sizeBytes);
+            } catch (IOException e) {
+                log.warn("Failed to evict mirror: {}", mirror.directory, e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    private String mirrorDirectoryName(String repositoryUrl) {
+        CanonicalRepositoryUrl canonical = urlCanonicalizer.canonicalize(repositoryUrl);
+        return canonical.projectName() + "-" + canonical.hash().substring(0, 16) + ".git";
+    }
+
+    private static final class Mirror {
+        private final Path directory;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private volatile long sizeBytes;
+        private volatile long lastAccess = System.currentTimeMillis();
+
+        private Mirror(Path directory) {
+            this.directory = directory;
+        }
+    }
+}
@@ -1,35 +1,73 @@
 package com.neuralcode.insight.service;
 
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.dto.CloneStrategy;
 import com.neuralcode.insight.exception.InvalidRepositoryUrlException;
 import com.neuralcode.insight.exception.RepositoryCloneException;
+import io.micrometer.common.KeyValues;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.FileUtils;
+import org.eclipse.jgit.api.CloneCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.time.Duration;
-import java.util.concurrent.TimeoutException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class RepositoryService {
 
+    private final MirrorCacheService mirrorCacheService;
+    private final CloneExecutor cloneExecutor;
+    private final AnalysisEventPublisher eventPublisher;
+    private final RepositoryUrlCanonicalizer urlCanonicalizer;
+    private final WorkspaceManager workspaceManager;
+    private final InsightMetrics insightMetrics;
+    private final BlockingSchedulers blockingSchedulers;
+    private final CloneWatchdog cloneWatchdog;
+
     public Mono<String> cloneAndStoreRepository(String repositoryUrl, String branchName, String analysisId) {
-        return validateRepositoryUrl(repositoryUrl)
-                .then(performCloneAndStore(repositoryUrl, branchName, analysisId))
-                .timeout(Duration.ofMinutes(10))
-                .onErrorResume(TimeoutException.class, ex ->
-                        Mono.error(new RepositoryCloneException(analysisId, repositoryUrl,
-                                "Repository clone timed out after 10 minutes", ex)))
+        return cloneAndStoreRepository(repositoryUrl, branchName, analysisId, CloneOptions.defaults());
+    }
+
+    public Mono<String> cloneAndStoreRepository(String repositoryUrl, String branchName, String analysisId,
+                                                CloneOptions cloneOptions) {
+        return cloneAndStoreRepository(repositoryUrl, branchName, analysisId, cloneOptions, transfer -> {
+        });
+    }
+
+    /**
+     * Clones the branch into a new workspace and returns its location, handing the
+     * transfer figures of a successful clone to {@code onTransfer}. The clone is watched by
+     * the {@link CloneWatchdog} rather than bounded by a fixed timeout. Cancelling the
+     * returned Mono aborts the JGit clone and deletes the partial checkout.
+     */
+    public Mono<String> cloneAndStoreRepository(String repositoryUrl, String branchName, String analysisId,
+                                                CloneOptions cloneOptions, Consumer<CloneTransfer> onTransfer) {
+        return Mono.defer(() -> {
+                    CloneProgressMonitor progressMonitor = new CloneProgressMonitor(analysisId, eventPublisher);
+                    // Disposing the clone only releases its slot; JGit stops once the monitor says so
+                    Mono<String> clone = validateRepositoryUrl(repositoryUrl)
+                            .then(performCloneAndStore(repositoryUrl, branchName, analysisId, cloneOptions,
+                                    progressMonitor, onTransfer))
+                            .doOnCancel(progressMonitor::cancel);
+                    return insightMetrics.observe("insight.clone", analysisId,
+                            KeyValues.of("strategy", cloneOptions.strategy().name().toLowerCase(Locale.ROOT)),
+                            cloneWatchdog.watch(clone, progressMonitor, analysisId, repositoryUrl));
+                })
                 .onErrorResume(GitAPIException.class, ex ->
                         Mono.error(new RepositoryCloneException(analysisId, repositoryUrl,
                                 "Git operation failed: " + ex.getMessage(), ex)))
@@ -38,6 +76,35 @@ public class RepositoryService {
                                 "IO error during clone: " + ex.getMessage(), ex)));
     }
 
+    /**
+     * Resolves the commit the branch currently points to on the remote and builds the key
+     * used to coalesce identical clones. Completes empty when the remote cannot be queried,
+     * in which case the clone itself reports the failure.
+     */
+    public Mono<CloneKey> resolveCloneKey(String repositoryUrl, String branchName, CloneOptions cloneOptions) {
+        return blockingSchedulers.fromCallable(() -> {
+                    Map<String, Ref> refs = Git.lsRemoteRepository()
+                            .setRemote(repositoryUrl)
+                            .setHeads(true)
+                            .setTags(true)
+                            .callAsMap();
+
+                    Ref ref = refs.get(Constants.R_HEADS + branchName);
+                    if (ref == null) {
+                        ref = refs.get(Constants.R_TAGS + branchName);
+                    }
+                    if (ref == null || ref.getObjectId() == null) {
+                        return null;
+                    }
+                    return new CloneKey(urlCanonicalizer.canonicalize(repositoryUrl).canonicalUrl(),
+                            branchName, ref.getObjectId().name(), cloneOptions);
+                })
+                .onErrorResume(ex -> {
+                    log.debug("Could not resolve {} on {}: {}", branchName, repositoryUrl, ex.getMessage());
+                    return Mono.empty();
+                });
+    }
+
     private Mono<Void> validateRepositoryUrl(String repositoryUrl) {
         return Mono.fromRunnable(() -> {
             if (repositoryUrl == null || repositoryUrl.trim().isEmpty()) {
@@ -46,33 +113,72 @@ public class RepositoryService {
         });
     }
 
-    private Mono<String> performCloneAndStore(String repositoryUrl, String branchName, String analysisId) {
-        return Mono.fromCallable(() -> {
-                    log.info("Starting clone operation for repository: {}, branch: {}, analysisId: {}",
-                            repositoryUrl, branchName, analysisId);
+    private Mono<String> performCloneAndStore(String repositoryUrl, String branchName, String analysisId,
+                                              CloneOptions cloneOptions, CloneProgressMonitor progressMonitor,
+                                              Consumer<CloneTransfer> onTransfer) {
+        return cloneExecutor.execute(repositoryUrl, () -> {
+                    log.info("Starting {} clone operation for repository: {}, branch: {}, analysisId: {}",
+                            cloneOptions.strategy(), repositoryUrl, branchName, analysisId);
 
                     String projectName = extractProjectNameFromUrl(repositoryUrl);
                     String cleanBranch = cleanBranchName(branchName);
                     String directoryName = String.format("%s-%s-%s", projectName, cleanBranch, analysisId);
 
-                    Path tempDir = Files.createTempDirectory(directoryName);
-                    log.debug("Created temporary directory: {}", tempDir);
+                    Path tempDir = workspaceManager.allocate(directoryName);
+                    log.debug("Created workspace directory: {}", tempDir);
 
                     Git git = null;
+                    boolean cloned = false;
                     try {
-                        git = Git.cloneRepository()
-                                .setURI(repositoryUrl)
-                                .setDirectory(tempDir.toFile())
-                                .setBranch(branchName)
-                                .call();
+                        // The mirror holds full history, so only full clones are served from it;
+                        // shallow and single-branch clones are already cheap against the remote
+                        if (mirrorCacheService.isEnabled() && cloneOptions.strategy() == CloneStrategy.FULL) {
+                            // The stall clock starts once the mirror is locked, since waiting for
+                            // another clone's fetch into the same mirror is queueing, not a stall
+                            git = mirrorCacheService.withMirror(repositoryUrl, progressMonitor,
+                                    mirrorDirectory -> {
+                                        progressMonitor.samplePacksIn(mirrorDirectory);
+                                        progressMonitor.markStarted();
+                                    },
+                                    mirrorUri -> {
+                                        progressMonitor.samplePacksIn(tempDir.resolve(Constants.DOT_GIT));
+                                        return cloneInto(mirrorUri, branchName, tempDir, cloneOptions,
+                                                progressMonitor);
+                                    });
+                            // Point origin back at the real remote rather than the local mirror
+                            git.getRepository().getConfig().setString("remote", "origin", "url", repositoryUrl);
+                            git.getRepository().getConfig().save();
+                        } else {
+                            progressMonitor.samplePacksIn(tempDir.resolve(Constants.DOT_GIT));
+                            progressMonitor.markStarted();
+                            git = cloneInto(repositoryUrl, branchName, tempDir, cloneOptions, progressMonitor);
+                        }
 
+                        workspaceManager.register(tempDir);
+                        CloneTransfer transfer = progressMonitor.transfer(
+                                FileUtils.sizeOfDirectory(tempDir.resolve(Constants.DOT_GIT).toFile()));
+                        insightMetrics.recordClone(cloneOptions.strategy(), transfer);
+                        onTransfer.accept(transfer);
+                        cloned = true;
                         log.info("Successfully cloned repository to: {}", tempDir);
                         return tempDir.toString();
 
                     } catch (GitAPIException e) {
-                        log.error("Git clone failed for repository: {}", repositoryUrl, e);
+                        if (progressMonitor.isCancelled()) {
+                            log.info("Clone of {} for analysis {} aborted", repositoryUrl, analysisId);
+                        } else {
+                            log.error("Git clone failed for repository: {}", repositoryUrl, e);
+                        }
                         throw new RepositoryCloneException(analysisId, repositoryUrl, "Failed to clone repository", e);
                     } finally {
+                        if (!cloned) {
+                            workspaceManager.discard(tempDir);
+                            // JGit has stopped writing by now, so an aborted clone's disk
+                            // space can be reclaimed straight away rather than by the reaper
+                            if (progressMonitor.isCancelled()) {
+                                cleanupLocalDirectory(tempDir.toString()).subscribe();
+                            }
+                        }
                         if (git != null) {
                             try {
                                 git.getRepository().close();
@@ -83,35 +189,37 @@ public class RepositoryService {
                             }
                         }
                     }
-                })
-                .subscribeOn(Schedulers.boundedElastic());
-        //         Removing S3 Upload Logic - Since Only Local Copy is needed
-//                .flatMap(pathAndName -> {
-//                    String localPath = pathAndName[0];
-//                    String directoryName = pathAndName[1];
-//
-//                    return s3StorageService.uploadRepository(localPath, directoryName)
-//                            .flatMap(s3Location ->
-//                                    cleanupLocalDirectory(localPath)
-//                                            .onErrorResume(ex -> {
-//                                                log.warn("Failed to clean up local directory: {}", localPath, ex);
-//                                                return Mono.empty();
-//                                            })
-//                                            .thenReturn(s3Location)
-//                            );
-//                });
+                });
+    }
+
+    private Git cloneInto(String sourceUri, String branchName, Path directory, CloneOptions cloneOptions,
+                          ProgressMonitor progressMonitor) throws GitAPIException {
+        CloneCommand command = Git.cloneRepository()
+                .setURI(sourceUri)
+                .setDirectory(directory.toFile())
+                .setBranch(branchName)
+                .setProgressMonitor(progressMonitor)
+                // Fails socket reads that hang, which JGit would otherwise wait on without
+                // ever asking the monitor whether it has been cancelled
+                .setTimeout((int) Math.max(cloneWatchdog.getStallTimeout().toSeconds(), 1));
+
+        if (cloneOptions.strategy() != CloneStrategy.FULL) {
+            String branchRef = branchName.startsWith(Constants.R_REFS)
+                    ? branchName : Constants.R_HEADS + branchName;
+            command.setCloneAllBranches(false)
+                    .setBranchesToClone(List.of(branchRef))
+                    .setNoTags();
+        }
+        if (cloneOptions.strategy() == CloneStrategy.SHALLOW) {
+            command.setDepth(cloneOptions.depth());
+        }
+        return command.call();
     }
 
     String extractProjectNameFromUrl(String repositoryUrl) {
         try {
-            String url = repositoryUrl.endsWith(".git") ?
-                    repositoryUrl.substring(0, repositoryUrl.length() - 4) : repositoryUrl;
-
-            String[] segments = url.split("/");
-            String projectName = segments[segments.length - 1];
-
-            // Clean project name
-            return projectName.replaceAll("[^a-zA-Z0-9\\-_]", "");
+            String projectName = urlCanonicalizer.projectName(repositoryUrl);
+            return projectName.isEmpty() ? "unknown-project" : projectName;
 
         } catch (Exception e) {
             return "unknown-project";
@@ -124,7 +232,7 @@ public class RepositoryService {
     }
 
     public Mono<Void> cleanupLocalDirectory(String localPath) {
-        return Mono.fromRunnable(() -> {
+        return blockingSchedulers.fromCallable(() -> {
                     try {
                         File directory = new File(localPath);
                         if (directory.exists()) {
@@ -134,8 +242,8 @@ public class RepositoryService {
                     } catch (Exception e) {
                         log.error("Failed to delete directory: {}", e.getMessage());
                     }
+                    return null;
                 })
-                .subscribeOn(Schedulers.boundedElastic())
                 .then();
     }
 }
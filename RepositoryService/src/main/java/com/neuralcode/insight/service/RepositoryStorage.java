@@ -0,0 +1,27 @@
+package com.neuralcode.insight.service;
+
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+/**
+ * A place where the checkouts of analyses are kept. Locations are issued by
+ * {@link #store} and only mean something to the storage that issued them.
+ */
+public interface RepositoryStorage {
+
+    /**
+     * Keeps the checkout in this storage and completes with its location.
+     */
+    Mono<String> store(Path checkout);
+
+    /**
+     * Makes the checkout kept at the location available as a local directory at the
+     * target and completes with the target. Completes empty if nothing is kept there.
+     */
+    Mono<Path> restore(String location, Path target);
+
+    Mono<Boolean> exists(String location);
+
+    Mono<Void> delete(String location);
+}
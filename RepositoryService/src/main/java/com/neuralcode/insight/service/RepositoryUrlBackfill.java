@@ -0,0 +1,71 @@
+package com.neuralcode.insight.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Fills the canonical URL columns of analyses created before they existed, in small
+ * batches in the background after startup. Analyses of URLs with a port are canonicalized
+ * again first, since their port was once dropped from the canonical form.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RepositoryUrlBackfill {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final DatabaseClient databaseClient;
+    private final RepositoryUrlCanonicalizer urlCanonicalizer;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        Flux.concat(recanonicalizePortedUrls(), Mono.defer(this::backfillBatch)
+                        .repeat()
+                        .takeWhile(updated -> updated > 0))
+                .reduce(0L, Long::sum)
+                .subscribe(total -> {
+                    if (total > 0) {
+                        log.info("Backfilled canonical repository URLs for {} analyses", total);
+                    }
+                }, error -> log.warn("Canonical repository URL backfill failed: {}", error.getMessage()));
+    }
+
+    private Mono<Long> backfillBatch() {
+        return databaseClient.sql("SELECT id, repository_url FROM code_analysis WHERE repository_url_hash IS NULL LIMIT :limit")
+                .bind("limit", BATCH_SIZE)
+                .map(row -> new String[]{row.get("id", String.class), row.get("repository_url", String.class)})
+                .all()
+                .concatMap(row -> update(row[0], urlCanonicalizer.canonicalize(row[1])))
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> recanonicalizePortedUrls() {
+        return databaseClient.sql("SELECT id, repository_url, canonical_url FROM code_analysis "
+                        + "WHERE repository_url LIKE '%://%:%' AND repository_url_hash IS NOT NULL")
+                .map(row -> new String[]{row.get("id", String.class), row.get("repository_url", String.class),
+                        row.get("canonical_url", String.class)})
+                .all()
+                .concatMap(row -> {
+                    CanonicalRepositoryUrl canonical = urlCanonicalizer.canonicalize(row[1]);
+                    return canonical.canonicalUrl().equals(row[2]) ? Mono.empty() : update(row[0], canonical);
+                })
+                .reduce(0L, Long::sum);
+    }
+
+    private Mono<Long> update(String id, CanonicalRepositoryUrl canonical) {
+        return databaseClient.sql("UPDATE code_analysis SET canonical_url = :canonicalUrl, "
+                        + "repository_url_hash = :hash WHERE id = :id")
+                .bind("canonicalUrl", canonical.canonicalUrl())
+                .bind("hash", canonical.hash())
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+}
@@ -0,0 +1,114 @@
+package com.neuralcode.insight.service;
+
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the different spellings of a repository URL onto one canonical form, so that
+ * {@code https://github.com/a/b}, {@code https://github.com/a/b.git} and
+ * {@code git@github.com:a/b} all identify the same repository. A port is kept unless it
+ * is the default port of the URL's scheme, since another port can be another server.
+ */
+@Component
+public class RepositoryUrlCanonicalizer {
+
+    // scheme://[user[:password]@]host[:port]/path
+    private static final Pattern URL_WITH_SCHEME =
+            Pattern.compile("^([a-zA-Z][a-zA-Z0-9+.-]*)://(?:[^@/]*@)?([^/:]+)(?::(\\d{1,5}))?(/.*)?$");
+
+    // [user@]host:path, as used by ssh
+    private static final Pattern SCP_LIKE = Pattern.compile("^(?:[^@/]+@)?([^/:]+):(?!//)(.+)$");
+
+    private static final Pattern FILE_SCHEME = Pattern.compile("^file:(//)?");
+
+    private static final Pattern REPEATED_SLASHES = Pattern.compile("/{2,}");
+
+    private static final Pattern PROJECT_NAME_CHARS = Pattern.compile("[^a-zA-Z0-9\\-_]");
+
+    private static final Map<String, Integer> DEFAULT_PORTS = Map.of(
+            "http", 80,
+            "https", 443,
+            "ssh", 22,
+            "git+ssh", 22,
+            "ssh+git", 22,
+            "git", 9418,
+            "ftp", 21,
+            "ftps", 990);
+
+    public CanonicalRepositoryUrl canonicalize(String repositoryUrl) {
+        String canonicalUrl = canonicalForm(repositoryUrl);
+        return new CanonicalRepositoryUrl(canonicalUrl, hash(canonicalUrl), lastSegment(canonicalUrl));
+    }
+
+    public String projectName(String repositoryUrl) {
+        return lastSegment(canonicalForm(repositoryUrl));
+    }
+
+    String canonicalForm(String repositoryUrl) {
+        String url = repositoryUrl.trim();
+        String host = null;
+        String path;
+
+        Matcher withScheme = URL_WITH_SCHEME.matcher(url);
+        Matcher scpLike = SCP_LIKE.matcher(url);
+        if (withScheme.matches() && !"file".equalsIgnoreCase(withScheme.group(1))) {
+            host = withScheme.group(2);
+            if (withScheme.group(3) != null) {
+                int port = Integer.parseInt(withScheme.group(3));
+                if (!isDefaultPort(withScheme.group(1), port)) {
+                    host = host + ":" + port;
+                }
+            }
+            path = withScheme.group(4) != null ? withScheme.group(4) : "";
+        } else if (url.startsWith("file:")) {
+            path = FILE_SCHEME.matcher(url).replaceFirst("");
+        } else if (scpLike.matches() && !url.contains("://")) {
+            host = scpLike.group(1);
+            path = scpLike.group(2);
+        } else {
+            path = url;
+        }
+
+        path = REPEATED_SLASHES.matcher(path).replaceAll("/");
+        while (path.endsWith("/")) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.endsWith(".git")) {
+            path = path.substring(0, path.length() - 4);
+        }
+        if (host == null) {
+            return "file:" + path;
+        }
+        if (!path.startsWith("/")) {
+            path = "/" + path;
+        }
+        return host.toLowerCase(Locale.ROOT) + path;
+    }
+
+    private static boolean isDefaultPort(String scheme, int port) {
+        return Integer.valueOf(port).equals(DEFAULT_PORTS.get(scheme.toLowerCase(Locale.ROOT)));
+    }
+
+    private String lastSegment(String canonicalUrl) {
+        String lastSegment = canonicalUrl.substring(canonicalUrl.lastIndexOf('/') + 1);
+        return PROJECT_NAME_CHARS.matcher(lastSegment).replaceAll("");
+    }
+
+    private String hash(String canonicalUrl) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(canonicalUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.AnalysisCancelledException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a cancellation signal for every analysis pipeline running in this instance, so
+ * the pipeline can be stopped from outside the subscription that runs it. Stopping it
+ * disposes the pipeline, which reaches the clone and, through its progress monitor, JGit.
+ */
+@Slf4j
+@Component
+public class RunningAnalyses {
+
+    private final Map<String, Sinks.One<Boolean>> running = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the pipeline until it finishes or {@link #cancel} is called for the analysis,
+     * in which case it is disposed and the result fails with
+     * {@link AnalysisCancelledException}.
+     */
+    public <T> Mono<T> track(String analysisId, Mono<T> pipeline) {
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> cancellation = Sinks.one();
+            running.put(analysisId, cancellation);
+            Mono<T> cancelled = cancellation.asMono()
+                    .then(Mono.error(() -> new AnalysisCancelledException(analysisId)));
+            return Mono.firstWithSignal(pipeline, cancelled)
+                    .doFinally(signal -> running.remove(analysisId, cancellation));
+        });
+    }
+
+    /**
+     * Stops the pipeline of the analysis. Returns false if none is running here.
+     */
+    public boolean cancel(String analysisId) {
+        Sinks.One<Boolean> cancellation = running.get(analysisId);
+        if (cancellation == null) {
+            return false;
+        }
+        log.info("Cancelling running pipeline of analysis {}", analysisId);
+        return cancellation.tryEmitValue(true).isSuccess();
+    }
+
+    public int size() {
+        return running.size();
+    }
+}
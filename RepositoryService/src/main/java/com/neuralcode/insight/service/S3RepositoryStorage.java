@@ -0,0 +1,47 @@
+package com.neuralcode.insight.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+
+/**
+ * Keeps checkouts in the object store as single compressed archives. The location is the
+ * archive's object key.
+ *
+ * @see CheckoutArchiver
+ */
+@Component
+@RequiredArgsConstructor
+public class S3RepositoryStorage implements RepositoryStorage {
+
+    @Value("${insight.storage.restore.parallelism:4}")
+    private int restoreParallelism;
+
+    private final S3StorageService s3StorageService;
+
+    @Override
+    public Mono<String> store(Path checkout) {
+        return s3StorageService.uploadArchive(checkout.toString());
+    }
+
+    @Override
+    public Mono<Path> restore(String location, Path target) {
+        return exists(location)
+                .filter(Boolean::booleanValue)
+                .flatMap(exists -> s3StorageService.restoreArchive(location, target, restoreParallelism)
+                        .thenReturn(target));
+    }
+
+    @Override
+    public Mono<Boolean> exists(String location) {
+        return s3StorageService.archiveExists(location);
+    }
+
+    @Override
+    public Mono<Void> delete(String location) {
+        return s3StorageService.deleteArchive(location);
+    }
+}
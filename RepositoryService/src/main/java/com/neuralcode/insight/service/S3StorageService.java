@@ -1,48 +1,121 @@
 package com.neuralcode.insight.service;
 
+import com.neuralcode.insight.dto.ArchiveEntry;
+import com.neuralcode.insight.dto.UploadStatistics;
+import com.neuralcode.insight.exception.S3UploadException;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.BlockingOutputStreamAsyncRequestBody;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3CrtAsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 import software.amazon.awssdk.transfer.s3.S3TransferManager;
-import software.amazon.awssdk.transfer.s3.model.CompletedDirectoryUpload;
-import software.amazon.awssdk.transfer.s3.model.DirectoryUpload;
-import software.amazon.awssdk.transfer.s3.model.UploadDirectoryRequest;
+import software.amazon.awssdk.transfer.s3.model.UploadFileRequest;
+import software.amazon.awssdk.utils.CancellableOutputStream;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class S3StorageService {
 
+    private static final String ARCHIVE_SUFFIX = ".tar.gz";
+    private static final String INDEX_SUFFIX = ".index";
+    private static final int ARCHIVE_WRITE_BUFFER_BYTES = 1024 * 1024;
+
     @Value("${AWS_S3_BUCKET_NAME}")
     private String bucketName;
 
     @Value("${AWS_DEFAULT_REGION}")
     private String awsRegion;
 
+    // Points the client at an S3-compatible server, such as a local stand-in, instead of AWS
+    @Value("${aws.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${insight.storage.archive.prefix:archives/}")
+    private String archivePrefix;
+
+    @Value("${insight.storage.upload.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${insight.storage.upload.part-size-bytes:8388608}")
+    private long partSizeBytes;
+
+    @Value("${insight.storage.upload.max-retries:3}")
+    private int maxRetries;
+
+    @Value("${insight.storage.upload.retry-backoff:1s}")
+    private Duration retryBackoff;
+
+    private final CheckoutArchiver checkoutArchiver;
+    private final WorkspaceManager workspaceManager;
+    private final AnalysisEventPublisher eventPublisher;
+    private final InsightMetrics insightMetrics;
+    private final BlockingSchedulers blockingSchedulers;
+
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicLong filesUploaded = new AtomicLong();
+    private final AtomicLong filesRetried = new AtomicLong();
+    private final AtomicLong filesFailed = new AtomicLong();
+    private final AtomicLong bytesUploaded = new AtomicLong();
+
     private S3AsyncClient s3AsyncClient;
     private S3TransferManager transferManager;
 
     @PostConstruct
     public void initialize() {
-        s3AsyncClient = S3AsyncClient.crtBuilder()
+        S3CrtAsyncClientBuilder clientBuilder = S3AsyncClient.crtBuilder()
                     .region(Region.of(awsRegion))
-                    .credentialsProvider(DefaultCredentialsProvider.create())
-                    .build();
-
-            transferManager = S3TransferManager.builder()
-                    .s3Client(s3AsyncClient)
-                    .build();
+                    .credentialsProvider(DefaultCredentialsProvider.create());
+        if (!endpoint.isBlank()) {
+            clientBuilder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        initialize(clientBuilder
+                .maxConcurrency(maxConcurrency)
+                .minimumPartSizeInBytes(partSizeBytes)
+                .build());
+    }
 
+    // Lets tests run against a stand-in client
+    void initialize(S3AsyncClient client) {
+        s3AsyncClient = client;
+        transferManager = S3TransferManager.builder()
+                .s3Client(s3AsyncClient)
+                .build();
     }
 
     @PreDestroy
@@ -55,35 +128,247 @@ public class S3StorageService {
         }
     }
 
-    public Mono<String> uploadRepository(String localPath, String repositoryKey) {
-        return Mono.fromCallable(() -> {
-                    Path sourcePath = Paths.get(localPath);
+    /**
+     * Uploads every file of the directory as its own object under {@code repositoryKey/}.
+     * <p>
+     * Files are uploaded as individual transfers, at most {@code max-concurrency} at a
+     * time, composed without blocking a thread on any of them. Byte progress is published
+     * as analysis progress events. A failed file is retried with backoff on its own while
+     * the others carry on, and every uploaded file is recorded in a checkpoint next to the
+     * directory, so calling this again after an interruption or a failure only uploads the
+     * files still missing.
+     */
+    public Mono<String> uploadRepository(String analysisId, String localPath, String repositoryKey) {
+        Path sourcePath = Paths.get(localPath);
+        String location = String.format("s3://%s/%s/", bucketName, repositoryKey);
+        Path checkpointFile = workspaceManager.uploadCheckpointFile(localPath);
 
-                    // Upload entire directory to S3
-                    DirectoryUpload directoryUpload = transferManager.uploadDirectory(
-                            UploadDirectoryRequest.builder()
-                                    .source(sourcePath)
-                                    .bucket(bucketName)
-                                    .s3Prefix(repositoryKey + "/")
-                                    .build()
-                    );
+        return Mono.usingWhen(
+                        blockingSchedulers.fromCallable(() -> UploadCheckpoint.open(checkpointFile, location)),
+                        checkpoint -> blockingSchedulers.fromCallable(() -> pendingFiles(sourcePath, checkpoint))
+                                .flatMap(pending -> uploadFiles(analysisId, sourcePath, repositoryKey, pending,
+                                        checkpoint))
+                                .then(Mono.fromCallable(() -> {
+                                    checkpoint.delete();
+                                    return location;
+                                })),
+                        checkpoint -> Mono.fromRunnable(() -> closeQuietly(checkpoint)))
+                .doOnSuccess(s3Location -> log.debug("Repository uploaded to: {}", s3Location))
+                .doOnError(error -> log.error("Failed to upload to S3: {}", error.getMessage()))
+                .onErrorMap(error -> !(error instanceof S3UploadException),
+                        error -> new S3UploadException(localPath, "Failed to upload " + localPath, error));
+    }
+
+    public UploadStatistics statistics() {
+        return new UploadStatistics(maxConcurrency, partSizeBytes, activeUploads.get(), filesUploaded.get(),
+                filesRetried.get(), filesFailed.get(), bytesUploaded.get());
+    }
+
+    private Mono<Void> uploadFiles(String analysisId, Path sourcePath, String repositoryKey, List<Path> pending,
+                                   UploadCheckpoint checkpoint) {
+        long totalBytes = pending.stream().mapToLong(file -> file.toFile().length()).sum();
+        S3UploadProgress progress = new S3UploadProgress(analysisId, totalBytes, eventPublisher,
+                bytesUploaded::addAndGet);
+        log.info("Uploading {} files ({} bytes) of {}, {} already uploaded",
+                pending.size(), totalBytes, sourcePath, checkpoint.completedCount());
+        long startNanos = System.nanoTime();
+
+        return Flux.fromIterable(pending)
+                .flatMap(file -> uploadFile(sourcePath, file, repositoryKey, progress, checkpoint)
+                        .then(Mono.<Path>empty())
+                        .onErrorResume(error -> {
+                            log.warn("Giving up on uploading {}: {}", file, error.getMessage());
+                            filesFailed.incrementAndGet();
+                            return Mono.just(file);
+                        }), maxConcurrency)
+                .collectList()
+                .doFinally(signal -> progress.publish())
+                .flatMap(failed -> failed.isEmpty()
+                        ? Mono.fromRunnable(() -> insightMetrics.recordUpload("files", progress.transferredBytes(),
+                                Duration.ofNanos(System.nanoTime() - startNanos)))
+                        : Mono.error(new S3UploadException(sourcePath.toString(), failed.size()
+                                + " files failed to upload; uploaded files are checkpointed", null)));
+    }
+
+    private Mono<Void> uploadFile(Path sourcePath, Path file, String repositoryKey, S3UploadProgress progress,
+                                  UploadCheckpoint checkpoint) {
+        String relativePath = sourcePath.relativize(file).toString().replace('\\', '/');
+        UploadFileRequest request = UploadFileRequest.builder()
+                .source(file)
+                .putObjectRequest(put -> put.bucket(bucketName).key(repositoryKey + "/" + relativePath))
+                .addTransferListener(progress.fileListener())
+                .build();
+
+        return Mono.fromFuture(() -> transferManager.uploadFile(request).completionFuture())
+                .doOnSubscribe(subscription -> activeUploads.incrementAndGet())
+                .doFinally(signal -> activeUploads.decrementAndGet())
+                .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                        .doBeforeRetry(retry -> {
+                            filesRetried.incrementAndGet();
+                            log.debug("Retrying upload of {} after: {}", file, retry.failure().getMessage());
+                        }))
+                // The checkpoint write blocks, so it must not run on the SDK's completion thread
+                .flatMap(completed -> blockingSchedulers.fromCallable(() -> {
+                    checkpoint.markCompleted(relativePath);
+                    filesUploaded.incrementAndGet();
+                    return completed;
+                }))
+                .then();
+    }
+
+    private static List<Path> pendingFiles(Path sourcePath, UploadCheckpoint checkpoint) throws IOException {
+        try (Stream<Path> files = Files.walk(sourcePath)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !checkpoint.isCompleted(
+                            sourcePath.relativize(file).toString().replace('\\', '/')))
+                    .toList();
+        }
+    }
 
-                    // Wait for completion
-                    CompletedDirectoryUpload completed = directoryUpload.completionFuture().join();
+    private void closeQuietly(UploadCheckpoint checkpoint) {
+        try {
+            checkpoint.close();
+        } catch (IOException e) {
+            log.debug("Failed to close upload checkpoint", e);
+        }
+    }
 
-                    // Check for failed transfers
-                    if (!completed.failedTransfers().isEmpty()) {
-                        throw new RuntimeException("Failed to upload some files: " +
-                                completed.failedTransfers().size() + " files failed");
-                    }
+    /**
+     * Streams the checkout as a single compressed tar archive into a multipart upload,
+     * without staging it on disk, and stores its index next to it. Completes with the key
+     * of the archive object.
+     *
+     * @see CheckoutArchiver
+     */
+    public Mono<String> uploadArchive(String localPath) {
+        Path root = Paths.get(localPath);
+        String archiveKey = archivePrefix + root.getFileName() + ARCHIVE_SUFFIX;
+        long startNanos = System.nanoTime();
 
-                    // Return S3 location
-                    return String.format("s3://%s/%s/", bucketName, repositoryKey);
+        return Mono.defer(() -> {
+                    // Unknown length, so the client splits the stream into parts as it arrives
+                    BlockingOutputStreamAsyncRequestBody body = AsyncRequestBody.forBlockingOutputStream(null);
+                    CompletableFuture<PutObjectResponse> upload = s3AsyncClient.putObject(
+                            PutObjectRequest.builder()
+                                    .bucket(bucketName)
+                                    .key(archiveKey)
+                                    .contentType("application/gzip")
+                                    .build(),
+                            body);
+
+                    return blockingSchedulers.fromCallable(() -> writeArchive(root, body))
+                            .flatMap(index -> Mono.fromFuture(upload).thenReturn(index))
+                            .doOnNext(index -> insightMetrics.recordUpload("archive",
+                                    index.stream().mapToLong(ArchiveEntry::compressedLength).sum(),
+                                    Duration.ofNanos(System.nanoTime() - startNanos)))
+                            .flatMap(index -> Mono.fromCallable(() -> checkoutArchiver.encodeIndex(index)))
+                            .flatMap(encodedIndex -> Mono.fromFuture(s3AsyncClient.putObject(
+                                    PutObjectRequest.builder()
+                                            .bucket(bucketName)
+                                            .key(archiveKey + INDEX_SUFFIX)
+                                            .build(),
+                                    AsyncRequestBody.fromBytes(encodedIndex))))
+                            .doOnCancel(() -> upload.cancel(true));
                 })
-                .subscribeOn(Schedulers.boundedElastic())
-                .doOnSuccess(s3Location ->
-                        log.debug("Repository uploaded to: {}", s3Location))
-                .doOnError(error ->
-                        log.error("Failed to upload to S3: {}", error.getMessage()));
+                .thenReturn(archiveKey)
+                .doOnSuccess(key -> log.info("Archived {} to s3://{}/{} in {} ms",
+                        localPath, bucketName, key, (System.nanoTime() - startNanos) / 1_000_000))
+                .onErrorMap(error -> !(error instanceof S3UploadException),
+                        error -> new S3UploadException(localPath, "Failed to archive " + localPath, error));
+    }
+
+    /**
+     * Reads one file out of an archive with a ranged read of just its compressed member.
+     * Completes empty if the archive holds no such file.
+     */
+    public Mono<InputStream> readArchivedFile(String archiveKey, String path) {
+        return readArchiveIndex(archiveKey)
+                .flatMapIterable(entries -> entries)
+                .filter(entry -> entry.path().equals(path))
+                .next()
+                .flatMap(entry -> Mono.fromFuture(() -> s3AsyncClient.getObject(
+                        GetObjectRequest.builder()
+                                .bucket(bucketName)
+                                .key(archiveKey)
+                                .range("bytes=" + entry.offset() + "-" + (entry.offset() + entry.compressedLength() - 1))
+                                .build(),
+                        AsyncResponseTransformer.toBytes())))
+                .flatMap(member -> Mono.fromCallable(() ->
+                        checkoutArchiver.openMember(new ByteArrayInputStream(member.asByteArray()))));
+    }
+
+    /**
+     * Unpacks an archive into the target directory. The archive is split at member
+     * boundaries into up to {@code parallelism} byte ranges that are downloaded and
+     * unpacked concurrently, each streamed straight from the response into files.
+     * Completes with the number of entries written.
+     */
+    public Mono<Long> restoreArchive(String archiveKey, Path target, int parallelism) {
+        long startNanos = System.nanoTime();
+        return readArchiveIndex(archiveKey)
+                .map(entries -> CheckoutArchiver.segmentStarts(entries, parallelism))
+                .flatMapMany(starts -> Flux.range(0, starts.size())
+                        .flatMap(segment -> {
+                            long start = starts.get(segment);
+                            String range = segment + 1 < starts.size()
+                                    ? "bytes=" + start + "-" + (starts.get(segment + 1) - 1)
+                                    : "bytes=" + start + "-";
+                            return Mono.fromFuture(() -> s3AsyncClient.getObject(
+                                            GetObjectRequest.builder()
+                                                    .bucket(bucketName)
+                                                    .key(archiveKey)
+                                                    .range(range)
+                                                    .build(),
+                                            AsyncResponseTransformer.toBlockingInputStream()))
+                                    .flatMap(response -> blockingSchedulers.fromCallable(() -> {
+                                        try (InputStream input = response) {
+                                            return checkoutArchiver.unpack(input, target);
+                                        }
+                                    }));
+                        }, parallelism))
+                .reduce(0L, Long::sum)
+                .doOnSuccess(entries -> log.info("Restored {} entries of s3://{}/{} to {} in {} ms",
+                        entries, bucketName, archiveKey, target, (System.nanoTime() - startNanos) / 1_000_000));
+    }
+
+    public Mono<Boolean> archiveExists(String archiveKey) {
+        return Mono.fromFuture(() -> s3AsyncClient.headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(archiveKey + INDEX_SUFFIX)
+                        .build()))
+                .thenReturn(true)
+                .onErrorResume(NoSuchKeyException.class, ex -> Mono.just(false));
+    }
+
+    public Mono<Void> deleteArchive(String archiveKey) {
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObjects(DeleteObjectsRequest.builder()
+                        .bucket(bucketName)
+                        .delete(delete -> delete.objects(
+                                ObjectIdentifier.builder().key(archiveKey).build(),
+                                ObjectIdentifier.builder().key(archiveKey + INDEX_SUFFIX).build()))
+                        .build()))
+                .then();
+    }
+
+    private Mono<List<ArchiveEntry>> readArchiveIndex(String archiveKey) {
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(
+                        GetObjectRequest.builder().bucket(bucketName).key(archiveKey + INDEX_SUFFIX).build(),
+                        AsyncResponseTransformer.toBytes()))
+                .flatMap(index -> Mono.fromCallable(() -> checkoutArchiver.decodeIndex(index.asByteArray())));
+    }
+
+    private List<ArchiveEntry> writeArchive(Path root, BlockingOutputStreamAsyncRequestBody body)
+            throws IOException {
+        CancellableOutputStream stream = body.outputStream();
+        try {
+            OutputStream output = new BufferedOutputStream(stream, ARCHIVE_WRITE_BUFFER_BYTES);
+            List<ArchiveEntry> index = checkoutArchiver.write(root, output);
+            output.close();
+            return index;
+        } catch (IOException | RuntimeException e) {
+            // Fail the upload rather than completing it with a truncated archive
+            stream.cancel();
+            throw e;
+        }
     }
 }
@@ -0,0 +1,78 @@
+package com.neuralcode.insight.service;
+
+import software.amazon.awssdk.transfer.s3.progress.TransferListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Sums the bytes transferred by the files of one directory upload and forwards the total to
+ * the {@link AnalysisEventPublisher} in KiB, throttled like {@link CloneProgressMonitor}.
+ * Each file gets its own listener from {@link #fileListener()}; bytes of a failed attempt
+ * are taken back out, so retries are not counted twice.
+ */
+public class S3UploadProgress {
+
+    static final String TASK = "Uploading to S3 (KiB)";
+
+    private static final long PUBLISH_INTERVAL_MILLIS = 250;
+
+    private final String analysisId;
+    private final long totalBytes;
+    private final AnalysisEventPublisher eventPublisher;
+    private final LongConsumer bytesCounter;
+
+    private final AtomicLong transferredBytes = new AtomicLong();
+    private final AtomicLong lastPublished = new AtomicLong();
+
+    public S3UploadProgress(String analysisId, long totalBytes, AnalysisEventPublisher eventPublisher,
+                            LongConsumer bytesCounter) {
+        this.analysisId = analysisId;
+        this.totalBytes = totalBytes;
+        this.eventPublisher = eventPublisher;
+        this.bytesCounter = bytesCounter;
+    }
+
+    public TransferListener fileListener() {
+        return new TransferListener() {
+            private long reported;
+
+            @Override
+            public synchronized void bytesTransferred(Context.BytesTransferred context) {
+                long transferred = context.progressSnapshot().transferredBytes();
+                add(transferred - reported);
+                reported = transferred;
+            }
+
+            @Override
+            public synchronized void transferFailed(Context.TransferFailed context) {
+                add(-reported);
+                reported = 0;
+            }
+        };
+    }
+
+    public long transferredBytes() {
+        return transferredBytes.get();
+    }
+
+    /**
+     * Publishes the current total regardless of the throttle, typically once at the end.
+     */
+    public void publish() {
+        lastPublished.set(System.currentTimeMillis());
+        eventPublisher.publishProgress(analysisId, TASK, (int) (transferredBytes.get() >> 10),
+                (int) (totalBytes >> 10));
+    }
+
+    private void add(long bytes) {
+        transferredBytes.addAndGet(bytes);
+        bytesCounter.accept(bytes);
+        long now = System.currentTimeMillis();
+        long last = lastPublished.get();
+        if (now - last >= PUBLISH_INTERVAL_MILLIS && lastPublished.compareAndSet(last, now)) {
+            eventPublisher.publishProgress(analysisId, TASK, (int) (transferredBytes.get() >> 10),
+                    (int) (totalBytes >> 10));
+        }
+    }
+}
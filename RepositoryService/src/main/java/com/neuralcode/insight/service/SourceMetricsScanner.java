@@ -0,0 +1,177 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.FileMetrics;
+import com.neuralcode.insight.dto.RepositoryMetrics;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import com.neuralcode.insight.repository.MetricsRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Walks a local checkout and records metrics for every Java source file.
+ * <p>
+ * Files are measured on a dedicated pool with one thread per core, and the results are
+ * written in fixed-size batches as they are produced. The directory walk is lazy and
+ * backpressured by the batch writes, so heap use is bounded by the batch size and the
+ * number of workers regardless of how many files the repository has.
+ * <p>
+ * When an earlier analysis of the same repository and branch has completed, only the
+ * files changed since its commit are measured again and the rest of its results are
+ * copied over.
+ * <p>
+ * In git checkouts the files are enumerated from the HEAD tree, and results are looked
+ * up by blob id in the {@link BlobMetricsCache} first, so content that has been measured
+ * in any repository or branch is not read again.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SourceMetricsScanner {
+
+    private static final String JAVA_SUFFIX = ".java";
+
+    @Value("${insight.metrics.parallelism:0}")
+    private int parallelism;
+
+    @Value("${insight.metrics.batch-size:500}")
+    private int batchSize;
+
+    @Value("${insight.metrics.incremental:true}")
+    private boolean incremental;
+
+    private final JavaMetricsCalculator metricsCalculator;
+    private final MetricsRepository metricsRepository;
+    private final CodeAnalysisRepository analysisRepository;
+    private final CommitDiffResolver commitDiffResolver;
+    private final BlobMetricsCache blobMetricsCache;
+    private final BlockingSchedulers blockingSchedulers;
+
+    private Scheduler scanScheduler;
+
+    @PostConstruct
+    public void initialize() {
+        if (parallelism <= 0) {
+            parallelism = Runtime.getRuntime().availableProcessors();
+        }
+        scanScheduler = Schedulers.newParallel("metrics-scan", parallelism);
+        log.info("Source metrics scanner initialized with parallelism {}", parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scanScheduler != null) {
+            scanScheduler.dispose();
+        }
+    }
+
+    /**
+     * Scans the analysis' checkout and stores its file and repository metrics, replacing
+     * the results of any earlier attempt. Records the checked out commit on the analysis
+     * and, when incremental scanning applies, the baseline analysis it built on.
+     */
+    public Mono<RepositoryMetrics> scan(CodeAnalysis analysis) {
+        String analysisId = analysis.getId();
+        Path root = Paths.get(analysis.getStorageLocation());
+        long startNanos = System.nanoTime();
+
+        return blockingSchedulers.fromCallable(() -> commitDiffResolver.headCommit(root.toString()))
+                .flatMap(head -> {
+                    head.ifPresent(analysis::setCommitSha);
+                    return metricsRepository.deleteForAnalysis(analysisId)
+                            .then(findBaseline(analysis))
+                            .flatMap(baseline -> scanChanges(analysis, root, baseline))
+                            .switchIfEmpty(Mono.defer(() -> {
+                                analysis.setBaselineAnalysisId(null);
+                                return head.isPresent()
+                                        ? storeMetrics(analysisId, commitDiffResolver.trackedFiles(
+                                                root.toString(), JAVA_SUFFIX, null), file -> measure(root, file))
+                                        : storeMetrics(analysisId, sources(root),
+                                                file -> metricsCalculator.measure(root, file));
+                            }));
+                })
+                .then(metricsRepository.aggregate(analysisId))
+                .then(metricsRepository.findRepositoryMetrics(analysisId))
+                .doOnNext(metrics -> log.info("Scanned {} source files of analysis {} in {} ms (baseline {})",
+                        metrics.fileCount(), analysisId, (System.nanoTime() - startNanos) / 1_000_000,
+                        analysis.getBaselineAnalysisId()));
+    }
+
+    private Mono<CodeAnalysis> findBaseline(CodeAnalysis analysis) {
+        if (!incremental || analysis.getCommitSha() == null || analysis.getRepositoryUrlHash() == null) {
+            return Mono.empty();
+        }
+        return analysisRepository.findLatestCompleted(analysis.getRepositoryUrlHash(), analysis.getBranchName(),
+                analysis.getId());
+    }
+
+    /**
+     * Carries the baseline's metrics forward and re-measures only the files that changed
+     * since its commit. Completes empty if the changes cannot be determined.
+     */
+    private Mono<Long> scanChanges(CodeAnalysis analysis, Path root, CodeAnalysis baseline) {
+        return blockingSchedulers.fromCallable(() -> commitDiffResolver.changedPaths(root.toString(),
+                        baseline.getCommitSha()))
+                .flatMap(Mono::justOrEmpty)
+                .flatMap(changed -> {
+                    log.info("Analysis {} rescans {} changed paths since analysis {} at {}",
+                            analysis.getId(), changed.size(), baseline.getId(), baseline.getCommitSha());
+                    analysis.setBaselineAnalysisId(baseline.getId());
+
+                    List<String> changedPaths = List.copyOf(changed);
+                    Flux<TrackedFile> changedSources =
+                            commitDiffResolver.trackedFiles(root.toString(), JAVA_SUFFIX, changedPaths);
+
+                    return metricsRepository.copyFileMetrics(baseline.getId(), analysis.getId())
+                            .thenMany(Flux.fromIterable(changedPaths)
+                                    .buffer(batchSize)
+                                    .concatMap(paths -> metricsRepository.deleteFileMetrics(analysis.getId(), paths)))
+                            .then(storeMetrics(analysis.getId(), changedSources, file -> measure(root, file)));
+                });
+    }
+
+    private Flux<Path> sources(Path root) {
+        Path gitDirectory = root.resolve(".git");
+        return Flux.using(() -> Files.walk(root), Flux::fromStream, Stream::close)
+                .filter(path -> !path.startsWith(gitDirectory))
+                .filter(path -> path.getFileName().toString().endsWith(JAVA_SUFFIX))
+                .filter(Files::isRegularFile)
+                .subscribeOn(blockingSchedulers.scheduler());
+    }
+
+    private FileMetrics measure(Path root, TrackedFile file) {
+        FileMetrics cached = blobMetricsCache.get(file.blobId(), file.path());
+        if (cached != null) {
+            return cached;
+        }
+        FileMetrics metrics = metricsCalculator.measure(root, root.resolve(file.path()));
+        blobMetricsCache.put(file.blobId(), metrics);
+        return metrics;
+    }
+
+    private <T> Mono<Long> storeMetrics(String analysisId, Flux<T> files, Function<T, FileMetrics> measure) {
+        return files
+                .parallel(parallelism)
+                .runOn(scanScheduler, batchSize)
+                .map(measure)
+                .sequential()
+                .buffer(batchSize)
+                .concatMap(batch -> metricsRepository.insertFileMetrics(analysisId, batch))
+                .reduce(0L, Long::sum);
+    }
+}
@@ -0,0 +1,206 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps checkouts on local disk while they are in use and in the object store once they
+ * have been idle, so a node can keep far more analyses available than its disk holds.
+ * <p>
+ * Locations are local checkout paths and never change. A checkout idle for longer than
+ * {@code demote-after} is archived to the object store, its archive key recorded on the
+ * analyses using it, and its directory deleted; the analyses keep their status, location
+ * and manifest. Restoring a demoted checkout unpacks its archive next to the same path and
+ * moves it into place, with concurrent restores of one checkout sharing a single download.
+ * <p>
+ * With write-through enabled every checkout is archived as soon as it is stored, which
+ * makes demotion a plain deletion.
+ */
+@Slf4j
+@Primary
+@Service
+@RequiredArgsConstructor
+public class TieredRepositoryStorage implements RepositoryStorage {
+
+    @Value("${insight.storage.tiering.enabled:false}")
+    private boolean tieringEnabled;
+
+    @Value("${insight.storage.tiering.demote-after:1h}")
+    private Duration demoteAfter;
+
+    @Value("${insight.storage.tiering.check-interval:5m}")
+    private Duration checkInterval;
+
+    @Value("${insight.storage.archive.enabled:false}")
+    private boolean writeThrough;
+
+    private final LocalRepositoryStorage hotStorage;
+    private final S3RepositoryStorage coldStorage;
+    private final WorkspaceManager workspaceManager;
+    private final CodeAnalysisRepository analysisRepository;
+    private final AnalysisCache analysisCache;
+    private final BlockingSchedulers blockingSchedulers;
+
+    private final Map<String, Mono<Path>> restores = new ConcurrentHashMap<>();
+
+    private Disposable demoter;
+
+    @PostConstruct
+    public void initialize() {
+        if (!tieringEnabled) {
+            return;
+        }
+        demoter = Flux.interval(checkInterval, checkInterval, Schedulers.parallel())
+                .onBackpressureDrop()
+                .concatMap(tick -> demoteIdle()
+                        .onErrorResume(ex -> {
+                            log.warn("Checkout demotion run failed", ex);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+        log.info("Tiered storage demotes checkouts idle for {}", demoteAfter);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (demoter != null) {
+            demoter.dispose();
+        }
+    }
+
+    @Override
+    public Mono<String> store(Path checkout) {
+        return hotStorage.store(checkout)
+                .flatMap(location -> !writeThrough
+                        ? Mono.just(location)
+                        : archive(location)
+                                // The archive is a secondary copy; the checkout is stored either way
+                                .onErrorResume(ex -> {
+                                    log.warn("Failed to archive checkout {}: {}", location, ex.getMessage());
+                                    return Mono.empty();
+                                })
+                                .thenReturn(location));
+    }
+
+    @Override
+    public Mono<Path> restore(String location, Path target) {
+        // Callers share one download; it is cancelled once every one of them has left
+        return hotStorage.restore(location, target)
+                .switchIfEmpty(Mono.defer(() -> restores.computeIfAbsent(location, key ->
+                        restoreArchive(location, target)
+                                .doOnNext(workspaceManager::register)
+                                .doOnError(ex -> log.warn("Failed to restore checkout {}: {}", location, ex.getMessage()))
+                                .doFinally(signal -> restores.remove(location))
+                                .flux()
+                                .replay(1)
+                                .refCount(1)
+                                .next())));
+    }
+
+    @Override
+    public Mono<Boolean> exists(String location) {
+        return hotStorage.exists(location)
+                .filter(Boolean::booleanValue)
+                .switchIfEmpty(findArchiveKey(location).flatMap(coldStorage::exists).defaultIfEmpty(false));
+    }
+
+    @Override
+    public Mono<Void> delete(String location) {
+        return hotStorage.delete(location)
+                .then(findArchiveKey(location).flatMap(coldStorage::delete));
+    }
+
+    /**
+     * Moves every checkout that has been idle for longer than {@code demote-after} to the
+     * object store, one at a time.
+     */
+    Mono<Void> demoteIdle() {
+        return Flux.fromIterable(workspaceManager.idleCheckouts(demoteAfter))
+                .concatMap(location -> workspaceManager.release(location, archive(location)))
+                .filter(Boolean::booleanValue)
+                .count()
+                .doOnNext(demoted -> {
+                    if (demoted > 0) {
+                        log.info("Demoted {} idle checkouts to the object store", demoted);
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Uploads the checkout unless it has been archived before, and records the archive key
+     * on every analysis using it.
+     */
+    private Mono<String> archive(String location) {
+        return findArchiveKey(location)
+                .switchIfEmpty(Mono.defer(() -> coldStorage.store(Paths.get(location))
+                        .flatMap(archiveKey -> analysisRepository.updateArchiveKey(location, archiveKey)
+                                .thenMany(analysisRepository.findByStorageLocation(location))
+                                .doOnNext(analysis -> analysisCache.invalidate(analysis.getId()))
+                                .then(Mono.just(archiveKey)))));
+    }
+
+    /**
+     * Unpacks the archive of the checkout into a directory next to the target and moves it
+     * into place once complete, so a failed or cancelled restore leaves nothing at the
+     * target that could pass for the checkout.
+     */
+    private Mono<Path> restoreArchive(String location, Path target) {
+        return findArchiveKey(location)
+                .flatMap(archiveKey -> Mono.usingWhen(
+                        blockingSchedulers.fromCallable(() -> workspaceManager.allocateRestore(location)),
+                        staging -> coldStorage.restore(archiveKey, staging)
+                                .flatMap(restored -> blockingSchedulers.fromCallable(
+                                        () -> moveIntoPlace(staging, target))),
+                        this::discardLeftover,
+                        (staging, ex) -> discardLeftover(staging),
+                        this::discardLeftover));
+    }
+
+    private static Path moveIntoPlace(Path staging, Path target) throws IOException {
+        try {
+            Files.move(staging, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // Restored by a concurrent caller that no longer shared this download
+            log.debug("Checkout {} was restored concurrently", target);
+        }
+        return target;
+    }
+
+    private Mono<Void> discardLeftover(Path staging) {
+        return Mono.fromRunnable(() -> {
+            if (Files.exists(staging)) {
+                workspaceManager.discard(staging);
+            }
+        });
+    }
+
+    private Mono<String> findArchiveKey(String location) {
+        return analysisRepository.findByStorageLocation(location)
+                .filter(analysis -> analysis.getArchiveKey() != null)
+                .map(CodeAnalysis::getArchiveKey)
+                .next();
+    }
+}
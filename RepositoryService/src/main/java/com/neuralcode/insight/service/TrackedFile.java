@@ -0,0 +1,10 @@
+package com.neuralcode.insight.service;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+/**
+ * A file tracked at HEAD of a checkout. {@code path} is relative to the root of the
+ * checkout and {@code blobId} identifies its content.
+ */
+public record TrackedFile(String path, ObjectId blobId) {
+}
@@ -0,0 +1,88 @@
+package com.neuralcode.insight.service;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Records which files of a directory upload have reached the object store, so an
+ * interrupted upload can resume with the remaining files.
+ * <p>
+ * The checkpoint is a text file whose first line is the destination prefix and each
+ * following line the relative path of one uploaded file. Lines are flushed as files
+ * complete; a checkpoint for a different prefix is discarded.
+ */
+final class UploadCheckpoint implements Closeable {
+
+    private final Path file;
+    private final Set<String> completed;
+    private final BufferedWriter writer;
+
+    private UploadCheckpoint(Path file, Set<String> completed, BufferedWriter writer) {
+        this.file = file;
+        this.completed = completed;
+        this.writer = writer;
+    }
+
+    static UploadCheckpoint open(Path file, String destination) throws IOException {
+        Set<String> completed = new HashSet<>();
+        if (Files.exists(file)) {
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            List<String> lines = content.lines().toList();
+            if (!lines.isEmpty() && lines.get(0).equals(destination)) {
+                // A line cut short by a crash names no uploaded file; drop it
+                int end = content.endsWith("\n") ? lines.size() : lines.size() - 1;
+                completed.addAll(lines.subList(1, Math.max(1, end)));
+                if (end < lines.size()) {
+                    Files.writeString(file, content.substring(0, content.lastIndexOf('\n') + 1),
+                            StandardCharsets.UTF_8);
+                }
+            } else {
+                Files.delete(file);
+            }
+        }
+
+        BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (completed.isEmpty() && Files.size(file) == 0) {
+            writer.write(destination);
+            writer.newLine();
+            writer.flush();
+        }
+        return new UploadCheckpoint(file, completed, writer);
+    }
+
+    boolean isCompleted(String relativePath) {
+        return completed.contains(relativePath);
+    }
+
+    int completedCount() {
+        return completed.size();
+    }
+
+    synchronized void markCompleted(String relativePath) throws IOException {
+        writer.write(relativePath);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Closes and removes the checkpoint once the upload has fully completed.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,428 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.WorkspaceCapacityExceededException;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Owns the directory that local checkouts are cloned into and keeps it within a disk
+ * quota. Checkouts that have not been used for longer than the TTL are evicted, and when
+ * the quota is exceeded the least recently used ones go first. Evicted analyses move to
+ * {@link AnalysisStatus#EVICTED} and lose their storage location. A new checkout is held
+ * until its scan pins it, and one whose analysis is still waiting for its scan is kept,
+ * unless it has outlived the TTL because the pipeline that stored it is gone.
+ * <p>
+ * All deletions run on a single background reaper thread, so clones never wait for a
+ * directory tree to be removed. New clones are refused while the file system holding the
+ * root has less than the configured free space.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WorkspaceManager {
+
+    private static final String MANIFEST_SUFFIX = ".manifest";
+    private static final String UPLOAD_CHECKPOINT_SUFFIX = ".upload";
+    private static final String RESTORE_SUFFIX = ".restore-";
+    private static final Duration WAKE_UP_EMIT_TIMEOUT = Duration.ofMillis(100);
+
+    private static final List<String> EVICTABLE_STATUSES = AnalysisStatus.EVICTED.predecessors();
+
+    @Value("${insight.workspace.root:${java.io.tmpdir}/neural-code-insight/workspaces}")
+    private String workspaceRoot;
+
+    @Value("${insight.workspace.max-disk-bytes:21474836480}")
+    private long maxDiskBytes;
+
+    @Value("${insight.workspace.min-free-bytes:1073741824}")
+    private long minFreeBytes;
+
+    @Value("${insight.workspace.ttl:24h}")
+    private Duration ttl;
+
+    @Value("${insight.workspace.reaper-interval:1m}")
+    private Duration reaperInterval;
+
+    private final CodeAnalysisRepository analysisRepository;
+    private final AnalysisCache analysisCache;
+    private final AnalysisEventPublisher eventPublisher;
+
+    private final Map<Path, Workspace> workspaces = new ConcurrentHashMap<>();
+
+    // Directories of failed clones, deleted by the reaper without touching any analysis
+    private final Queue<Path> discarded = new ConcurrentLinkedQueue<>();
+
+    private final Sinks.Many<Long> wakeUps = Sinks.many().multicast().directBestEffort();
+
+    private Path rootPath;
+
+    private Scheduler reaperScheduler;
+
+    private Disposable reaper;
+
+    @PostConstruct
+    public void initialize() throws IOException {
+        rootPath = Paths.get(workspaceRoot).toAbsolutePath();
+        Files.createDirectories(rootPath);
+
+        // Pick up checkouts left behind by a previous run so they count against the quota,
+        // and drop the remains of restores that were interrupted
+        try (Stream<Path> existing = Files.list(rootPath)) {
+            existing.filter(Files::isDirectory).forEach(dir -> {
+                if (dir.getFileName().toString().contains(RESTORE_SUFFIX)) {
+                    discarded.add(dir);
+                    return;
+                }
+                Workspace workspace = new Workspace(dir);
+                workspace.sizeBytes = FileUtils.sizeOfDirectory(dir.toFile());
+                workspace.lastAccess = dir.toFile().lastModified();
+                workspaces.put(dir, workspace);
+            });
+        }
+
+        reaperScheduler = Schedulers.newSingle("workspace-reaper");
+        reaper = Flux.merge(Flux.interval(reaperInterval, reaperInterval, reaperScheduler), wakeUps.asFlux())
+                .onBackpressureDrop()
+                .concatMap(tick -> reap()
+                        .onErrorResume(ex -> {
+                            log.warn("Workspace reaper run failed", ex);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+
+        log.info("Workspace manager initialized at {} with {} existing checkouts ({} bytes)",
+                rootPath, workspaces.size(), totalBytes());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (reaper != null) {
+            reaper.dispose();
+        }
+        if (reaperScheduler != null) {
+            reaperScheduler.dispose();
+        }
+    }
+
+    /**
+     * Creates an empty directory for a new checkout. Fails with
+     * {@link WorkspaceCapacityExceededException} when the disk is too full to take it.
+     */
+    public Path allocate(String directoryName) throws IOException {
+        long usableBytes = Files.getFileStore(rootPath).getUsableSpace();
+        if (usableBytes < minFreeBytes || totalBytes() > maxDiskBytes) {
+            wakeUpReaper();
+        }
+        if (usableBytes < minFreeBytes) {
+            throw new WorkspaceCapacityExceededException(usableBytes,
+                    "Only " + usableBytes + " bytes free under " + rootPath + ", need " + minFreeBytes);
+        }
+        return Files.createTempDirectory(rootPath, directoryName);
+    }
+
+    /**
+     * Creates an empty directory next to the checkout to restore it into. Once complete it
+     * is moved into place, so a checkout directory is never seen half written.
+     */
+    public Path allocateRestore(String storageLocation) throws IOException {
+        Path checkout = Paths.get(storageLocation);
+        Files.createDirectories(checkout.getParent());
+        return Files.createTempDirectory(checkout.getParent(), checkout.getFileName() + RESTORE_SUFFIX);
+    }
+
+    /**
+     * Starts tracking a finished or restored checkout. It is held as if pinned until the
+     * first {@link #pin}, so it cannot be evicted before the scan it was made for starts.
+     * Registering a checkout that is already tracked, as happens when a concurrent
+     * identical analysis reuses it, only counts as an access, since checkouts do not
+     * change once written.
+     */
+    public void register(Path checkout) {
+        Workspace workspace = workspaces.computeIfAbsent(checkout, directory -> {
+            Workspace added = new Workspace(directory);
+            added.sizeBytes = FileUtils.sizeOfDirectory(directory.toFile());
+            added.awaitingScan = true;
+            return added;
+        });
+        workspace.lastAccess = System.currentTimeMillis();
+        if (totalBytes() > maxDiskBytes) {
+            wakeUpReaper();
+        }
+    }
+
+    /**
+     * Hands a checkout that could not be completed to the reaper for deletion.
+     */
+    public void discard(Path checkout) {
+        workspaces.remove(checkout);
+        discarded.add(checkout);
+        wakeUpReaper();
+    }
+
+    /**
+     * Marks a checkout as in use so that it is not evicted until {@link #unpin} is called.
+     * Returns false if the checkout is no longer available.
+     */
+    public boolean pin(String storageLocation) {
+        Path checkout = Paths.get(storageLocation);
+        Workspace workspace = workspaces.get(checkout);
+        if (workspace == null) {
+            // Not managed here, so it can only disappear if someone else deletes it
+            return Files.isDirectory(checkout);
+        }
+        synchronized (workspace) {
+            if (workspace.evicted) {
+                return false;
+            }
+            workspace.pins.incrementAndGet();
+            workspace.awaitingScan = false;
+            workspace.lastAccess = System.currentTimeMillis();
+            return true;
+        }
+    }
+
+    public void unpin(String storageLocation) {
+        Workspace workspace = workspaces.get(Paths.get(storageLocation));
+        if (workspace != null) {
+            workspace.pins.decrementAndGet();
+        }
+    }
+
+    /**
+     * Returns the checkouts that are not in use and have not been accessed for at least
+     * the given time, least recently used first.
+     */
+    public List<String> idleCheckouts(Duration idleTime) {
+        long idleBefore = System.currentTimeMillis() - idleTime.toMillis();
+        return workspaces.values().stream()
+                .filter(workspace -> workspace.pins.get() == 0 && !workspace.awaitingScan && !workspace.evicted)
+                .filter(workspace -> workspace.lastAccess < idleBefore)
+                .sorted(Comparator.comparingLong(workspace -> workspace.lastAccess))
+                .map(workspace -> workspace.directory.toString())
+                .toList();
+    }
+
+    /**
+     * Deletes a checkout whose content has been kept elsewhere, without touching the
+     * analyses using it. {@code beforeDelete} runs first, while the checkout is refused
+     * to {@link #pin}; if it fails the checkout stays. The manifest is kept. Completes with
+     * false if the checkout is in use or gone.
+     */
+    public Mono<Boolean> release(String storageLocation, Mono<?> beforeDelete) {
+        Workspace workspace = workspaces.get(Paths.get(storageLocation));
+        if (workspace == null) {
+            return Mono.just(false);
+        }
+        synchronized (workspace) {
+            if (workspace.pins.get() > 0 || workspace.awaitingScan || workspace.evicted) {
+                return Mono.just(false);
+            }
+            workspace.evicted = true;
+        }
+
+        return beforeDelete
+                .then(Mono.fromCallable(() -> {
+                    delete(workspace.directory);
+                    workspaces.remove(workspace.directory, workspace);
+                    log.info("Released checkout {} ({} bytes)", workspace.directory, workspace.sizeBytes);
+                    return true;
+                }).subscribeOn(reaperScheduler))
+                .onErrorResume(ex -> {
+                    log.warn("Failed to release checkout {}", workspace.directory, ex);
+                    workspace.evicted = false;
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Returns where the content manifest of a checkout is kept: next to the checkout
+     * rather than inside it, so it is not part of the checked out tree.
+     */
+    public Path manifestFile(String storageLocation) {
+        Path checkout = Paths.get(storageLocation);
+        return checkout.resolveSibling(checkout.getFileName() + MANIFEST_SUFFIX);
+    }
+
+    /**
+     * Returns where the checkpoint of an interrupted upload of a checkout is kept, next to
+     * the checkout like its manifest.
+     */
+    public Path uploadCheckpointFile(String storageLocation) {
+        Path checkout = Paths.get(storageLocation);
+        return checkout.resolveSibling(checkout.getFileName() + UPLOAD_CHECKPOINT_SUFFIX);
+    }
+
+    public long totalBytes() {
+        return workspaces.values().stream().mapToLong(workspace -> workspace.sizeBytes).sum();
+    }
+
+    public int checkoutCount() {
+        return workspaces.size();
+    }
+
+    /**
+     * Deletes discarded directories, then evicts checkouts past their TTL, then evicts
+     * least recently used checkouts until both the quota and the free space limit hold.
+     */
+    Mono<Void> reap() {
+        return Mono.fromRunnable(this::deleteDiscarded)
+                .then(Mono.defer(() -> {
+                    long expiredBefore = System.currentTimeMillis() - ttl.toMillis();
+                    List<Workspace> candidates = workspaces.values().stream()
+                            .sorted(Comparator.comparingLong(workspace -> workspace.lastAccess))
+                            .toList();
+                    long[] remainingBytes = {totalBytes()};
+
+                    return Flux.fromIterable(candidates)
+                            .filter(workspace -> workspace.lastAccess < expiredBefore
+                                    || remainingBytes[0] > maxDiskBytes
+                                    || usableBytes() < minFreeBytes)
+                            .concatMap(workspace -> evict(workspace, workspace.lastAccess < expiredBefore)
+                                    .doOnNext(evicted -> {
+                                        if (evicted) {
+                                            remainingBytes[0] -= workspace.sizeBytes;
+                                        }
+                                    }))
+                            .then();
+                }))
+                .subscribeOn(reaperScheduler);
+    }
+
+    /**
+     * Evicts the checkout unless it is in use. One that is held for its first scan, or whose
+     * analysis is still waiting for its scan, is only evicted once it has expired.
+     */
+    private Mono<Boolean> evict(Workspace workspace, boolean expired) {
+        synchronized (workspace) {
+            if (workspace.pins.get() > 0 || workspace.evicted || workspace.awaitingScan && !expired) {
+                return Mono.just(false);
+            }
+            workspace.evicted = true;
+        }
+
+        String storageLocation = workspace.directory.toString();
+        // Clear the location in the database before deleting, so nothing is handed a
+        // checkout that is about to disappear
+        return analysisRepository.findByStorageLocation(storageLocation)
+                .collectList()
+                .flatMap(analyses -> {
+                    if (!expired && analyses.stream().anyMatch(analysis ->
+                            AnalysisStatus.STORED_IN_LOCAL.name().equals(analysis.getStatus()))) {
+                        workspace.evicted = false;
+                        return Mono.just(false);
+                    }
+                    List<String> evictedIds = analyses.stream()
+                            .filter(analysis -> EVICTABLE_STATUSES.contains(analysis.getStatus()))
+                            .map(CodeAnalysis::getId)
+                            .toList();
+                    return analysisRepository.evictCheckout(storageLocation, AnalysisStatus.EVICTED.name(),
+                                    EVICTABLE_STATUSES)
+                            .doOnNext(rows -> evictedIds.forEach(analysisId -> {
+                                analysisCache.invalidate(analysisId);
+                                eventPublisher.publishStatus(analysisId, AnalysisStatus.EVICTED.name());
+                            }))
+                            .publishOn(reaperScheduler)
+                            .map(rows -> {
+                                delete(workspace.directory);
+                                deleteFile(manifestFile(storageLocation));
+                                deleteFile(uploadCheckpointFile(storageLocation));
+                                workspaces.remove(workspace.directory, workspace);
+                                log.info("Evicted checkout {} ({} bytes, {} analyses)",
+                                        workspace.directory, workspace.sizeBytes, rows);
+                                return true;
+                            });
+                })
+                .onErrorResume(ex -> {
+                    log.warn("Failed to evict checkout {}", workspace.directory, ex);
+                    workspace.evicted = false;
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Wakes the reaper up early. Callers on many threads may race to emit, so contention is
+     * retried briefly; a wake-up that still cannot be delivered is left to the next
+     * scheduled run.
+     */
+    private void wakeUpReaper() {
+        try {
+            wakeUps.emitNext(System.currentTimeMillis(), Sinks.EmitFailureHandler.busyLooping(WAKE_UP_EMIT_TIMEOUT));
+        } catch (Sinks.EmissionException e) {
+            log.debug("Could not wake up the workspace reaper: {}", e.getMessage());
+        }
+    }
+
+    private void deleteDiscarded() {
+        Path checkout;
+        while ((checkout = discarded.poll()) != null) {
+            delete(checkout);
+        }
+    }
+
+    private void delete(Path directory) {
+        try {
+            FileUtils.deleteDirectory(directory.toFile());
+            log.debug("Deleted workspace directory {}", directory);
+        } catch (IOException e) {
+            log.warn("Failed to delete workspace directory {}", directory, e);
+        }
+    }
+
+    private void deleteFile(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete workspace file {}", file, e);
+        }
+    }
+
+    private long usableBytes() {
+        try {
+            return Files.getFileStore(rootPath).getUsableSpace();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static final class Workspace {
+        private final Path directory;
+        private final AtomicInteger pins = new AtomicInteger();
+        private volatile long sizeBytes;
+        private volatile long lastAccess = System.currentTimeMillis();
+        private volatile boolean evicted;
+        // Registered but not pinned by the scan it was made for yet
+        private volatile boolean awaitingScan;
+
+        private Workspace(Path directory) {
+            this.directory = directory;
+        }
+    }
+}
@@ -1,12 +1,89 @@
---CREATE TABLE IF NOT EXISTS code_analysis (
---    id VARCHAR(255) PRIMARY KEY,
---    repository_url TEXT NOT NULL,
---    branch_name VARCHAR(255) NOT NULL,
---    status VARCHAR(50) NOT NULL,
---    start_time TIMESTAMP,
---    end_time TIMESTAMP,
---    error_message TEXT,
---    storage_location TEXT
---);
---
---CREATE INDEX IF NOT EXISTS idx_analysis_status ON code_analysis(status);
\ No newline at end of file
+CREATE TABLE IF NOT EXISTS code_analysis (
+    id VARCHAR(255) PRIMARY KEY,
+    repository_url TEXT NOT NULL,
+    branch_name VARCHAR(255) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    start_time TIMESTAMP,
+    end_time TIMESTAMP,
+    error_message TEXT,
+    storage_location TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_analysis_status ON code_analysis(status);
+
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS clone_strategy VARCHAR(50);
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS clone_depth INTEGER;
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS commit_sha VARCHAR(64);
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS source_analysis_id VARCHAR(255);
+
+CREATE TABLE IF NOT EXISTS analysis_job (
+    analysis_id VARCHAR(255) PRIMARY KEY REFERENCES code_analysis(id) ON DELETE CASCADE,
+    state VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    available_at TIMESTAMP NOT NULL,
+    lease_owner VARCHAR(255),
+    lease_expires_at TIMESTAMP,
+    last_error TEXT
+);
+
+CREATE INDEX IF NOT EXISTS idx_analysis_job_claim ON analysis_job(state, available_at);
+
+-- Keyset pagination on (start_time, id), optionally narrowed by status or repository
+CREATE INDEX IF NOT EXISTS idx_analysis_start_time_id ON code_analysis(start_time DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_analysis_status_start_time_id ON code_analysis(status, start_time DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_analysis_repository_start_time_id ON code_analysis(repository_url, start_time DESC, id DESC);
+
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS canonical_url TEXT;
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS repository_url_hash CHAR(64);
+
+-- Repository lookups go through the fixed-width hash of the canonical URL
+DROP INDEX IF EXISTS idx_analysis_repository_start_time_id;
+CREATE INDEX IF NOT EXISTS idx_analysis_url_hash_start_time_id ON code_analysis(repository_url_hash, start_time DESC, id DESC);
+
+-- Eviction of a local checkout looks up every analysis sharing it
+CREATE INDEX IF NOT EXISTS idx_analysis_storage_location ON code_analysis(storage_location);
+
+CREATE TABLE IF NOT EXISTS file_metrics (
+    analysis_id VARCHAR(255) NOT NULL REFERENCES code_analysis(id) ON DELETE CASCADE,
+    path TEXT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    total_lines INTEGER NOT NULL,
+    code_lines INTEGER NOT NULL,
+    comment_lines INTEGER NOT NULL,
+    blank_lines INTEGER NOT NULL,
+    class_count INTEGER NOT NULL,
+    method_count INTEGER NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_file_metrics_analysis ON file_metrics(analysis_id);
+
+CREATE TABLE IF NOT EXISTS repository_metrics (
+    analysis_id VARCHAR(255) PRIMARY KEY REFERENCES code_analysis(id) ON DELETE CASCADE,
+    file_count BIGINT NOT NULL,
+    total_bytes BIGINT NOT NULL,
+    total_lines BIGINT NOT NULL,
+    code_lines BIGINT NOT NULL,
+    comment_lines BIGINT NOT NULL,
+    blank_lines BIGINT NOT NULL,
+    class_count BIGINT NOT NULL,
+    method_count BIGINT NOT NULL,
+    computed_at TIMESTAMP NOT NULL
+);
+
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS baseline_analysis_id VARCHAR(255);
+
+-- Only written when insight.manifest.persist-to-database is enabled
+CREATE TABLE IF NOT EXISTS file_manifest (
+    analysis_id VARCHAR(255) NOT NULL REFERENCES code_analysis(id) ON DELETE CASCADE,
+    path TEXT NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    sha256 CHAR(64) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_file_manifest_analysis ON file_manifest(analysis_id);
+
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS archive_key VARCHAR(500);
+
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS clone_objects BIGINT;
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS clone_bytes BIGINT;
+ALTER TABLE code_analysis ADD COLUMN IF NOT EXISTS clone_duration_ms BIGINT;
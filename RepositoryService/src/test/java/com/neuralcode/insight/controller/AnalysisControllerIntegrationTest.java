@@ -1,21 +1,48 @@
 package com.neuralcode.insight.controller;
 
 import com.neuralcode.insight.NeuralCodeInsightApplication;
+import com.neuralcode.insight.dto.AnalysisEvent;
+import com.neuralcode.insight.dto.AnalysisPage;
 import com.neuralcode.insight.dto.AnalysisRequest;
 import com.neuralcode.insight.dto.AnalysisResponse;
+import com.neuralcode.insight.dto.BatchSubmissionResult;
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.dto.ManifestEntry;
+import com.neuralcode.insight.dto.RepositoryMetrics;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.AnalysisCancelledException;
+import com.neuralcode.insight.service.AnalysisService;
+import com.neuralcode.insight.service.CloneKey;
 import com.neuralcode.insight.service.RepositoryService;
+import org.eclipse.jgit.api.Git;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.Mockito.when;
 
 @ActiveProfiles("test")
@@ -32,17 +59,40 @@ class AnalysisControllerIntegrationTest {
     @Autowired
     private WebTestClient webTestClient;
 
+    @Autowired
+    private AnalysisService analysisService;
+
     @MockBean
     private RepositoryService repositoryService;
 
+    @TempDir
+    Path tempDir;
+
+    // Manifests are written next to the checkout, so keep it inside the temporary directory
+    private Path checkout;
+
     @BeforeEach
-    void setUp() {
-        when(repositoryService.cloneAndStoreRepository(anyString(), anyString(), anyString()))
-                .thenReturn(Mono.just("s3://test-bucket/spring-demo-main-abc123/"));
+    void setUp() throws Exception {
+        checkout = tempDir.resolve("checkout");
+        Files.createDirectories(checkout.resolve("src"));
+        Files.writeString(checkout.resolve("src/Demo.java"), """
+                package demo;
+
+                // Entry point
+                public class Demo {
+                    public static void main(String[] args) {
+                        System.out.println("demo");
+                    }
+                }
+                """);
+        when(repositoryService.cloneAndStoreRepository(anyString(), anyString(), anyString(), any(CloneOptions.class), any()))
+                .thenReturn(Mono.just(checkout.toString()));
+        when(repositoryService.resolveCloneKey(anyString(), anyString(), any(CloneOptions.class)))
+                .thenReturn(Mono.empty());
     }
 
     @Test
-    void shouldStartAnalysisSuccessfully() {
+    void shouldQueueAnalysisAndReturnAccepted() {
         // Given
         AnalysisRequest request = new AnalysisRequest(
                 "https://github.com/spring-projects/spring-demo",
@@ -55,15 +105,327 @@ class AnalysisControllerIntegrationTest {
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(request)
                 .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> {
+                    assertThat(response.getAnalysisId()).isNotEmpty();
+                    assertThat(response.getStatus()).isEqualTo("QUEUED");
+                    assertThat(response.getRepositoryUrl()).isEqualTo(request.repositoryUrl());
+                });
+    }
+
+    @Test
+    void shouldStartAnalysisSuccessfully() {
+        // Given
+        AnalysisRequest request = new AnalysisRequest(
+                "https://github.com/spring-projects/spring-demo",
+                "main"
+        );
+
+        // When & Then
+        webTestClient.post()
+                .uri("/api/analysis/v1/repository?wait=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange()
                 .expectStatus().isOk()
                 .expectBody(AnalysisResponse.class)
                 .value(response -> {
                     assertThat(response.getAnalysisId()).isNotEmpty();
-                    assertThat(response.getStatus()).isEqualTo("STORED_IN_LOCAL");
+                    assertThat(response.getStatus()).isEqualTo("COMPLETED");
                     assertThat(response.getRepositoryUrl()).isEqualTo(request.repositoryUrl());
                 });
     }
 
+    @Test
+    void shouldOnlyRescanFilesChangedSinceLastAnalysis() throws Exception {
+        // Given
+        String repositoryUrl = "https://github.com/spring-projects/spring-incremental";
+        try (Git git = Git.init().setDirectory(checkout.toFile()).setInitialBranch("main").call()) {
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("first").setSign(false).call();
+        }
+        AnalysisResponse first = analyseSynchronously(repositoryUrl);
+
+        try (Git git = Git.open(checkout.toFile())) {
+            Files.writeString(checkout.resolve("src/Extra.java"), "class Extra {\n    void extra() {\n    }\n}\n");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("second").setSign(false).call();
+        }
+
+        // When
+        AnalysisResponse second = analyseSynchronously(repositoryUrl);
+
+        // Then
+        webTestClient.get()
+                .uri("/debug/analyses/{id}", second.getAnalysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(CodeAnalysis.class)
+                .value(analysis -> assertThat(analysis.getBaselineAnalysisId()).isEqualTo(first.getAnalysisId()));
+
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}/metrics", second.getAnalysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RepositoryMetrics.class)
+                .value(metrics -> {
+                    assertThat(metrics.fileCount()).isEqualTo(2);
+                    assertThat(metrics.classCount()).isEqualTo(2);
+                    assertThat(metrics.methodCount()).isEqualTo(2);
+                });
+    }
+
+    private AnalysisResponse analyseSynchronously(String repositoryUrl) {
+        return webTestClient.post()
+                .uri("/api/analysis/v1/repository?wait=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AnalysisRequest(repositoryUrl, "main"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnalysisResponse.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void shouldPersistStatusTransitionOfSynchronousAnalysis() {
+        // Given
+        AnalysisResponse stored = webTestClient.post()
+                .uri("/api/analysis/v1/repository?wait=true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AnalysisRequest("https://github.com/spring-projects/spring-demo", "main"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnalysisResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // When & Then
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}", stored.getAnalysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> assertThat(response.getStatus()).isEqualTo("COMPLETED"));
+
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}/metrics", stored.getAnalysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(RepositoryMetrics.class)
+                .value(metrics -> {
+                    assertThat(metrics.fileCount()).isEqualTo(1);
+                    assertThat(metrics.totalLines()).isEqualTo(8);
+                    assertThat(metrics.codeLines()).isEqualTo(6);
+                    assertThat(metrics.commentLines()).isEqualTo(1);
+                    assertThat(metrics.classCount()).isEqualTo(1);
+                    assertThat(metrics.methodCount()).isEqualTo(1);
+                });
+
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}/manifest", stored.getAnalysisId())
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(ManifestEntry.class)
+                .value(entries -> assertThat(entries).extracting(ManifestEntry::path).containsExactly("src/Demo.java"));
+    }
+
+    @Test
+    void shouldCancelQueuedAnalysisOnlyOnce() {
+        // Given
+        AnalysisResponse queued = webTestClient.post()
+                .uri("/api/analysis/v1/repository")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AnalysisRequest("https://github.com/spring-projects/spring-demo", "main"))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(AnalysisResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // When & Then
+        webTestClient.delete()
+                .uri("/api/analysis/v1/id/{id}", queued.getAnalysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> assertThat(response.getStatus()).isEqualTo("CANCELLED"));
+
+        webTestClient.delete()
+                .uri("/api/analysis/v1/id/{id}", queued.getAnalysisId())
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void shouldStopRunningCloneWhenCancelled() {
+        // Given the usual path, where the branch resolves and the clone is deduplicated
+        when(repositoryService.resolveCloneKey(anyString(), anyString(), any(CloneOptions.class)))
+                .thenReturn(Mono.just(new CloneKey("https://github.com/spring-projects/spring-demo", "main",
+                        "abc123", CloneOptions.defaults())));
+        AtomicReference<String> analysisId = new AtomicReference<>();
+        AtomicBoolean cloneDisposed = new AtomicBoolean();
+        when(repositoryService.cloneAndStoreRepository(anyString(), anyString(), anyString(), any(CloneOptions.class),
+                any())).thenAnswer(invocation -> {
+            analysisId.set(invocation.getArgument(2));
+            return Mono.<String>never().doOnCancel(() -> cloneDisposed.set(true));
+        });
+
+        // When & Then
+        StepVerifier.create(analysisService.startAnalysis("https://github.com/spring-projects/spring-demo", "main",
+                        CloneOptions.defaults()))
+                .then(() -> {
+                    await().atMost(Duration.ofSeconds(5)).until(() -> analysisId.get() != null);
+                    webTestClient.delete()
+                            .uri("/api/analysis/v1/id/{id}", analysisId.get())
+                            .exchange()
+                            .expectStatus().isOk();
+                })
+                .expectError(AnalysisCancelledException.class)
+                .verify(Duration.ofSeconds(10));
+
+        assertThat(cloneDisposed).isTrue();
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}", analysisId.get())
+                .exchange()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> assertThat(response.getStatus()).isEqualTo("CANCELLED"));
+    }
+
+    @Test
+    void shouldCancelSynchronousAnalysisWhenCallerGoesAway() {
+        // Given
+        AtomicReference<String> analysisId = new AtomicReference<>();
+        when(repositoryService.cloneAndStoreRepository(anyString(), anyString(), anyString(), any(CloneOptions.class),
+                any())).thenAnswer(invocation -> {
+            analysisId.set(invocation.getArgument(2));
+            return Mono.never();
+        });
+        Disposable caller = analysisService.startAnalysis("https://github.com/spring-projects/spring-demo", "main",
+                CloneOptions.defaults()).subscribe();
+        await().atMost(Duration.ofSeconds(5)).until(() -> analysisId.get() != null);
+
+        // When
+        caller.dispose();
+
+        // Then
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() -> webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}", analysisId.get())
+                .exchange()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> assertThat(response.getStatus()).isEqualTo("CANCELLED")));
+    }
+
+    @Test
+    void shouldStreamCurrentStatusAsServerSentEvent() {
+        // Given
+        AnalysisResponse queued = webTestClient.post()
+                .uri("/api/analysis/v1/repository")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new AnalysisRequest("https://github.com/spring-projects/spring-demo", "main"))
+                .exchange()
+                .expectStatus().isAccepted()
+                .expectBody(AnalysisResponse.class)
+                .returnResult()
+                .getResponseBody();
+
+        // When
+        Flux<AnalysisEvent> events = webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}/events", queued.getAnalysisId())
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(AnalysisEvent.class)
+                .getResponseBody();
+
+        // Then
+        StepVerifier.create(events.take(1))
+                .assertNext(event -> {
+                    assertThat(event.analysisId()).isEqualTo(queued.getAnalysisId());
+                    assertThat(event.status()).isEqualTo("QUEUED");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldPageThroughAnalysesWithCursor() {
+        // Given
+        String repositoryUrl = "https://github.com/spring-projects/paging-" + System.nanoTime();
+        for (int i = 0; i < 3; i++) {
+            webTestClient.post()
+                    .uri("/api/analysis/v1/repository")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(new AnalysisRequest(repositoryUrl, "main"))
+                    .exchange()
+                    .expectStatus().isAccepted();
+        }
+
+        // When
+        AnalysisPage<AnalysisResponse> firstPage = fetchPage(repositoryUrl, null);
+        AnalysisPage<AnalysisResponse> secondPage = fetchPage(repositoryUrl, firstPage.nextCursor());
+
+        // Then
+        assertThat(firstPage.items()).hasSize(2);
+        assertThat(firstPage.nextCursor()).isNotNull();
+        assertThat(secondPage.items()).hasSize(1);
+        assertThat(secondPage.nextCursor()).isNull();
+        assertThat(secondPage.items().get(0).getAnalysisId())
+                .isNotIn(firstPage.items().stream().map(AnalysisResponse::getAnalysisId).toList());
+    }
+
+    private AnalysisPage<AnalysisResponse> fetchPage(String repositoryUrl, String cursor) {
+        return webTestClient.get()
+                .uri(uriBuilder -> uriBuilder.path("/api/analysis/v1/analyses")
+                        .queryParam("repositoryUrl", repositoryUrl)
+                        .queryParam("limit", 2)
+                        .queryParamIfPresent("cursor", Optional.ofNullable(cursor))
+                        .build())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(new ParameterizedTypeReference<AnalysisPage<AnalysisResponse>>() { })
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Test
+    void shouldQueueBatchAndReportEachItem() {
+        // Given
+        List<AnalysisRequest> requests = List.of(
+                new AnalysisRequest("https://github.com/spring-projects/spring-demo", "main"),
+                new AnalysisRequest("https://github.com/spring-projects/spring-demo", ""),
+                new AnalysisRequest("https://github.com/spring-projects/spring-other", "develop"));
+
+        // When
+        List<BatchSubmissionResult> results = webTestClient.post()
+                .uri("/api/analysis/v1/repositories")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue(requests)
+                .exchange()
+                .expectStatus().isAccepted()
+                .returnResult(BatchSubmissionResult.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        // Then
+        assertThat(results).extracting(BatchSubmissionResult::index).containsExactly(0L, 1L, 2L);
+        assertThat(results.get(1).analysisId()).isNull();
+        assertThat(results.get(1).error()).isNotBlank();
+
+        webTestClient.get()
+                .uri("/api/analysis/v1/id/{id}", results.get(2).analysisId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(AnalysisResponse.class)
+                .value(response -> {
+                    assertThat(response.getStatus()).isEqualTo("QUEUED");
+                    assertThat(response.getRepositoryUrl()).isEqualTo("https://github.com/spring-projects/spring-other");
+                });
+    }
+
     @Test
     void shouldRejectInvalidRepositoryUrl() {
         // Given
@@ -0,0 +1,61 @@
+package com.neuralcode.insight.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks the intervals bound into the queue statements, which rely on PostgreSQL features
+ * H2 does not have.
+ */
+class AnalysisJobRepositoryTest {
+
+    private final DatabaseClient databaseClient = mock(DatabaseClient.class);
+
+    private final DatabaseClient.GenericExecuteSpec spec = mock(DatabaseClient.GenericExecuteSpec.class, RETURNS_SELF);
+
+    private final AnalysisJobRepository repository = new AnalysisJobRepository(databaseClient);
+
+    @BeforeEach
+    void setUp() {
+        when(databaseClient.sql(anyString())).thenReturn(spec);
+        when(spec.then()).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void shouldKeepSubSecondRetryDelay() {
+        // When
+        repository.retryLater("analysis-1", "worker-1", Duration.ofMillis(250), "clone failed").block();
+
+        // Then
+        verify(spec).bind("delayMillis", 250L);
+    }
+
+    @Test
+    void shouldKeepFractionOfLongerRequeueDelayAndRoundUpBelowOneMillisecond() {
+        // When
+        repository.requeue("analysis-1", "worker-1", Duration.ofMillis(1500)).block();
+        repository.requeue("analysis-2", "worker-1", Duration.ofNanos(1)).block();
+
+        // Then
+        verify(spec).bind("delayMillis", 1500L);
+        verify(spec).bind("delayMillis", 1L);
+    }
+
+    @Test
+    void shouldRejectNegativeDelay() {
+        // When & Then
+        assertThatThrownBy(() -> repository.retryLater("analysis-1", "worker-1", Duration.ofSeconds(-1), null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,69 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.AnalysisRequest;
+import com.neuralcode.insight.dto.BatchSubmissionResult;
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AnalysisBatchServiceTest {
+
+    @Mock
+    private AnalysisService analysisService;
+
+    private AnalysisBatchService analysisBatchService;
+
+    @BeforeEach
+    void setUp() {
+        analysisBatchService = new AnalysisBatchService(analysisService,
+                Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(analysisBatchService, "chunkSize", 2);
+        ReflectionTestUtils.setField(analysisBatchService, "concurrency", 1);
+        ReflectionTestUtils.setField(analysisBatchService, "flushInterval", Duration.ofMillis(20));
+    }
+
+    @Test
+    void shouldKeepFlushingWhileSlowChunkInsertsHoldBackDemand() {
+        // Given chunk inserts far slower than the flush interval and a producer that trickles in
+        when(analysisService.submitAnalyses(anyList())).thenAnswer(invocation -> {
+            List<AnalysisRequest> requests = invocation.getArgument(0);
+            List<CodeAnalysis> analyses = requests.stream()
+                    .map(request -> new CodeAnalysis(UUID.randomUUID().toString(), request.repositoryUrl(),
+                            request.branchName(), AnalysisStatus.QUEUED.name(), LocalDateTime.now()))
+                    .toList();
+            return Mono.delay(Duration.ofMillis(200)).thenReturn(analyses);
+        });
+        Flux<AnalysisRequest> requests = Flux.range(0, 12)
+                .delayElements(Duration.ofMillis(30))
+                .map(i -> new AnalysisRequest("https://github.com/a/repository-" + i, "main"));
+
+        // When & Then
+        StepVerifier.create(analysisBatchService.submitBatch(requests))
+                .recordWith(ArrayList::new)
+                .expectNextCount(12)
+                .consumeRecordedWith(results -> assertThat(results)
+                        .extracting(BatchSubmissionResult::index)
+                        .containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L))
+                .verifyComplete();
+    }
+}
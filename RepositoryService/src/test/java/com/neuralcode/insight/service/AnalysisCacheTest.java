@@ -0,0 +1,68 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AnalysisCacheTest {
+
+    private final CodeAnalysisRepository analysisRepository = mock(CodeAnalysisRepository.class);
+
+    private AnalysisCache analysisCache;
+
+    @BeforeEach
+    void setUp() {
+        analysisCache = new AnalysisCache(analysisRepository);
+        ReflectionTestUtils.setField(analysisCache, "maxSize", 100L);
+        ReflectionTestUtils.setField(analysisCache, "activeTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(analysisCache, "terminalTtl", Duration.ofMinutes(10));
+        analysisCache.initialize();
+    }
+
+    @Test
+    void shouldServeRepeatedReadsFromCacheUntilInvalidated() {
+        // Given
+        CodeAnalysis stored = new CodeAnalysis("id-1", "https://github.com/a/b", "main",
+                AnalysisStatus.COMPLETED.name(), LocalDateTime.now());
+        when(analysisRepository.findById("id-1")).thenReturn(Mono.just(stored));
+
+        // When
+        CodeAnalysis first = analysisCache.get("id-1").block();
+        first.setStatus(AnalysisStatus.ERROR.name());
+        CodeAnalysis second = analysisCache.get("id-1").block();
+        analysisCache.invalidate("id-1");
+        analysisCache.get("id-1").block();
+
+        // Then
+        assertThat(second.getStatus()).isEqualTo(AnalysisStatus.COMPLETED.name());
+        verify(analysisRepository, times(2)).findById("id-1");
+        assertThat(analysisCache.statistics().hitCount()).isEqualTo(1);
+        assertThat(analysisCache.statistics().missCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNotCacheMissingAnalyses() {
+        // Given
+        when(analysisRepository.findById("missing")).thenReturn(Mono.empty());
+
+        // When
+        analysisCache.get("missing").block();
+        analysisCache.get("missing").block();
+
+        // Then
+        verify(analysisRepository, times(2)).findById("missing");
+    }
+}
@@ -0,0 +1,224 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.exception.AnalysisStateConflictException;
+import com.neuralcode.insight.repository.AnalysisJobRepository;
+import com.neuralcode.insight.repository.AnalysisJobRepository.ClaimedJob;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives the worker against mocked repositories, since the claim query relies on
+ * PostgreSQL features H2 does not have.
+ */
+@ExtendWith(MockitoExtension.class)
+class AnalysisJobWorkerTest {
+
+    private static final String ANALYSIS_ID = "analysis-1";
+
+    @Mock
+    private AnalysisJobRepository analysisJobRepository;
+
+    @Mock
+    private CodeAnalysisRepository analysisRepository;
+
+    @Mock
+    private AnalysisService analysisService;
+
+    private AnalysisJobWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        worker = new AnalysisJobWorker(analysisJobRepository, analysisRepository, analysisService);
+        ReflectionTestUtils.setField(worker, "enabled", true);
+        ReflectionTestUtils.setField(worker, "concurrency", 1);
+        ReflectionTestUtils.setField(worker, "pollInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(worker, "leaseDuration", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(worker, "heartbeatInterval", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(worker, "maxAttempts", 3);
+        ReflectionTestUtils.setField(worker, "retryBackoff", Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        worker.stop();
+    }
+
+    @Test
+    void shouldCompleteJobOnceAnalysisHasRun() {
+        // Given a queued analysis
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 1));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED)).thenReturn(Mono.just(analysis));
+        when(analysisService.executeAnalysis(analysis)).thenReturn(Mono.just(analysis));
+        when(analysisJobRepository.complete(eq(ANALYSIS_ID), anyString())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then
+        verify(analysisJobRepository, timeout(5000)).complete(eq(ANALYSIS_ID), anyString());
+        await().atMost(Duration.ofSeconds(5)).until(() -> worker.getActiveJobs() == 0);
+    }
+
+    @Test
+    void shouldResumeScanWhenReclaimedJobHasStoredCheckout() {
+        // Given a job reclaimed after its worker died between storing and scanning the checkout
+        CodeAnalysis analysis = analysis(AnalysisStatus.STORED_IN_LOCAL);
+        analysis.setStorageLocation("/tmp/checkouts/" + ANALYSIS_ID);
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 2));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis));
+        when(analysisService.resumeAnalysis(analysis)).thenReturn(Mono.just(analysis));
+        when(analysisJobRepository.complete(eq(ANALYSIS_ID), anyString())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then the checkout is scanned without a new clone
+        verify(analysisJobRepository, timeout(5000)).complete(eq(ANALYSIS_ID), anyString());
+        verify(analysisService, never()).transition(any(), eq(AnalysisStatus.STARTED));
+        verify(analysisService, never()).executeAnalysis(any());
+    }
+
+    @Test
+    void shouldRetryInsteadOfDroppingJobWhenConflictLeavesAnalysisRunnable() {
+        // Given a reclaimed job whose analysis is in a status the worker cannot start from
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        CodeAnalysis stored = analysis(AnalysisStatus.STORED_IN_LOCAL);
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 1));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis), Mono.just(stored));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED))
+                .thenReturn(Mono.error(new AnalysisStateConflictException(ANALYSIS_ID, AnalysisStatus.STARTED.name())));
+        when(analysisService.markRetrying(eq(analysis), any())).thenReturn(Mono.just(analysis));
+        when(analysisJobRepository.retryLater(eq(ANALYSIS_ID), anyString(), any(), any())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then the job stays on the queue
+        verify(analysisJobRepository, timeout(5000))
+                .retryLater(eq(ANALYSIS_ID), anyString(), eq(Duration.ofSeconds(30)), any());
+        verify(analysisJobRepository, never()).complete(any(), any());
+    }
+
+    @Test
+    void shouldDropJobWhenConflictingAnalysisHasFinished() {
+        // Given an analysis cancelled while its job was being claimed
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 1));
+        when(analysisRepository.findById(ANALYSIS_ID))
+                .thenReturn(Mono.just(analysis), Mono.just(analysis(AnalysisStatus.CANCELLED)));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED))
+                .thenReturn(Mono.error(new AnalysisStateConflictException(ANALYSIS_ID, AnalysisStatus.STARTED.name())));
+        when(analysisJobRepository.complete(eq(ANALYSIS_ID), anyString())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then
+        verify(analysisJobRepository, timeout(5000)).complete(eq(ANALYSIS_ID), anyString());
+        verify(analysisService, never()).markRetrying(any(), any());
+    }
+
+    @Test
+    void shouldBackOffLongerOnEachFailedAttempt() {
+        // Given the second attempt of an analysis that fails again
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 2));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED)).thenReturn(Mono.just(analysis));
+        when(analysisService.executeAnalysis(analysis)).thenReturn(Mono.error(new IllegalStateException("clone failed")));
+        when(analysisService.markRetrying(analysis, "clone failed")).thenReturn(Mono.just(analysis));
+        when(analysisJobRepository.retryLater(eq(ANALYSIS_ID), anyString(), any(), any())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then
+        verify(analysisJobRepository, timeout(5000))
+                .retryLater(eq(ANALYSIS_ID), anyString(), eq(Duration.ofSeconds(60)), eq("clone failed"));
+    }
+
+    @Test
+    void shouldMarkAnalysisFailedOnLastAttempt() {
+        // Given the last allowed attempt of an analysis that fails again
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        IllegalStateException failure = new IllegalStateException("clone failed");
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 3));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED)).thenReturn(Mono.just(analysis));
+        when(analysisService.executeAnalysis(analysis)).thenReturn(Mono.error(failure));
+        when(analysisService.markFailed(analysis, failure)).thenReturn(Mono.just(analysis));
+        when(analysisJobRepository.complete(eq(ANALYSIS_ID), anyString())).thenReturn(Mono.empty());
+
+        // When
+        worker.start();
+
+        // Then
+        verify(analysisJobRepository, timeout(5000)).complete(eq(ANALYSIS_ID), anyString());
+        verify(analysisService).markFailed(analysis, failure);
+        verify(analysisJobRepository, never()).retryLater(any(), any(), any(), any());
+    }
+
+    @Test
+    void shouldStopPipelineWhenLeaseIsLost() {
+        // Given a long running analysis whose lease is taken over by another worker
+        ReflectionTestUtils.setField(worker, "heartbeatInterval", Duration.ofMillis(50));
+        CodeAnalysis analysis = analysis(AnalysisStatus.QUEUED);
+        AtomicBoolean pipelineCancelled = new AtomicBoolean();
+        claimOnce(new ClaimedJob(ANALYSIS_ID, 1));
+        when(analysisRepository.findById(ANALYSIS_ID)).thenReturn(Mono.just(analysis));
+        when(analysisService.transition(analysis, AnalysisStatus.STARTED)).thenReturn(Mono.just(analysis));
+        when(analysisService.executeAnalysis(analysis))
+                .thenReturn(Mono.<CodeAnalysis>never().doOnCancel(() -> pipelineCancelled.set(true)));
+        when(analysisJobRepository.heartbeat(eq(ANALYSIS_ID), anyString(), any()))
+                .thenReturn(Mono.just(true), Mono.just(false));
+
+        // When
+        worker.start();
+
+        // Then the pipeline is disposed and the job is left to its new owner
+        await().atMost(Duration.ofSeconds(5)).untilTrue(pipelineCancelled);
+        await().atMost(Duration.ofSeconds(5)).until(() -> worker.getActiveJobs() == 0);
+        verify(analysisJobRepository, never()).complete(any(), any());
+        verify(analysisJobRepository, never()).retryLater(any(), any(), any(), any());
+    }
+
+    private void claimOnce(ClaimedJob job) {
+        when(analysisJobRepository.claim(anyString(), anyInt(), any()))
+                .thenReturn(Flux.just(job))
+                .thenReturn(Flux.empty());
+    }
+
+    private static CodeAnalysis analysis(AnalysisStatus status) {
+        CodeAnalysis analysis = new CodeAnalysis(ANALYSIS_ID, "https://github.com/spring-projects/spring-demo",
+                "main", status.name(), LocalDateTime.now());
+        analysis.markNotNew();
+        return analysis;
+    }
+}
@@ -0,0 +1,104 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CacheStatistics;
+import com.neuralcode.insight.dto.FileMetrics;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlobMetricsCacheTest {
+
+    private static final ObjectId BLOB_ID = ObjectId.fromString("0123456789abcdef0123456789abcdef01234567");
+
+    @TempDir
+    Path tempDir;
+
+    private Path logFile;
+
+    private BlobMetricsCache blobMetricsCache;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        logFile = tempDir.resolve("blob-metrics.log");
+        blobMetricsCache = newCache(2_097_152L);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        blobMetricsCache.shutdown();
+    }
+
+    @Test
+    void shouldServeMetricsUnderRequestedPathAfterRestart() throws IOException {
+        // Given
+        blobMetricsCache.put(BLOB_ID, new FileMetrics("a/Demo.java", 120, 8, 5, 2, 1, 1, 1));
+        blobMetricsCache.shutdown();
+
+        // When
+        blobMetricsCache = newCache(2_097_152L);
+        FileMetrics hit = blobMetricsCache.get(BLOB_ID, "b/Copy.java");
+        FileMetrics miss = blobMetricsCache.get(ObjectId.zeroId(), "b/Other.java");
+
+        // Then
+        assertThat(hit).isEqualTo(new FileMetrics("b/Copy.java", 120, 8, 5, 2, 1, 1, 1));
+        assertThat(miss).isNull();
+        CacheStatistics statistics = blobMetricsCache.statistics();
+        assertThat(statistics.size()).isEqualTo(1);
+        assertThat(statistics.hitCount()).isEqualTo(1);
+        assertThat(statistics.missCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreTornRecordAtEndOfLog() throws IOException {
+        // Given
+        blobMetricsCache.put(BLOB_ID, new FileMetrics("Demo.java", 120, 8, 5, 2, 1, 1, 1));
+        blobMetricsCache.shutdown();
+        Files.write(logFile, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        blobMetricsCache = newCache(2_097_152L);
+        ObjectId other = ObjectId.fromString("89abcdef0123456789abcdef0123456789abcdef");
+        blobMetricsCache.put(other, new FileMetrics("Other.java", 10, 1, 1, 0, 0, 0, 0));
+        blobMetricsCache.shutdown();
+        blobMetricsCache = newCache(2_097_152L);
+
+        // Then
+        assertThat(blobMetricsCache.get(BLOB_ID, "Demo.java")).isNotNull();
+        assertThat(blobMetricsCache.get(other, "Other.java")).isNotNull();
+    }
+
+    @Test
+    void shouldDiscardLogWrittenWithOtherCalculatorSettings() throws IOException {
+        // Given
+        blobMetricsCache.put(BLOB_ID, new FileMetrics("Demo.java", 120, 8, 5, 2, 1, 1, 1));
+        blobMetricsCache.shutdown();
+
+        // When
+        blobMetricsCache = newCache(1024L);
+
+        // Then
+        assertThat(blobMetricsCache.get(BLOB_ID, "Demo.java")).isNull();
+        assertThat(blobMetricsCache.statistics().size()).isZero();
+    }
+
+    private BlobMetricsCache newCache(long maxFileBytes) throws IOException {
+        JavaMetricsCalculator calculator = new JavaMetricsCalculator();
+        ReflectionTestUtils.setField(calculator, "maxFileBytes", maxFileBytes);
+        BlobMetricsCache cache = new BlobMetricsCache(calculator);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "logPath", logFile.toString());
+        ReflectionTestUtils.setField(cache, "maxEntries", 100L);
+        cache.initialize();
+        return cache;
+    }
+}
@@ -0,0 +1,101 @@
+package com.neuralcode.insight.service;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockingSchedulersTest {
+
+    private final BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+
+    @AfterEach
+    void tearDown() {
+        blockingSchedulers.shutdown();
+    }
+
+    @Test
+    void shouldRunNoMoreThanMaxConcurrentTasksAtOnce() {
+        // Given
+        ReflectionTestUtils.setField(blockingSchedulers, "maxConcurrent", 2);
+        blockingSchedulers.initialize();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+
+        // When
+        Flux.range(0, 8)
+                .flatMap(i -> blockingSchedulers.fromCallable(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    TimeUnit.MILLISECONDS.sleep(50);
+                    running.decrementAndGet();
+                    return i;
+                }), 8)
+                .then()
+                .block(Duration.ofSeconds(10));
+
+        // Then
+        assertThat(peak.get()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldUseVirtualThreadsOnlyWhenTheRuntimeHasThem() {
+        // Given
+        ReflectionTestUtils.setField(blockingSchedulers, "mode", BlockingSchedulers.Mode.VIRTUAL_THREADS);
+        blockingSchedulers.initialize();
+        boolean runtimeHasVirtualThreads = Runtime.version().feature() >= 21;
+
+        // When
+        Scheduler scheduler = blockingSchedulers.newScheduler("test", 1);
+        String threadName = Mono.fromCallable(() -> Thread.currentThread().getName())
+                .subscribeOn(scheduler)
+                .block(Duration.ofSeconds(5));
+        scheduler.dispose();
+
+        // Then
+        assertThat(blockingSchedulers.isVirtual()).isEqualTo(runtimeHasVirtualThreads);
+        assertThat(threadName).startsWith("test-");
+    }
+
+    @Test
+    void shouldWarnAtStartupWhenVirtualThreadsAreUnavailable() {
+        // Given
+        ListAppender<ILoggingEvent> appender = new ListAppender<>();
+        Logger logger = (Logger) LoggerFactory.getLogger(BlockingSchedulers.class);
+        appender.start();
+        logger.addAppender(appender);
+        ReflectionTestUtils.setField(blockingSchedulers, "mode", BlockingSchedulers.Mode.VIRTUAL_THREADS);
+
+        // When
+        try {
+            blockingSchedulers.initialize();
+        } finally {
+            logger.detachAppender(appender);
+        }
+
+        // Then
+        List<String> warnings = appender.list.stream()
+                .filter(event -> event.getLevel() == Level.WARN)
+                .map(ILoggingEvent::getFormattedMessage)
+                .toList();
+        if (blockingSchedulers.isVirtual()) {
+            assertThat(warnings).isEmpty();
+        } else {
+            assertThat(warnings).singleElement().asString()
+                    .contains("virtual-threads", "Java " + Runtime.version().feature(), "bounded elastic");
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.ArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CheckoutArchiverTest {
+
+    private static final String LONG_PATH = "src/main/java/" + "nested/".repeat(15) + "Deep.java";
+
+    @TempDir
+    Path checkout;
+
+    private CheckoutArchiver checkoutArchiver;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        checkoutArchiver = new CheckoutArchiver();
+        ReflectionTestUtils.setField(checkoutArchiver, "compressionLevel", 1);
+
+        Files.createDirectories(checkout.resolve(LONG_PATH).getParent());
+        Files.writeString(checkout.resolve(LONG_PATH), "class Deep {}");
+        Files.writeString(checkout.resolve("README.md"), "# Demo\n".repeat(500));
+        Files.createDirectories(checkout.resolve(".git/refs/tags"));
+    }
+
+    @Test
+    void shouldWriteArchiveThatUnpacksAsSingleTarGz() throws Exception {
+        // Given
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        // When
+        checkoutArchiver.write(checkout, archive);
+
+        // Then
+        List<String> names = new ArrayList<>();
+        try (TarArchiveInputStream tar = new TarArchiveInputStream(
+                new GzipCompressorInputStream(new ByteArrayInputStream(archive.toByteArray()), true))) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextEntry()) != null) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).contains(LONG_PATH, "README.md", ".git/refs/tags/");
+    }
+
+    @Test
+    void shouldReadSingleFileFromItsIndexedMember() throws Exception {
+        // Given
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        List<ArchiveEntry> index = checkoutArchiver.decodeIndex(
+                checkoutArchiver.encodeIndex(checkoutArchiver.write(checkout, archive)));
+        ArchiveEntry deep = index.stream().filter(entry -> entry.path().equals(LONG_PATH)).findFirst().orElseThrow();
+
+        // When
+        byte[] member = new byte[(int) deep.compressedLength()];
+        System.arraycopy(archive.toByteArray(), (int) deep.offset(), member, 0, member.length);
+        String content;
+        try (InputStream file = checkoutArchiver.openMember(new ByteArrayInputStream(member))) {
+            content = new String(file.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        // Then
+        assertThat(index).extracting(ArchiveEntry::path).containsExactlyInAnyOrder(LONG_PATH, "README.md");
+        assertThat(deep.sizeBytes()).isEqualTo(13);
+        assertThat(content).isEqualTo("class Deep {}");
+    }
+
+    @Test
+    void shouldRestoreCheckoutFromSeparatelyUnpackedSegments(@TempDir Path target) throws Exception {
+        // Given
+        for (int i = 0; i < 20; i++) {
+            Files.writeString(checkout.resolve("File" + i + ".java"), ("class File" + i + " {}\n").repeat(50));
+        }
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        List<ArchiveEntry> index = checkoutArchiver.write(checkout, archive);
+        byte[] bytes = archive.toByteArray();
+
+        // When
+        List<Long> starts = CheckoutArchiver.segmentStarts(index, 4);
+        long entries = 0;
+        for (int segment = 0; segment < starts.size(); segment++) {
+            int from = starts.get(segment).intValue();
+            int to = segment + 1 < starts.size() ? starts.get(segment + 1).intValue() : bytes.length;
+            entries += checkoutArchiver.unpack(new ByteArrayInputStream(bytes, from, to - from), target);
+        }
+
+        // Then
+        assertThat(starts).hasSize(4).startsWith(0L);
+        assertThat(entries).isGreaterThanOrEqualTo(index.size());
+        assertThat(target.resolve(".git/refs/tags")).isDirectory();
+        assertThat(Files.readString(target.resolve(LONG_PATH))).isEqualTo("class Deep {}");
+        assertThat(Files.readString(target.resolve("File7.java"))).isEqualTo("class File7 {}\n".repeat(50));
+    }
+
+    @Test
+    void shouldRefuseToWriteThroughUnpackedSymbolicLink(@TempDir Path target, @TempDir Path outside)
+            throws Exception {
+        // Given an archive whose link points outside the target and a file placed beneath it
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(archive)) {
+            TarArchiveOutputStream tar = new TarArchiveOutputStream(gzip, TarConstants.DEFAULT_RCDSIZE);
+            TarArchiveEntry link = new TarArchiveEntry("escape", TarConstants.LF_SYMLINK);
+            link.setLinkName(outside.toString());
+            tar.putArchiveEntry(link);
+            tar.closeArchiveEntry();
+            byte[] content = "owned".getBytes(StandardCharsets.UTF_8);
+            TarArchiveEntry file = new TarArchiveEntry("escape/owned.txt");
+            file.setSize(content.length);
+            tar.putArchiveEntry(file);
+            tar.write(content);
+            tar.closeArchiveEntry();
+            tar.flush();
+            gzip.write(new byte[2 * TarConstants.DEFAULT_RCDSIZE]);
+        }
+
+        // When & Then
+        assertThatThrownBy(() -> checkoutArchiver.unpack(new ByteArrayInputStream(archive.toByteArray()), target))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("escape/owned.txt");
+        assertThat(outside.resolve("owned.txt")).doesNotExist();
+    }
+}
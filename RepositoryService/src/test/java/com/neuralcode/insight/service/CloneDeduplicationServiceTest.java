@@ -0,0 +1,101 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.CloneOptions;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloneDeduplicationServiceTest {
+
+    private final CloneDeduplicationService cloneDeduplicationService = new CloneDeduplicationService();
+
+    private final CloneKey key = new CloneKey("https://github.com/a/b", "main", "abc123", CloneOptions.defaults());
+
+    @Test
+    void shouldShareInFlightCloneBetweenIdenticalRequests() {
+        // Given
+        AtomicInteger clones = new AtomicInteger();
+        Sinks.One<String> location = Sinks.one();
+
+        Mono<CloneResult> first = cloneDeduplicationService.cloneOnce(key, "first", () -> {
+            clones.incrementAndGet();
+            return location.asMono();
+        });
+        Mono<CloneResult> second = cloneDeduplicationService.cloneOnce(key, "second", () -> {
+            clones.incrementAndGet();
+            return Mono.just("/tmp/other");
+        });
+
+        // When & Then
+        StepVerifier.create(Mono.zip(first, second))
+                .then(() -> location.tryEmitValue("/tmp/shared"))
+                .assertNext(results -> {
+                    assertThat(results.getT1()).isEqualTo(new CloneResult("first", "/tmp/shared"));
+                    assertThat(results.getT2()).isEqualTo(results.getT1());
+                })
+                .verifyComplete();
+
+        assertThat(clones).hasValue(1);
+        assertThat(cloneDeduplicationService.inFlightCount()).isZero();
+    }
+
+    @Test
+    void shouldKeepSharedCloneRunningWhileAnyCallerWaits() {
+        // Given
+        AtomicBoolean cloneCancelled = new AtomicBoolean();
+        Sinks.One<String> location = Sinks.one();
+        Disposable first = cloneDeduplicationService.cloneOnce(key, "first",
+                () -> location.asMono().doOnCancel(() -> cloneCancelled.set(true))).subscribe();
+        Mono<CloneResult> second = cloneDeduplicationService.cloneOnce(key, "second", () -> Mono.just("/tmp/other"));
+
+        // When & Then
+        StepVerifier.create(second)
+                .then(first::dispose)
+                .then(() -> location.tryEmitValue("/tmp/shared"))
+                .expectNext(new CloneResult("first", "/tmp/shared"))
+                .verifyComplete();
+        assertThat(cloneCancelled).isFalse();
+    }
+
+    @Test
+    void shouldCancelSharedCloneWhenEveryCallerHasLeft() {
+        // Given
+        AtomicInteger clones = new AtomicInteger();
+        AtomicBoolean cloneCancelled = new AtomicBoolean();
+        Supplier<Mono<String>> clone = () -> {
+            clones.incrementAndGet();
+            return Mono.<String>never().doOnCancel(() -> cloneCancelled.set(true));
+        };
+        Disposable first = cloneDeduplicationService.cloneOnce(key, "first", clone).subscribe();
+        Disposable second = cloneDeduplicationService.cloneOnce(key, "second", clone).subscribe();
+
+        // When
+        first.dispose();
+        assertThat(cloneCancelled).isFalse();
+        second.dispose();
+
+        // Then
+        assertThat(clones).hasValue(1);
+        assertThat(cloneCancelled).isTrue();
+        assertThat(cloneDeduplicationService.inFlightCount()).isZero();
+    }
+
+    @Test
+    void shouldStartNewCloneOnceFlightHasFinished() {
+        // When
+        CloneResult first = cloneDeduplicationService.cloneOnce(key, "first", () -> Mono.just("/tmp/a")).block();
+        CloneResult second = cloneDeduplicationService.cloneOnce(key, "second", () -> Mono.just("/tmp/b")).block();
+
+        // Then
+        assertThat(first.ownerAnalysisId()).isEqualTo("first");
+        assertThat(second.ownerAnalysisId()).isEqualTo("second");
+    }
+}
@@ -0,0 +1,79 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.CloneCapacityExceededException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class CloneExecutorTest {
+
+    private CloneExecutor cloneExecutor;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        cloneExecutor = new CloneExecutor(new BlockingSchedulers());
+        ReflectionTestUtils.setField(cloneExecutor, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(cloneExecutor, "maxPerHost", 2);
+        ReflectionTestUtils.setField(cloneExecutor, "maxQueued", 1);
+        ReflectionTestUtils.setField(cloneExecutor, "hostLimits", Map.of("github.com", 1));
+        cloneExecutor.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        cloneExecutor.shutdown();
+    }
+
+    @Test
+    void shouldQueueClonesBeyondHostLimitAndRejectWhenQueueIsFull() {
+        // Given
+        Disposable running = cloneExecutor.execute("https://github.com/a/b", this::blockUntilReleased).subscribe();
+        Disposable queued = cloneExecutor.execute("https://github.com/a/c", this::blockUntilReleased).subscribe();
+        await().atMost(Duration.ofSeconds(5)).until(() -> cloneExecutor.getQueuedCount() == 1);
+
+        // When & Then
+        assertThat(cloneExecutor.getActiveCount()).isEqualTo(1);
+        StepVerifier.create(cloneExecutor.execute("https://github.com/a/d", () -> "rejected"))
+                .expectError(CloneCapacityExceededException.class)
+                .verify();
+
+        StepVerifier.create(cloneExecutor.execute("https://gitlab.com/a/b", () -> "other host"))
+                .expectNext("other host")
+                .verifyComplete();
+
+        running.dispose();
+        queued.dispose();
+    }
+
+    @Test
+    void shouldHandSlotToWaiterWhenCloneFinishes() {
+        // Given
+        cloneExecutor.execute("https://github.com/a/b", this::blockUntilReleased).subscribe();
+
+        // When & Then
+        StepVerifier.create(cloneExecutor.execute("https://github.com/a/c", () -> "second"))
+                .then(release::countDown)
+                .expectNext("second")
+                .verifyComplete();
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> cloneExecutor.getActiveCount() == 0);
+    }
+
+    private String blockUntilReleased() throws InterruptedException {
+        release.await();
+        return "done";
+    }
+}
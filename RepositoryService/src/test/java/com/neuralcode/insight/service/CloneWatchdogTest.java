@@ -0,0 +1,91 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.RepositoryCloneException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CloneWatchdogTest {
+
+    private final CloneWatchdog cloneWatchdog = new CloneWatchdog();
+
+    private final CloneProgressMonitor progressMonitor =
+            new CloneProgressMonitor("test-id", new AnalysisEventPublisher());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cloneWatchdog, "stallTimeout", Duration.ofMillis(300));
+        ReflectionTestUtils.setField(cloneWatchdog, "checkInterval", Duration.ofMillis(50));
+        progressMonitor.markStarted();
+    }
+
+    @Test
+    void shouldAbortCloneWithoutProgress() {
+        // When & Then
+        StepVerifier.create(cloneWatchdog.watch(Mono.never(), progressMonitor, "test-id", "https://github.com/a/b"))
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(RepositoryCloneException.class)
+                        .hasMessageContaining("stalled"))
+                .verify(Duration.ofSeconds(5));
+        assertThat(progressMonitor.isCancelled()).isTrue();
+    }
+
+    @Test
+    void shouldLetProgressingCloneRunPastStallTimeout() {
+        // Given
+        progressMonitor.beginTask("Receiving objects", 10);
+        Mono<String> clone = Flux.interval(Duration.ofMillis(100))
+                .take(10)
+                .doOnNext(tick -> progressMonitor.update(1))
+                .then(Mono.just("done"));
+
+        // When & Then
+        StepVerifier.create(cloneWatchdog.watch(clone, progressMonitor, "test-id", "https://github.com/a/b"))
+                .expectNext("done")
+                .verifyComplete();
+        assertThat(progressMonitor.isCancelled()).isFalse();
+    }
+
+    @Test
+    void shouldCountGrowingPackFilesAsProgress(@TempDir Path mirror) throws Exception {
+        // Given a mirror fetch that writes pack data without reporting JGit progress
+        Path pack = Files.createDirectories(mirror.resolve("objects/pack")).resolve("incoming.pack");
+        progressMonitor.samplePacksIn(mirror);
+        Mono<String> fetch = Flux.interval(Duration.ofMillis(100))
+                .take(10)
+                .doOnNext(tick -> {
+                    try {
+                        Files.write(pack, new byte[1024], StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                })
+                .then(Mono.just("fetched"));
+
+        // When & Then
+        StepVerifier.create(cloneWatchdog.watch(fetch, progressMonitor, "test-id", "https://github.com/a/b"))
+                .expectNext("fetched")
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldScaleCeilingWithAnnouncedObjectsUpToMaximum() {
+        // When & Then
+        assertThat(cloneWatchdog.ceiling(0)).isEqualTo(Duration.ofMinutes(5));
+        assertThat(cloneWatchdog.ceiling(120_000)).isEqualTo(Duration.ofMinutes(15));
+        assertThat(cloneWatchdog.ceiling(100_000_000)).isEqualTo(Duration.ofHours(2));
+    }
+}
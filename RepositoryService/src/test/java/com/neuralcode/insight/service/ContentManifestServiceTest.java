@@ -0,0 +1,121 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.ManifestEntry;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import com.neuralcode.insight.repository.ManifestRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.DataOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ContentManifestServiceTest {
+
+    @TempDir
+    Path workspaceRoot;
+
+    private ContentManifestService contentManifestService;
+
+    @BeforeEach
+    void setUp() {
+        WorkspaceManager workspaceManager = new WorkspaceManager(mock(CodeAnalysisRepository.class),
+                mock(AnalysisCache.class), new AnalysisEventPublisher());
+        BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+        blockingSchedulers.initialize();
+        contentManifestService = new ContentManifestService(workspaceManager, mock(ManifestRepository.class),
+                blockingSchedulers);
+        ReflectionTestUtils.setField(contentManifestService, "enabled", true);
+        ReflectionTestUtils.setField(contentManifestService, "parallelism", 2);
+        ReflectionTestUtils.setField(contentManifestService, "mmapThresholdBytes", 1024L);
+        contentManifestService.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        contentManifestService.shutdown();
+    }
+
+    @Test
+    void shouldHashEveryFileOutsideGitDirectory() throws Exception {
+        // Given
+        Path checkout = Files.createDirectories(workspaceRoot.resolve("demo-main-1"));
+        Files.createDirectories(checkout.resolve(".git"));
+        Files.writeString(checkout.resolve(".git/HEAD"), "ref: refs/heads/main");
+        Files.createDirectories(checkout.resolve("src"));
+        Files.writeString(checkout.resolve("src/Small.java"), "class Small {}");
+        byte[] large = new byte[200_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) i;
+        }
+        Files.write(checkout.resolve("large.bin"), large);
+
+        // When
+        Path manifest = contentManifestService.build("id-1", checkout.toString()).block();
+        List<ManifestEntry> entries = contentManifestService.readEntries(manifest).collectList().block();
+
+        // Then
+        assertThat(manifest.getParent()).isEqualTo(workspaceRoot);
+        assertThat(entries).containsExactlyInAnyOrder(
+                new ManifestEntry("src/Small.java", 14, sha256("class Small {}".getBytes())),
+                new ManifestEntry("large.bin", large.length, sha256(large)));
+    }
+
+    @Test
+    void shouldRoundTripNonAsciiPathLongerThanSixteenBits() throws Exception {
+        // Given a non-ASCII path too long for the 16-bit length of the first manifest format
+        String longPath = "ü".repeat(40_000) + "/Main.java";
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(new byte[0]);
+        Path manifest = workspaceRoot.resolve("long.manifest");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(manifest))) {
+            ContentManifestService.writeHeader(output);
+            ContentManifestService.writeEntry(output, new ContentManifestService.HashedFile(
+                    longPath.getBytes(StandardCharsets.UTF_8), 0, digest));
+            ContentManifestService.writeEntry(output, new ContentManifestService.HashedFile(
+                    "README.md".getBytes(StandardCharsets.UTF_8), 7, digest));
+        }
+
+        // When
+        List<ManifestEntry> entries = contentManifestService.readEntries(manifest).collectList().block();
+
+        // Then the entry after the long path is still decoded in sync
+        String hex = HexFormat.of().formatHex(digest);
+        assertThat(entries).containsExactly(
+                new ManifestEntry(longPath, 0, hex),
+                new ManifestEntry("README.md", 7, hex));
+    }
+
+    @Test
+    void shouldStillReadManifestsWithSixteenBitPathLengths() throws Exception {
+        // Given a manifest written before path lengths took 32 bits
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(new byte[0]);
+        Path manifest = workspaceRoot.resolve("v1.manifest");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(manifest))) {
+            output.write(new byte[]{'N', 'C', 'I', 'M', 1, 1});
+            output.writeShort(9);
+            output.write("README.md".getBytes(StandardCharsets.UTF_8));
+            output.writeLong(7);
+            output.write(digest);
+        }
+
+        // When
+        List<ManifestEntry> entries = contentManifestService.readEntries(manifest).collectList().block();
+
+        // Then
+        assertThat(entries).containsExactly(new ManifestEntry("README.md", 7, HexFormat.of().formatHex(digest)));
+    }
+
+    private static String sha256(byte[] content) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+}
@@ -0,0 +1,59 @@
+package com.neuralcode.insight.service;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Generates local git repositories of a chosen size to clone through {@code file://} URLs,
+ * for benchmarks and load tests that must not depend on the network.
+ */
+public final class FixtureRepositories {
+
+    public static final String BRANCH = "main";
+
+    private static final int FILES_PER_PACKAGE = 50;
+
+    private FixtureRepositories() {
+    }
+
+    /**
+     * Creates a repository with {@code files} Java sources spread over packages of fifty,
+     * committed in {@code commits} commits that each rewrite every file, and returns its
+     * {@code file://} URL.
+     */
+    public static String create(Path directory, int files, int commits) throws IOException, GitAPIException {
+        try (Git git = Git.init().setDirectory(directory.toFile()).setInitialBranch(BRANCH).call()) {
+            for (int commit = 0; commit < commits; commit++) {
+                for (int file = 0; file < files; file++) {
+                    Path source = directory.resolve("src/main/java/fixture/p" + file / FILES_PER_PACKAGE
+                            + "/Type" + file + ".java");
+                    Files.createDirectories(source.getParent());
+                    Files.writeString(source, source(file / FILES_PER_PACKAGE, file, commit));
+                }
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("Revision " + commit).setSign(false).call();
+            }
+        }
+        return directory.toUri().toString();
+    }
+
+    private static String source(int pkg, int file, int revision) {
+        StringBuilder source = new StringBuilder()
+                .append("package fixture.p").append(pkg).append(";\n\n")
+                .append("public class Type").append(file).append(" {\n\n")
+                .append("    private int revision = ").append(revision).append(";\n");
+        for (int method = 0; method < 5; method++) {
+            source.append("\n    public int method").append(method).append("(int value) {\n")
+                    .append("        if (value > ").append(method).append(") {\n")
+                    .append("            return value * revision;\n")
+                    .append("        }\n")
+                    .append("        return value + ").append(method).append(";\n")
+                    .append("    }\n");
+        }
+        return source.append("}\n").toString();
+    }
+}
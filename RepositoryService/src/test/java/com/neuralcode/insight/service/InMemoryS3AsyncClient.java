@@ -0,0 +1,128 @@
+package com.neuralcode.insight.service;
+
+import reactor.core.publisher.Flux;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stand-in for the object store that keeps objects in memory. Request bodies and response
+ * transformers are driven the way the SDK drives them, so the code under test streams its
+ * uploads and downloads exactly as it would against S3, including ranged reads.
+ */
+class InMemoryS3AsyncClient implements S3AsyncClient {
+
+    private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failures = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> puts = new ConcurrentHashMap<>();
+
+    /**
+     * Makes the next {@code times} uploads of the key fail as S3 does when throttling.
+     */
+    void failPuts(String key, int times) {
+        failures.put(key, new AtomicInteger(times));
+    }
+
+    int putCount(String key) {
+        AtomicInteger count = puts.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    byte[] object(String key) {
+        return objects.get(key);
+    }
+
+    Set<String> keys() {
+        return objects.keySet();
+    }
+
+    @Override
+    public CompletableFuture<PutObjectResponse> putObject(PutObjectRequest request, AsyncRequestBody body) {
+        puts.computeIfAbsent(request.key(), key -> new AtomicInteger()).incrementAndGet();
+        AtomicInteger remainingFailures = failures.get(request.key());
+        if (remainingFailures != null && remainingFailures.getAndDecrement() > 0) {
+            return CompletableFuture.failedFuture(S3Exception.builder().statusCode(503).message("Slow Down").build());
+        }
+        return Flux.from(body)
+                .reduce(new ByteArrayOutputStream(), (content, buffer) -> {
+                    byte[] bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    content.writeBytes(bytes);
+                    return content;
+                })
+                .map(content -> {
+                    objects.put(request.key(), content.toByteArray());
+                    return PutObjectResponse.builder().build();
+                })
+                .toFuture();
+    }
+
+    @Override
+    public <T> CompletableFuture<T> getObject(GetObjectRequest request,
+                                              AsyncResponseTransformer<GetObjectResponse, T> transformer) {
+        byte[] object = objects.get(request.key());
+        if (object == null) {
+            return CompletableFuture.failedFuture(NoSuchKeyException.builder().message(request.key()).build());
+        }
+        byte[] content = request.range() == null ? object : slice(object, request.range());
+
+        CompletableFuture<T> result = transformer.prepare();
+        transformer.onResponse(GetObjectResponse.builder().contentLength((long) content.length).build());
+        transformer.onStream(SdkPublisher.adapt(Flux.just(ByteBuffer.wrap(content))));
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<HeadObjectResponse> headObject(HeadObjectRequest request) {
+        byte[] object = objects.get(request.key());
+        if (object == null) {
+            return CompletableFuture.failedFuture(NoSuchKeyException.builder().message(request.key()).build());
+        }
+        return CompletableFuture.completedFuture(
+                HeadObjectResponse.builder().contentLength((long) object.length).build());
+    }
+
+    @Override
+    public CompletableFuture<DeleteObjectsResponse> deleteObjects(DeleteObjectsRequest request) {
+        request.delete().objects().stream().map(ObjectIdentifier::key).forEach(objects::remove);
+        return CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build());
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    // Ranges come as "bytes=first-last" or "bytes=first-"
+    private static byte[] slice(byte[] object, String range) {
+        String[] bounds = range.substring("bytes=".length()).split("-", -1);
+        int first = Integer.parseInt(bounds[0]);
+        int last = bounds[1].isEmpty() ? object.length - 1 : Math.min(Integer.parseInt(bounds[1]), object.length - 1);
+        return Arrays.copyOfRange(object, first, last + 1);
+    }
+}
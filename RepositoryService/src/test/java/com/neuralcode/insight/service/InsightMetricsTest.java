@@ -0,0 +1,73 @@
+package com.neuralcode.insight.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class InsightMetricsTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private Scheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        InsightMetrics.monitorSchedulers(registry);
+        // Idle workers are evicted after a second and replaced by new executors when needed
+        scheduler = Schedulers.newBoundedElastic(2, 100, "churn", 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+        Schedulers.removeExecutorServiceDecorator(InsightMetrics.SCHEDULER_DECORATOR);
+    }
+
+    @Test
+    void shouldKeepSchedulerMetersBoundedWhileWorkersAreReplaced() {
+        // Given the meters registered by the first set of workers
+        runTasksUntilWorkersAreEvicted();
+        List<Meter.Id> meters = schedulerMeters();
+
+        // When the evicted workers are replaced twice more
+        runTasksUntilWorkersAreEvicted();
+        runTasksUntilWorkersAreEvicted();
+
+        // Then the new executors report into the same meters
+        assertThat(schedulerMeters()).containsExactlyInAnyOrderElementsOf(meters);
+        assertThat(meters).allSatisfy(id -> assertThat(id.getTag("executor")).isNull());
+        assertThat(registry.get("executor.completed").tags("name", "reactor.scheduler").functionCounter().count())
+                .isEqualTo(6);
+        assertThat(registry.get("executor").tags("name", "reactor.scheduler").timer().count()).isEqualTo(6);
+    }
+
+    private void runTasksUntilWorkersAreEvicted() {
+        Flux.range(0, 2)
+                .flatMap(i -> Mono.delay(Duration.ofMillis(50), scheduler))
+                .then()
+                .block(Duration.ofSeconds(5));
+        await().atMost(Duration.ofSeconds(10)).until(() ->
+                registry.get("executor.pool.size").tags("name", "reactor.scheduler").gauge().value() == 0);
+    }
+
+    private List<Meter.Id> schedulerMeters() {
+        return registry.getMeters().stream()
+                .map(Meter::getId)
+                .filter(id -> Objects.requireNonNullElse(id.getTag("scheduler"), "").contains("churn"))
+                .toList();
+    }
+}
@@ -0,0 +1,57 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.FileMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JavaMetricsCalculatorTest {
+
+    private final JavaMetricsCalculator metricsCalculator = new JavaMetricsCalculator();
+
+    @Test
+    void shouldClassifyLinesAndCountDeclarations() throws Exception {
+        // Given
+        String source = """
+                package demo;
+
+                /*
+                 * Not a class Fake { } or void fake() in a comment
+                 */
+                public class Sample implements Runnable {
+                    private final String text = "class Quoted";
+
+                    public Sample() {
+                    }
+
+                    @Override
+                    public void run() {
+                        if (text.isEmpty()) { // trailing comment
+                            helper(text);
+                        }
+                    }
+
+                    private static <T> java.util.List<T> helper(T value) {
+                        return java.util.List.of(value);
+                    }
+
+                    enum Mode { ON, OFF }
+                }
+                """;
+
+        // When
+        FileMetrics metrics = metricsCalculator.measure("demo/Sample.java", source.length(),
+                new BufferedReader(new StringReader(source)));
+
+        // Then
+        assertThat(metrics.totalLines()).isEqualTo(24);
+        assertThat(metrics.blankLines()).isEqualTo(5);
+        assertThat(metrics.commentLines()).isEqualTo(3);
+        assertThat(metrics.codeLines()).isEqualTo(16);
+        assertThat(metrics.classCount()).isEqualTo(2);
+        assertThat(metrics.methodCount()).isEqualTo(3);
+    }
+}
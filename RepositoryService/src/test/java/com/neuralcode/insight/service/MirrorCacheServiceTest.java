@@ -0,0 +1,116 @@
+package com.neuralcode.insight.service;
+
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MirrorCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MirrorCacheService mirrorCacheService;
+
+    private Path origin;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        origin = tempDir.resolve("origin");
+        try (Git git = Git.init().setDirectory(origin.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(origin.resolve("README.md"), "first");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("first").setSign(false).call();
+        }
+
+        mirrorCacheService = new MirrorCacheService(new RepositoryUrlCanonicalizer());
+        ReflectionTestUtils.setField(mirrorCacheService, "enabled", true);
+        ReflectionTestUtils.setField(mirrorCacheService, "mirrorRoot", tempDir.resolve("mirrors").toString());
+        ReflectionTestUtils.setField(mirrorCacheService, "maxDiskBytes", Long.MAX_VALUE);
+        mirrorCacheService.initialize();
+    }
+
+    @Test
+    void shouldReuseMirrorAndFetchNewCommits() throws Exception {
+        // Given
+        String originUri = origin.toUri().toString();
+        String firstMirror = mirrorCacheService.withMirror(originUri, mirrorUri -> mirrorUri);
+
+        try (Git git = Git.open(origin.toFile())) {
+            Files.writeString(origin.resolve("README.md"), "second");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("second").setSign(false).call();
+        }
+
+        // When
+        Path checkout = tempDir.resolve("checkout");
+        String secondMirror = mirrorCacheService.withMirror(originUri, mirrorUri -> {
+            try (Git ignored = Git.cloneRepository().setURI(mirrorUri).setDirectory(checkout.toFile())
+                    .setBranch("main").call()) {
+                return mirrorUri;
+            }
+        });
+
+        // Then
+        assertThat(secondMirror).isEqualTo(firstMirror);
+        assertThat(Files.readString(checkout.resolve("README.md"))).isEqualTo("second");
+    }
+
+    @Test
+    void shouldStopWaitingForMirrorLockWhenCloneIsCancelled() throws Exception {
+        // Given another clone holding the mirror
+        String originUri = origin.toUri().toString();
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> holder = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mirrorCacheService.withMirror(originUri, mirrorUri -> {
+                    holding.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException();
+                    }
+                    return mirrorUri;
+                });
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(holding.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CloneProgressMonitor progressMonitor = new CloneProgressMonitor("test-id", new AnalysisEventPublisher());
+        CompletableFuture<String> waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return mirrorCacheService.withMirror(originUri, progressMonitor,
+                        mirrorDirectory -> progressMonitor.markStarted(), mirrorUri -> mirrorUri);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        });
+
+        // When
+        Thread.sleep(200);
+        boolean startedWhileWaiting = progressMonitor.isStarted();
+        progressMonitor.cancel();
+
+        // Then
+        assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(InterruptedIOException.class);
+        assertThat(startedWhileWaiting).isFalse();
+        release.countDown();
+        assertThat(holder.get(10, TimeUnit.SECONDS)).isNotEmpty();
+    }
+}
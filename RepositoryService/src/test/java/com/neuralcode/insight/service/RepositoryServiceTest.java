@@ -1,17 +1,38 @@
 package com.neuralcode.insight.service;
 
+import com.neuralcode.insight.dto.AnalysisEvent;
+import com.neuralcode.insight.dto.CloneOptions;
+import com.neuralcode.insight.dto.CloneStrategy;
+import com.neuralcode.insight.exception.AnalysisCancelledException;
 import com.neuralcode.insight.exception.InvalidRepositoryUrlException;
 import com.neuralcode.insight.exception.RepositoryCloneException;
 import com.neuralcode.insight.exception.S3UploadException;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.observation.DefaultMeterObservationHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
 
@@ -21,9 +42,57 @@ class RepositoryServiceTest {
     @Mock
     private S3StorageService s3StorageService;
 
-    @InjectMocks
+    @Mock
+    private MirrorCacheService mirrorCacheService;
+
+    @Mock
+    private CodeAnalysisRepository analysisRepository;
+
+    @Mock
+    private AnalysisCache analysisCache;
+
+    @TempDir
+    Path workspaceRoot;
+
+    private WorkspaceManager workspaceManager;
+
+    private MeterRegistry meterRegistry;
+
     private RepositoryService repositoryService;
 
+    private final AnalysisEventPublisher eventPublisher = new AnalysisEventPublisher();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+        blockingSchedulers.initialize();
+        CloneExecutor cloneExecutor = new CloneExecutor(blockingSchedulers);
+        ReflectionTestUtils.setField(cloneExecutor, "maxConcurrent", 2);
+        ReflectionTestUtils.setField(cloneExecutor, "maxPerHost", 2);
+        ReflectionTestUtils.setField(cloneExecutor, "maxQueued", 2);
+        cloneExecutor.initialize();
+
+        workspaceManager = new WorkspaceManager(analysisRepository, analysisCache, new AnalysisEventPublisher());
+        ReflectionTestUtils.setField(workspaceManager, "workspaceRoot", workspaceRoot.toString());
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(workspaceManager, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(workspaceManager, "reaperInterval", Duration.ofHours(1));
+        workspaceManager.initialize();
+
+        meterRegistry = new SimpleMeterRegistry();
+        ObservationRegistry observationRegistry = ObservationRegistry.create();
+        observationRegistry.observationConfig().observationHandler(new DefaultMeterObservationHandler(meterRegistry));
+
+        repositoryService = new RepositoryService(mirrorCacheService, cloneExecutor, eventPublisher,
+                new RepositoryUrlCanonicalizer(), workspaceManager, new InsightMetrics(meterRegistry, observationRegistry),
+                blockingSchedulers, new CloneWatchdog());
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspaceManager.shutdown();
+    }
+
     @Test
     void shouldExtractProjectNameFromValidUrl() {
         // Given
@@ -59,6 +128,111 @@ class RepositoryServiceTest {
                 .verify();
     }
 
+    @Test
+    void shouldCloneOnlyRequestedDepthForShallowStrategy(@TempDir Path tempDir) throws Exception {
+        // Given
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            for (int i = 0; i < 3; i++) {
+                Files.writeString(tempDir.resolve("file.txt"), "revision " + i);
+                git.add().addFilepattern(".").call();
+                git.commit().setMessage("commit " + i).setSign(false).call();
+            }
+        }
+        CloneOptions shallow = CloneOptions.of(CloneStrategy.SHALLOW, 1);
+
+        // When
+        String location = repositoryService.cloneAndStoreRepository(
+                tempDir.toUri().toString(), "main", "test-id", shallow).block();
+
+        // Then
+        assertThat(Path.of(location)).startsWith(workspaceRoot);
+        assertThat(workspaceManager.checkoutCount()).isEqualTo(1);
+        try (Git clone = Git.open(new File(location))) {
+            assertThat(clone.log().call()).hasSize(1);
+        } finally {
+            repositoryService.cleanupLocalDirectory(location).block();
+        }
+    }
+
+    @Test
+    void shouldRecordDurationAndSizeOfClone(@TempDir Path tempDir) throws Exception {
+        // Given
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tempDir.resolve("file.txt"), "content");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setSign(false).call();
+        }
+
+        // When
+        String location = repositoryService.cloneAndStoreRepository(
+                tempDir.toUri().toString(), "main", "test-id", CloneOptions.of(CloneStrategy.SHALLOW, 1)).block();
+
+        // Then
+        try {
+            assertThat(meterRegistry.get("insight.clone").tag("strategy", "shallow").timer().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("insight.clone.bytes").summary().totalAmount()).isPositive();
+            assertThat(meterRegistry.get("insight.clone.objects").summary().count()).isEqualTo(1);
+            assertThat(meterRegistry.get("insight.clone.throughput").summary().count()).isEqualTo(1);
+        } finally {
+            repositoryService.cleanupLocalDirectory(location).block();
+        }
+    }
+
+    @Test
+    void shouldReportTransferOfClone(@TempDir Path tempDir) throws Exception {
+        // Given
+        try (Git git = Git.init().setDirectory(tempDir.toFile()).setInitialBranch("main").call()) {
+            Files.writeString(tempDir.resolve("file.txt"), "content");
+            git.add().addFilepattern(".").call();
+            git.commit().setMessage("initial").setSign(false).call();
+        }
+        AtomicReference<CloneTransfer> transfer = new AtomicReference<>();
+
+        // When
+        String location = repositoryService.cloneAndStoreRepository(tempDir.toUri().toString(), "main", "test-id",
+                CloneOptions.defaults(), transfer::set).block();
+
+        // Then
+        try {
+            assertThat(transfer.get().objects()).isEqualTo(3);
+            assertThat(transfer.get().bytes()).isPositive();
+            assertThat(transfer.get().duration()).isPositive();
+        } finally {
+            repositoryService.cleanupLocalDirectory(location).block();
+        }
+    }
+
+    @Test
+    void shouldAbortSharedCloneAndDeleteCheckoutWhenAnalysisIsCancelled(@TempDir Path tempDir) throws Exception {
+        // Given
+        String repositoryUrl = FixtureRepositories.create(tempDir, 2000, 1);
+        CloneKey key = new CloneKey(repositoryUrl, FixtureRepositories.BRANCH, "abc123", CloneOptions.defaults());
+        CloneDeduplicationService cloneDeduplicationService = new CloneDeduplicationService();
+        RunningAnalyses runningAnalyses = new RunningAnalyses();
+        Mono<CloneResult> analysis = runningAnalyses.track("test-id", cloneDeduplicationService.cloneOnce(key,
+                "test-id", () -> repositoryService.cloneAndStoreRepository(repositoryUrl, FixtureRepositories.BRANCH,
+                        "test-id", CloneOptions.defaults())));
+
+        // Cancel as soon as the clone reports progress, so JGit is mid-transfer
+        eventPublisher.events("test-id")
+                .filter(event -> AnalysisEvent.PROGRESS.equals(event.type()))
+                .next()
+                .subscribe(event -> runningAnalyses.cancel("test-id"));
+
+        // When & Then
+        StepVerifier.create(analysis)
+                .expectError(AnalysisCancelledException.class)
+                .verify(Duration.ofSeconds(30));
+
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> {
+            try (Stream<Path> checkouts = Files.list(workspaceRoot)) {
+                assertThat(checkouts.filter(Files::isDirectory)).isEmpty();
+            }
+        });
+        assertThat(workspaceManager.checkoutCount()).isZero();
+        assertThat(cloneDeduplicationService.inFlightCount()).isZero();
+    }
+
     @Test
     void shouldThrowExceptionForEmptyRepositoryUrl() {
         // When & Then
@@ -0,0 +1,42 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.exception.AnalysisCancelledException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RunningAnalysesTest {
+
+    private final RunningAnalyses runningAnalyses = new RunningAnalyses();
+
+    @Test
+    void shouldDisposeRunningPipelineWhenCancelled() {
+        // Given
+        AtomicBoolean disposed = new AtomicBoolean();
+        Mono<String> pipeline = Mono.<String>never().doOnCancel(() -> disposed.set(true));
+
+        // When & Then
+        StepVerifier.create(runningAnalyses.track("test-id", pipeline))
+                .then(() -> assertThat(runningAnalyses.cancel("test-id")).isTrue())
+                .expectError(AnalysisCancelledException.class)
+                .verify();
+        assertThat(disposed).isTrue();
+        assertThat(runningAnalyses.size()).isZero();
+    }
+
+    @Test
+    void shouldForgetPipelineOnceItFinishes() {
+        // When
+        StepVerifier.create(runningAnalyses.track("test-id", Mono.just("done")))
+                .expectNext("done")
+                .verifyComplete();
+
+        // Then
+        assertThat(runningAnalyses.cancel("test-id")).isFalse();
+        assertThat(runningAnalyses.size()).isZero();
+    }
+}
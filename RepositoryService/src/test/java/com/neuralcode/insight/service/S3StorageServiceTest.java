@@ -0,0 +1,170 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.dto.UploadStatistics;
+import com.neuralcode.insight.exception.S3UploadException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.test.StepVerifier;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class S3StorageServiceTest {
+
+    @TempDir
+    Path workspaceRoot;
+
+    @TempDir
+    Path target;
+
+    private final InMemoryS3AsyncClient s3Client = new InMemoryS3AsyncClient();
+
+    private final WorkspaceManager workspaceManager = mock(WorkspaceManager.class);
+
+    private S3StorageService s3StorageService;
+
+    private Path checkout;
+
+    private Path checkpointFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        CheckoutArchiver checkoutArchiver = new CheckoutArchiver();
+        ReflectionTestUtils.setField(checkoutArchiver, "compressionLevel", 1);
+        BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+        blockingSchedulers.initialize();
+        s3StorageService = new S3StorageService(checkoutArchiver, workspaceManager, new AnalysisEventPublisher(),
+                mock(InsightMetrics.class), blockingSchedulers);
+        ReflectionTestUtils.setField(s3StorageService, "bucketName", "test-bucket");
+        ReflectionTestUtils.setField(s3StorageService, "archivePrefix", "archives/");
+        ReflectionTestUtils.setField(s3StorageService, "maxConcurrency", 4);
+        ReflectionTestUtils.setField(s3StorageService, "maxRetries", 3);
+        ReflectionTestUtils.setField(s3StorageService, "retryBackoff", Duration.ofMillis(10));
+        s3StorageService.initialize(s3Client);
+
+        checkout = Files.createDirectory(workspaceRoot.resolve("checkout"));
+        Files.createDirectories(checkout.resolve("src/main/java/demo"));
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(checkout.resolve("src/main/java/demo/File" + i + ".java"),
+                    ("class File" + i + " {}\n").repeat(200));
+        }
+        Files.writeString(checkout.resolve("README.md"), "# Demo\n");
+        Files.createDirectories(checkout.resolve(".git/refs/tags"));
+        Files.createSymbolicLink(checkout.resolve("docs"), Path.of("src/main/java"));
+
+        checkpointFile = workspaceRoot.resolve("checkout.upload");
+        when(workspaceManager.uploadCheckpointFile(checkout.toString())).thenReturn(checkpointFile);
+    }
+
+    @AfterEach
+    void tearDown() {
+        s3StorageService.cleanup();
+    }
+
+    @Test
+    void shouldRestoreArchivedCheckoutFromParallelRanges() throws Exception {
+        // Given
+        String archiveKey = s3StorageService.uploadArchive(checkout.toString()).block();
+
+        // When
+        Long entries = s3StorageService.restoreArchive(archiveKey, target, 4).block();
+
+        // Then
+        assertThat(archiveKey).isEqualTo("archives/checkout.tar.gz");
+        assertThat(s3Client.keys()).containsExactlyInAnyOrder(archiveKey, archiveKey + ".index");
+        assertThat(entries).isGreaterThanOrEqualTo(42);
+        assertThat(target.resolve("src/main/java/demo/File23.java")).hasContent(("class File23 {}\n").repeat(200));
+        assertThat(target.resolve("README.md")).hasContent("# Demo\n");
+        assertThat(target.resolve(".git/refs/tags")).isDirectory();
+        assertThat(Files.readSymbolicLink(target.resolve("docs"))).isEqualTo(Path.of("src/main/java"));
+    }
+
+    @Test
+    void shouldReadSingleFileOutOfArchive() throws Exception {
+        // Given
+        String archiveKey = s3StorageService.uploadArchive(checkout.toString()).block();
+
+        // When
+        InputStream file = s3StorageService.readArchivedFile(archiveKey, "src/main/java/demo/File7.java").block();
+
+        // Then
+        try (file) {
+            assertThat(new String(file.readAllBytes(), StandardCharsets.UTF_8))
+                    .isEqualTo(("class File7 {}\n").repeat(200));
+        }
+        StepVerifier.create(s3StorageService.readArchivedFile(archiveKey, "src/Missing.java"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNoLongerFindDeletedArchive() {
+        // Given
+        String archiveKey = s3StorageService.uploadArchive(checkout.toString()).block();
+        StepVerifier.create(s3StorageService.archiveExists(archiveKey)).expectNext(true).verifyComplete();
+
+        // When
+        s3StorageService.deleteArchive(archiveKey).block();
+
+        // Then
+        StepVerifier.create(s3StorageService.archiveExists(archiveKey)).expectNext(false).verifyComplete();
+        assertThat(s3Client.keys()).isEmpty();
+    }
+
+    @Test
+    void shouldRetryFailedFileOnItsOwn() {
+        // Given one file that is throttled twice before it goes through
+        s3Client.failPuts("repos/demo/src/main/java/demo/File3.java", 2);
+
+        // When
+        StepVerifier.create(s3StorageService.uploadRepository("analysis-1", checkout.toString(), "repos/demo"))
+                .expectNext("s3://test-bucket/repos/demo/")
+                .verifyComplete();
+
+        // Then
+        assertThat(s3Client.object("repos/demo/src/main/java/demo/File3.java"))
+                .asString(StandardCharsets.UTF_8).isEqualTo(("class File3 {}\n").repeat(200));
+        assertThat(s3Client.putCount("repos/demo/src/main/java/demo/File3.java")).isEqualTo(3);
+        assertThat(s3Client.keys()).hasSize(41).contains("repos/demo/README.md");
+        UploadStatistics statistics = s3StorageService.statistics();
+        assertThat(statistics.filesUploaded()).isEqualTo(41);
+        assertThat(statistics.filesRetried()).isEqualTo(2);
+        assertThat(statistics.filesFailed()).isZero();
+        assertThat(statistics.activeUploads()).isZero();
+        assertThat(checkpointFile).doesNotExist();
+    }
+
+    @Test
+    void shouldUploadOnlyMissingFilesWhenResumedAfterFailure() {
+        // Given an upload where one file fails more often than it is retried
+        s3Client.failPuts("repos/demo/src/main/java/demo/File5.java", 4);
+        StepVerifier.create(s3StorageService.uploadRepository("analysis-1", checkout.toString(), "repos/demo"))
+                .expectError(S3UploadException.class)
+                .verify();
+        assertThat(checkpointFile).exists();
+        assertThat(s3StorageService.statistics().filesFailed()).isEqualTo(1);
+
+        // When
+        StepVerifier.create(s3StorageService.uploadRepository("analysis-1", checkout.toString(), "repos/demo"))
+                .expectNext("s3://test-bucket/repos/demo/")
+                .verifyComplete();
+
+        // Then only the failed file is sent again
+        assertThat(s3Client.putCount("repos/demo/src/main/java/demo/File5.java")).isEqualTo(5);
+        assertThat(s3Client.putCount("repos/demo/src/main/java/demo/File6.java")).isEqualTo(1);
+        assertThat(s3Client.keys()).hasSize(41);
+        UploadStatistics statistics = s3StorageService.statistics();
+        assertThat(statistics.filesUploaded()).isEqualTo(41);
+        assertThat(statistics.filesRetried()).isEqualTo(3);
+        assertThat(checkpointFile).doesNotExist();
+    }
+}
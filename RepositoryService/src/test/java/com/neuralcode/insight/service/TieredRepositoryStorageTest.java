@@ -0,0 +1,177 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TieredRepositoryStorageTest {
+
+    @TempDir
+    Path workspaceRoot;
+
+    @TempDir
+    Path bucket;
+
+    private final CodeAnalysisRepository analysisRepository = mock(CodeAnalysisRepository.class);
+
+    private final S3RepositoryStorage coldStorage = mock(S3RepositoryStorage.class);
+
+    private final AtomicReference<String> archiveKey = new AtomicReference<>();
+
+    private WorkspaceManager workspaceManager;
+
+    private TieredRepositoryStorage storage;
+
+    private Path checkout;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        AnalysisCache analysisCache = mock(AnalysisCache.class);
+        workspaceManager = new WorkspaceManager(analysisRepository, analysisCache, new AnalysisEventPublisher());
+        ReflectionTestUtils.setField(workspaceManager, "workspaceRoot", workspaceRoot.toString());
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(workspaceManager, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(workspaceManager, "reaperInterval", Duration.ofHours(1));
+        workspaceManager.initialize();
+
+        BlockingSchedulers blockingSchedulers = new BlockingSchedulers();
+        blockingSchedulers.initialize();
+        storage = new TieredRepositoryStorage(new LocalRepositoryStorage(workspaceManager, blockingSchedulers),
+                coldStorage, workspaceManager, analysisRepository, analysisCache, blockingSchedulers);
+        ReflectionTestUtils.setField(storage, "demoteAfter", Duration.ZERO);
+
+        checkout = workspaceManager.allocate("checkout");
+        Files.writeString(checkout.resolve("Main.java"), "class Main {}");
+        workspaceManager.register(checkout);
+        workspaceManager.pin(checkout.toString());
+        workspaceManager.unpin(checkout.toString());
+
+        // The object store is a directory holding one copy of each archived checkout
+        when(analysisRepository.findByStorageLocation(anyString())).thenAnswer(invocation -> Flux.defer(() -> {
+            CodeAnalysis analysis = new CodeAnalysis("id-1", "https://github.com/a/b", "main",
+                    AnalysisStatus.COMPLETED.name(), LocalDateTime.now());
+            analysis.setStorageLocation(invocation.getArgument(0));
+            analysis.setArchiveKey(archiveKey.get());
+            return Flux.just(analysis);
+        }));
+        when(analysisRepository.updateArchiveKey(anyString(), anyString())).thenAnswer(invocation -> {
+            archiveKey.set(invocation.getArgument(1));
+            return Mono.just(1);
+        });
+        when(coldStorage.store(any())).thenAnswer(invocation -> Mono.fromCallable(() -> {
+            Path source = invocation.getArgument(0);
+            FileUtils.copyDirectory(source.toFile(), bucket.resolve(source.getFileName()).toFile());
+            return source.getFileName().toString();
+        }));
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspaceManager.shutdown();
+    }
+
+    @Test
+    void shouldRestoreDemotedCheckoutWhenAccessedAgain() throws Exception {
+        // Given a checkout demoted to the object store
+        when(coldStorage.restore(anyString(), any())).thenAnswer(invocation -> Mono.fromCallable(() -> {
+            Path target = invocation.getArgument(1);
+            FileUtils.copyDirectory(bucket.resolve((String) invocation.getArgument(0)).toFile(), target.toFile());
+            return target;
+        }));
+        demote();
+
+        // When
+        StepVerifier.create(storage.restore(checkout.toString(), checkout))
+                .expectNext(checkout)
+                .verifyComplete();
+
+        // Then
+        assertThat(checkout.resolve("Main.java")).hasContent("class Main {}");
+        assertThat(workspaceManager.pin(checkout.toString())).isTrue();
+        assertThat(restoreDirectories()).isEmpty();
+    }
+
+    @Test
+    void shouldLeaveNoCheckoutBehindWhenRestoreFails() throws Exception {
+        // Given a demoted checkout whose download breaks off after the first file
+        when(coldStorage.restore(anyString(), any())).thenAnswer(invocation -> Mono.fromCallable(() -> {
+            Path target = invocation.getArgument(1);
+            Files.writeString(target.resolve("Main.java"), "class Ma");
+            throw new IOException("Connection reset");
+        }));
+        demote();
+
+        // When
+        StepVerifier.create(storage.restore(checkout.toString(), checkout))
+                .verifyErrorMessage("Connection reset");
+
+        // Then nothing at the checkout path passes for the checkout
+        assertThat(checkout).doesNotExist();
+        assertThat(workspaceManager.pin(checkout.toString())).isFalse();
+        workspaceManager.reap().block();
+        assertThat(restoreDirectories()).isEmpty();
+    }
+
+    @Test
+    void shouldCancelSharedRestoreOnceEveryCallerHasLeft() throws Exception {
+        // Given a slow restore shared by two callers
+        AtomicBoolean cancelled = new AtomicBoolean();
+        when(coldStorage.restore(anyString(), any()))
+                .thenReturn(Mono.<Path>never().doOnCancel(() -> cancelled.set(true)));
+        demote();
+        Disposable first = storage.restore(checkout.toString(), checkout).subscribe();
+        Disposable second = storage.restore(checkout.toString(), checkout).subscribe();
+        await().atMost(Duration.ofSeconds(5)).until(() -> restoreDirectories().size() == 1);
+
+        // When one caller leaves the restore keeps running
+        first.dispose();
+        assertThat(cancelled).isFalse();
+
+        // Then it stops once the last one leaves
+        second.dispose();
+        assertThat(cancelled).isTrue();
+        workspaceManager.reap().block();
+        assertThat(restoreDirectories()).isEmpty();
+        assertThat(checkout).doesNotExist();
+    }
+
+    private void demote() throws Exception {
+        Thread.sleep(5);
+        storage.demoteIdle().block();
+        assertThat(checkout).doesNotExist();
+        assertThat(archiveKey.get()).isNotNull();
+    }
+
+    private List<Path> restoreDirectories() throws IOException {
+        try (Stream<Path> entries = Files.list(workspaceRoot)) {
+            return entries.filter(entry -> entry.getFileName().toString().contains(".restore-")).toList();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.neuralcode.insight.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UploadCheckpointTest {
+
+    private static final String DESTINATION = "s3://bucket/demo-main/";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldResumeWithFilesCompletedBeforeInterruption() throws Exception {
+        // Given
+        Path file = tempDir.resolve("demo-main.upload");
+        try (UploadCheckpoint checkpoint = UploadCheckpoint.open(file, DESTINATION)) {
+            checkpoint.markCompleted("README.md");
+            checkpoint.markCompleted("src/Demo.java");
+        }
+        // A crash while writing the next line leaves it without a line break
+        Files.writeString(file, "src/Oth", StandardOpenOption.APPEND);
+
+        // When
+        try (UploadCheckpoint resumed = UploadCheckpoint.open(file, DESTINATION)) {
+            resumed.markCompleted("src/Other.java");
+        }
+        UploadCheckpoint reopened = UploadCheckpoint.open(file, DESTINATION);
+
+        // Then
+        assertThat(reopened.completedCount()).isEqualTo(3);
+        assertThat(reopened.isCompleted("src/Demo.java")).isTrue();
+        assertThat(reopened.isCompleted("src/Other.java")).isTrue();
+        assertThat(reopened.isCompleted("src/Oth")).isFalse();
+        reopened.delete();
+        assertThat(file).doesNotExist();
+    }
+
+    @Test
+    void shouldDiscardCheckpointOfAnotherDestination() throws Exception {
+        // Given
+        Path file = tempDir.resolve("demo-main.upload");
+        try (UploadCheckpoint checkpoint = UploadCheckpoint.open(file, "s3://bucket/other/")) {
+            checkpoint.markCompleted("README.md");
+        }
+
+        // When
+        try (UploadCheckpoint checkpoint = UploadCheckpoint.open(file, DESTINATION)) {
+
+            // Then
+            assertThat(checkpoint.completedCount()).isZero();
+            assertThat(checkpoint.isCompleted("README.md")).isFalse();
+        }
+        assertThat(Files.readAllLines(file)).containsExactly(DESTINATION);
+    }
+}
@@ -0,0 +1,153 @@
+package com.neuralcode.insight.service;
+
+import com.neuralcode.insight.entity.AnalysisStatus;
+import com.neuralcode.insight.entity.CodeAnalysis;
+import com.neuralcode.insight.repository.CodeAnalysisRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkspaceManagerTest {
+
+    @TempDir
+    Path workspaceRoot;
+
+    private final CodeAnalysisRepository analysisRepository = mock(CodeAnalysisRepository.class);
+
+    private final AnalysisCache analysisCache = mock(AnalysisCache.class);
+
+    private WorkspaceManager workspaceManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        workspaceManager = new WorkspaceManager(analysisRepository, analysisCache, new AnalysisEventPublisher());
+        ReflectionTestUtils.setField(workspaceManager, "workspaceRoot", workspaceRoot.toString());
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", Long.MAX_VALUE);
+        ReflectionTestUtils.setField(workspaceManager, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(workspaceManager, "reaperInterval", Duration.ofHours(1));
+        workspaceManager.initialize();
+
+        CodeAnalysis analysis = new CodeAnalysis("id-1", "https://github.com/a/b", "main",
+                AnalysisStatus.COMPLETED.name(), LocalDateTime.now());
+        when(analysisRepository.findByStorageLocation(anyString())).thenReturn(Flux.just(analysis));
+        when(analysisRepository.evictCheckout(anyString(), anyString(), any())).thenReturn(Mono.just(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        workspaceManager.shutdown();
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedCheckoutOverQuota() throws Exception {
+        // Given
+        Path older = checkout("older");
+        Thread.sleep(5);
+        Path newer = checkout("newer");
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", Files.size(newer.resolve("file.txt")));
+
+        // When
+        workspaceManager.reap().block();
+
+        // Then
+        assertThat(older).doesNotExist();
+        assertThat(newer).exists();
+        verify(analysisRepository).evictCheckout(eq(older.toString()), eq(AnalysisStatus.EVICTED.name()), any());
+        verify(analysisCache).invalidate("id-1");
+    }
+
+    @Test
+    void shouldNotEvictPinnedCheckout() throws Exception {
+        // Given
+        Path pinned = checkout("pinned");
+        workspaceManager.pin(pinned.toString());
+
+        // When
+        workspaceManager.reap().block();
+
+        // Then
+        assertThat(pinned).exists();
+        assertThat(workspaceManager.checkoutCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldHoldRegisteredCheckoutUntilItsScanHasPinnedIt() throws Exception {
+        // Given a checkout that has been cloned but not scanned yet, over quota
+        Path directory = workspaceManager.allocate("cloned");
+        Files.writeString(directory.resolve("file.txt"), "content of cloned");
+        workspaceManager.register(directory);
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", 0L);
+
+        // When
+        workspaceManager.reap().block();
+
+        // Then
+        assertThat(directory).exists();
+
+        // And once its scan has pinned and released it, it is evicted
+        workspaceManager.pin(directory.toString());
+        workspaceManager.unpin(directory.toString());
+        workspaceManager.reap().block();
+        assertThat(directory).doesNotExist();
+    }
+
+    @Test
+    void shouldKeepCheckoutWhoseAnalysisStillWaitsForItsScan() throws Exception {
+        // Given
+        Path waiting = checkout("waiting");
+        CodeAnalysis analysis = new CodeAnalysis("id-2", "https://github.com/a/b", "main",
+                AnalysisStatus.STORED_IN_LOCAL.name(), LocalDateTime.now());
+        when(analysisRepository.findByStorageLocation(waiting.toString())).thenReturn(Flux.just(analysis));
+        ReflectionTestUtils.setField(workspaceManager, "maxDiskBytes", 0L);
+
+        // When
+        workspaceManager.reap().block();
+
+        // Then
+        assertThat(waiting).exists();
+        verify(analysisRepository, never()).evictCheckout(anyString(), anyString(), any());
+    }
+
+    @Test
+    void shouldEvictExpiredCheckoutEvenIfItsScanNeverStarted() throws Exception {
+        // Given a checkout left behind by a pipeline that died before scanning it
+        Path abandoned = workspaceManager.allocate("abandoned");
+        workspaceManager.register(abandoned);
+        ReflectionTestUtils.setField(workspaceManager, "ttl", Duration.ZERO);
+        Thread.sleep(5);
+
+        // When
+        workspaceManager.reap().block();
+
+        // Then
+        assertThat(abandoned).doesNotExist();
+    }
+
+    // Registers the checkout and runs it through a scan, as a finished analysis would
+    private Path checkout(String name) throws Exception {
+        Path directory = workspaceManager.allocate(name);
+        Files.writeString(directory.resolve("file.txt"), "content of " + name);
+        workspaceManager.register(directory);
+        workspaceManager.pin(directory.toString());
+        workspaceManager.unpin(directory.toString());
+        return directory;
+    }
+}
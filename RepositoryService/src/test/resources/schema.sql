@@ -3,10 +3,71 @@ DROP TABLE IF EXISTS code_analysis;
 CREATE TABLE code_analysis(
     id VARCHAR(255) PRIMARY KEY,
     repository_url VARCHAR(500) NOT NULL,
+    canonical_url VARCHAR(500),
+    repository_url_hash CHAR(64),
     branch_name VARCHAR(100),
     status VARCHAR(50) NOT NULL,
     start_time TIMESTAMP,
     end_time TIMESTAMP,
     error_message VARCHAR(255),
-    storage_location VARCHAR(255)
+    storage_location VARCHAR(255),
+    clone_strategy VARCHAR(50),
+    clone_depth INTEGER,
+    commit_sha VARCHAR(64),
+    source_analysis_id VARCHAR(255),
+    baseline_analysis_id VARCHAR(255),
+    archive_key VARCHAR(500),
+    clone_objects BIGINT,
+    clone_bytes BIGINT,
+    clone_duration_ms BIGINT
+);
+
+DROP TABLE IF EXISTS analysis_job;
+
+CREATE TABLE analysis_job(
+    analysis_id VARCHAR(255) PRIMARY KEY,
+    state VARCHAR(20) NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    available_at TIMESTAMP NOT NULL,
+    lease_owner VARCHAR(255),
+    lease_expires_at TIMESTAMP,
+    last_error VARCHAR(1000)
+);
+
+DROP TABLE IF EXISTS file_metrics;
+
+CREATE TABLE file_metrics(
+    analysis_id VARCHAR(255) NOT NULL,
+    path VARCHAR(1000) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    total_lines INTEGER NOT NULL,
+    code_lines INTEGER NOT NULL,
+    comment_lines INTEGER NOT NULL,
+    blank_lines INTEGER NOT NULL,
+    class_count INTEGER NOT NULL,
+    method_count INTEGER NOT NULL
+);
+
+DROP TABLE IF EXISTS repository_metrics;
+
+CREATE TABLE repository_metrics(
+    analysis_id VARCHAR(255) PRIMARY KEY,
+    file_count BIGINT NOT NULL,
+    total_bytes BIGINT NOT NULL,
+    total_lines BIGINT NOT NULL,
+    code_lines BIGINT NOT NULL,
+    comment_lines BIGINT NOT NULL,
+    blank_lines BIGINT NOT NULL,
+    class_count BIGINT NOT NULL,
+    method_count BIGINT NOT NULL,
+    computed_at TIMESTAMP NOT NULL
+);
+
+DROP TABLE IF EXISTS file_manifest;
+
+CREATE TABLE file_manifest(
+    analysis_id VARCHAR(255) NOT NULL,
+    path VARCHAR(1000) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    sha256 CHAR(64) NOT NULL
 );